@@ -0,0 +1,7 @@
+@echo off
+rem Launches the application using the linked runtime in the same image.
+
+set "IMAGE=%~dp0.."
+
+"%IMAGE%\bin\java" -cp "%IMAGE%\app\*" ^
+  com.whitemagicsoftware.kmcaster.KmCaster %*
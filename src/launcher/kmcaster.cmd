@@ -0,0 +1,13 @@
+@echo off
+rem Launches the application, mapping the class data sharing archive created
+rem by the build when it exists. The archive is ignored if the jar has moved or
+rem the Java runtime differs from the one that created it.
+
+set "DIR=%~dp0"
+
+if exist "%DIR%kmcaster.jsa" (
+  java -XX:SharedArchiveFile="%DIR%kmcaster.jsa" -Xshare:auto ^
+    -Xlog:cds=off -Xlog:cds+dynamic=off -jar "%DIR%kmcaster.jar" %*
+) else (
+  java -jar "%DIR%kmcaster.jar" %*
+)
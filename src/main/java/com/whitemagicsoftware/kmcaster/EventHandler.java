@@ -28,6 +28,7 @@
 package com.whitemagicsoftware.kmcaster;
 
 import com.whitemagicsoftware.kmcaster.ui.AutofitLabel;
+import com.whitemagicsoftware.kmcaster.ui.IdleFader;
 import com.whitemagicsoftware.kmcaster.ui.ResetTimer;
 import com.whitemagicsoftware.kmcaster.util.ConsecutiveEventCounter;
 
@@ -44,7 +45,6 @@ import static com.whitemagicsoftware.kmcaster.HardwareSwitch.*;
 import static com.whitemagicsoftware.kmcaster.LabelConfig.*;
 import static com.whitemagicsoftware.kmcaster.ui.Constants.*;
 import static java.awt.Toolkit.getDefaultToolkit;
-import static javax.swing.RepaintManager.currentManager;
 import static javax.swing.SwingUtilities.invokeLater;
 
 /**
@@ -72,10 +72,14 @@ public final class EventHandler implements PropertyChangeListener {
   private final Map<HardwareSwitch, ResetTimer> mTimers = new HashMap<>();
   private final Deque<HardwareSwitch> mMouseActions = new LinkedList<>();
   private final ConsecutiveEventCounter<String> mKeyCounter;
+  private final IdleFader mIdleFader;
 
   public EventHandler(
-    final HardwareImages hardwareImages, final Settings userSettings ) {
+    final HardwareImages hardwareImages,
+    final Settings userSettings,
+    final IdleFader idleFader ) {
     mHardwareImages = hardwareImages;
+    mIdleFader = idleFader;
     mKeyCounter = new ConsecutiveEventCounter<>( userSettings.getKeyCount() );
 
     final var keyColour = KEY_COLOURS.get( SWITCH_PRESSED );
@@ -104,6 +108,25 @@ public final class EventHandler implements PropertyChangeListener {
     putTimers( scrollSwitches(), userSettings.getDelayMouseScroll() );
   }
 
+  /**
+   * Refits the visible labels after the hardware images have been resized.
+   * Labels that annotate the most recent regular key press (number pad keys
+   * and the tally) are hidden until the next key press. This must be
+   * invoked from Swing's event dispatch thread.
+   */
+  public void relabel() {
+    getLabel( LABEL_REGULAR_NUM_MAIN ).setVisible( false );
+    getLabel( LABEL_REGULAR_NUM_SUPERSCRIPT ).setVisible( false );
+    getLabel( LABEL_REGULAR_COUNTER ).setVisible( false );
+
+    for( final var label : mLabels ) {
+      // Labels that have never been shown have no size.
+      if( label.isVisible() && label.getWidth() > 0 ) {
+        label.transform();
+      }
+    }
+  }
+
   /**
    * Called when a hardware switch has changed state.
    *
@@ -114,6 +137,8 @@ public final class EventHandler implements PropertyChangeListener {
   public void propertyChange( final PropertyChangeEvent e ) {
     invokeLater(
       () -> {
+        // Restore the window, if hidden, before painting the new state.
+        mIdleFader.wake();
         update( e );
 
         // Prevent collapsing multiple paint events.
@@ -195,13 +220,35 @@ public final class EventHandler implements PropertyChangeListener {
    */
   private synchronized void updateKeyboardLabel(
     final HardwareSwitchState state ) {
+    var tally = "";
+
+    if( state.isModifier() ) {
+      mKeyCounter.reset();
+    }
+    else if( state.getHardwareState() == SWITCH_PRESSED &&
+      mKeyCounter.apply( state.getValue() ) ) {
+      // Track the consecutive key presses for this value.
+      tally = mKeyCounter.toString();
+    }
+
+    show( state, tally );
+  }
+
+  /**
+   * Shows the given key state immediately, such as when replaying a session
+   * off-screen without the release delays. This must be called from the
+   * thread that paints the hardware components.
+   *
+   * @param state The key that has changed.
+   * @param tally Consecutive presses of a regular key, empty to hide.
+   */
+  public synchronized void show(
+    final HardwareSwitchState state, final String tally ) {
     updateSwitchState( state );
     final var hwState = state.getHardwareState();
 
     if( state.isModifier() ) {
       updateLabel( state );
-
-      mKeyCounter.reset();
     }
     else {
       // Hide any previously displayed labels.
@@ -209,11 +256,11 @@ public final class EventHandler implements PropertyChangeListener {
 
       final var main = getLabel( LABEL_REGULAR_NUM_MAIN );
       final var sup = getLabel( LABEL_REGULAR_NUM_SUPERSCRIPT );
-      final var tally = getLabel( LABEL_REGULAR_COUNTER );
+      final var counter = getLabel( LABEL_REGULAR_COUNTER );
 
       main.setVisible( false );
       sup.setVisible( false );
-      tally.setVisible( false );
+      counter.setVisible( false );
 
       if( hwState == SWITCH_PRESSED ) {
         final var keyValue = state.getValue();
@@ -245,11 +292,10 @@ public final class EventHandler implements PropertyChangeListener {
           updateLabel( state );
         }
 
-        // Track the consecutive key presses for this value.
-        if( mKeyCounter.apply( keyValue ) ) {
-          tally.setText( mKeyCounter.toString() );
-          tally.transform( .25f );
-          tally.setVisible( true );
+        if( !tally.isEmpty() ) {
+          counter.setText( tally );
+          counter.transform( .25f );
+          counter.setVisible( true );
         }
       }
     }
@@ -274,14 +320,13 @@ public final class EventHandler implements PropertyChangeListener {
     }
 
     final var component = getHardwareComponent( MOUSE_RELEASED );
-    final var repaintManager = currentManager( component );
 
+    // Only the final state is visible; intermediate states are coalesced
+    // into a single repaint of the mouse's bounds.
     component.setState( new HardwareSwitchState( hwSwitch, SWITCH_RELEASED ) );
-    repaintManager.paintDirtyRegions();
 
     for( final var action : mMouseActions ) {
       component.setState( new HardwareSwitchState( action, SWITCH_PRESSED ) );
-      repaintManager.paintDirtyRegions();
     }
   }
 
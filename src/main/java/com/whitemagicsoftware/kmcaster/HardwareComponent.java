@@ -27,12 +27,16 @@
  */
 package com.whitemagicsoftware.kmcaster;
 
+import com.whitemagicsoftware.kmcaster.ui.AutofitLabel;
+import com.whitemagicsoftware.kmcaster.ui.NineSliceImage;
+import com.whitemagicsoftware.kmcaster.ui.TranslucentPanel;
+
 import javax.swing.*;
 import java.awt.*;
 import java.util.HashMap;
 import java.util.Map;
 
-import static com.whitemagicsoftware.kmcaster.SvgRasterizer.RENDERING_HINTS;
+import static java.lang.System.nanoTime;
 
 /**
  * Responsible for drawing an image based on a state; the state can be
@@ -53,7 +57,12 @@ public final class HardwareComponent
   /**
    * Available space on the image for drawing.
    */
-  private final Insets mInsets;
+  private Insets mInsets;
+
+  /**
+   * Selects the rendering hints used when painting.
+   */
+  private final RenderingGovernor mGovernor;
 
   private Dimension mPreferredSize;
 
@@ -65,11 +74,15 @@ public final class HardwareComponent
    * @param insets The padding to use around the component so that letters
    *               can be drawn within a safe region, without extending beyond
    *               what we'd expected to see visually for key cap text.
+   * @param governor Provides the rendering hints to use when painting.
    */
-  public HardwareComponent( final Insets insets ) {
+  public HardwareComponent(
+    final Insets insets, final RenderingGovernor governor ) {
     assert insets != null;
+    assert governor != null;
 
     mInsets = insets;
+    mGovernor = governor;
     setOpaque( true );
   }
 
@@ -90,11 +103,24 @@ public final class HardwareComponent
    */
   @Override
   protected void paintComponent( final Graphics g ) {
+    final var governor = mGovernor;
+    final var start = nanoTime();
     final var g2 = (Graphics2D) g.create();
-    g2.setRenderingHints( RENDERING_HINTS );
+    g2.setRenderingHints( governor.getProfile().getHints() );
     g2.setComposite( AlphaComposite.Src );
-    g2.drawImage( getActiveImage(), 0, 0, this );
+
+    final var image = getActiveImage();
+
+    if( image instanceof NineSliceImage ) {
+      ((NineSliceImage) image).draw( g2, 0, 0 );
+    }
+    else {
+      g2.drawImage( image, 0, 0, this );
+    }
+
     g2.dispose();
+
+    governor.record( nanoTime() - start );
   }
 
   /**
@@ -111,6 +137,35 @@ public final class HardwareComponent
     mState = hwSwitch;
   }
 
+  /**
+   * Replaces all images, such as after rasterizing at a different size.
+   * The current state is retained. This must be called from the event
+   * dispatch thread.
+   *
+   * @param images The images to paint for each state.
+   * @param insets The safe drawing area, scaled to the new images.
+   */
+  public void setImages( final Map<S, I> images, final Insets insets ) {
+    assert images != null;
+    assert insets != null;
+
+    final var stateImages = getStateImages();
+    stateImages.clear();
+    stateImages.putAll( images );
+
+    mInsets = insets;
+    mPreferredSize = null;
+
+    for( final var child : getComponents() ) {
+      if( child instanceof AutofitLabel ) {
+        ((AutofitLabel) child).invalidateParentBounds();
+      }
+    }
+
+    revalidate();
+    repaint();
+  }
+
   /**
    * Repaints this component by changing its mutable state. The new state
    * must have been previously registered via {@link #put(S, Image)}.
@@ -122,7 +177,7 @@ public final class HardwareComponent
 
     if( !state.equals( mState ) ) {
       mState = state;
-      repaint();
+      repaintState();
     }
   }
 
@@ -130,6 +185,21 @@ public final class HardwareComponent
     return mState;
   }
 
+  /**
+   * Delegates repainting to the parent container, when possible, so that
+   * multiple state changes can be painted as a single region.
+   */
+  private void repaintState() {
+    final var parent = getParent();
+
+    if( parent instanceof TranslucentPanel ) {
+      ((TranslucentPanel) parent).markDirty( this );
+    }
+    else {
+      repaint();
+    }
+  }
+
   private Dimension calcPreferredSize() {
     // Race-condition guard.
     final var image = getActiveImage();
@@ -28,36 +28,97 @@
 package com.whitemagicsoftware.kmcaster;
 
 import com.whitemagicsoftware.kmcaster.ui.DimensionTuple;
+import com.whitemagicsoftware.kmcaster.ui.LazyMultiResolutionImage;
+import com.whitemagicsoftware.kmcaster.ui.LuminanceMask;
+import com.whitemagicsoftware.kmcaster.ui.NineSliceImage;
 import com.whitemagicsoftware.kmcaster.ui.PaddedInsets;
+import com.whitemagicsoftware.kmcaster.ui.ScalableDimension;
+import com.whitemagicsoftware.kmcaster.util.LruCache;
 import com.whitemagicsoftware.kmcaster.util.Pair;
 
 import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.MultiResolutionImage;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
 
 import static com.whitemagicsoftware.kmcaster.HardwareState.SWITCH_PRESSED;
 import static com.whitemagicsoftware.kmcaster.HardwareState.SWITCH_RELEASED;
 import static com.whitemagicsoftware.kmcaster.HardwareSwitch.*;
 import static com.whitemagicsoftware.kmcaster.exceptions.Rethrowable.rethrow;
+import static java.awt.GraphicsEnvironment.getLocalGraphicsEnvironment;
+import static java.awt.GraphicsEnvironment.isHeadless;
+import static java.lang.Math.ceil;
 import static java.lang.String.format;
+import static java.util.concurrent.Executors.newSingleThreadExecutor;
+import static javax.swing.SwingUtilities.invokeLater;
 
 /**
  * Responsible for loading vector graphics representations of application
  * images. The images provide an on-screen interface that indicate to the user
  * what key or mouse events have been triggered.
+ * <p>
+ * The images can be rasterized at a different size while the application
+ * runs. Rasterizing happens in the background while the current images
+ * remain on screen; recently used sizes are cached.
+ * </p>
+ * <p>
+ * Each image is rasterized for the scale of the display showing the
+ * application. Variants for other display scales are rasterized from the
+ * same vector graphic when first painted, such as after moving the window
+ * to another monitor, so that painting never scales bitmaps.
+ * </p>
  */
 public final class HardwareImages {
   private final static String DIR_IMAGES = "/images";
   private final static String DIR_IMAGES_KEYBOARD = DIR_IMAGES + "/key";
   private final static String DIR_IMAGES_MOUSE = DIR_IMAGES + "/mouse";
 
+  /**
+   * Key cap images stretched to paint each key. The shift key has its own
+   * image because it includes an icon.
+   */
   private final static Map<HardwareSwitch, String> FILE_NAME_PREFIXES = Map.of(
-      KEY_ALT, "medium",
-      KEY_CTRL, "medium",
+      KEY_ALT, "short",
+      KEY_CTRL, "short",
       KEY_SHIFT, "long",
       KEY_REGULAR, "short"
   );
 
+  /**
+   * Width of each key, in vector graphic units, to which its key cap image
+   * is stretched. All key cap images have the same height.
+   */
+  private final static Map<HardwareSwitch, Integer> KEY_WIDTHS = Map.of(
+      KEY_ALT, 100,
+      KEY_CTRL, 100,
+      KEY_SHIFT, 140,
+      KEY_REGULAR, 66
+  );
+
+  /**
+   * Regions of each key cap image, in vector graphic units, that are never
+   * stretched: the rounded corners and, for the shift key, the up arrow icon.
+   * These were measured from the rasterized images, then rounded up.
+   */
+  private final static Map<String, Insets> KEY_SLICES = Map.of(
+      "short", new Insets( 0, 11, 0, 11 ),
+      "long", new Insets( 0, 34, 0, 11 )
+  );
+
+  /**
+   * Width, in vector graphic units, into which the stretchable region of a
+   * key cap is squeezed. The region contains only flat colours and smooth
+   * gradients, which survive being squeezed then stretched.
+   */
+  private final static int KEY_SLICE_MIDDLE = 8;
+
   /**
    * Defines the amount of space between around the vector graphic projection
    * of a key. These values are specific to the projected sizes and must be
@@ -77,62 +138,305 @@ public final class HardwareImages {
       MOUSE_EXTRA, new Insets( 27, 5, 11, 5 )
   );
 
+  /**
+   * Maximum number of bytes of rasterized images to retain for sizes that
+   * may be displayed again.
+   */
+  private final static long CACHE_BYTES = 64L * 1024 * 1024;
+
   private final static SvgRasterizer sRasterizer = new SvgRasterizer();
 
-  private final Dimension mAppDimensions;
+  /**
+   * Rasterizes images for new sizes without blocking the user interface.
+   * A single thread is used because the SVG universe is not thread-safe.
+   */
+  private final static ExecutorService sExecutor = newSingleThreadExecutor(
+      runnable -> {
+        final var thread = new Thread( runnable, "rasterizer" );
+        thread.setDaemon( true );
+        return thread;
+      }
+  );
+
+  private final Settings mUserSettings;
+
+  /**
+   * Shared by all components to select rendering hints under load.
+   */
+  private final RenderingGovernor mGovernor;
+
+  /**
+   * Whether images are stored as luminance masks.
+   */
+  private final boolean mMaskImages;
+
+  /**
+   * Colour of pressed switches, or empty to keep each image's own colour.
+   */
+  private final Optional<Color> mTint;
+
+  /**
+   * Recently used image sets, keyed by application height.
+   */
+  private final LruCache<Integer, Map<HardwareSwitch, SwitchImages>> mCache =
+      new LruCache<>( CACHE_BYTES, HardwareImages::byteCount );
 
   private final Map
       <HardwareSwitch, HardwareComponent<HardwareSwitchState, Image>>
       mSwitches = new HashMap<>();
 
+  /**
+   * Most recently requested application height; requests for other heights
+   * that complete afterwards are cached but not displayed.
+   */
+  private volatile int mHeight;
+
   public HardwareImages( final Settings userSettings ) {
-    mAppDimensions = userSettings.createAppDimensions();
+    mUserSettings = userSettings;
+    mGovernor = userSettings.createRenderingGovernor();
+    mMaskImages = userSettings.isMaskImages();
+    mTint = userSettings.createTint();
+    mHeight = userSettings.getHeight();
+
+    final var switchImages = rasterize( mHeight, deviceScale() );
+    mCache.put( mHeight, switchImages );
+
+    for( final var entry : switchImages.entrySet() ) {
+      final var images = entry.getValue();
+      final var component = new HardwareComponent<HardwareSwitchState, Image>(
+          images.getInsets(), mGovernor );
+
+      images.getImages().forEach( component::put );
+
+      // All mouse switches share the same component.
+      for( final var hwSwitch : switches( entry.getKey() ) ) {
+        mSwitches.put( hwSwitch, component );
+      }
+    }
+  }
+
+  /**
+   * Replaces the images of all hardware components with images for the
+   * given application height. If the images for the height are cached, they
+   * are applied immediately, otherwise they are rasterized in the background
+   * and applied when ready. This must be called from the event dispatch
+   * thread.
+   *
+   * @param height    The new application height, in pixels.
+   * @param onResized Called on the event dispatch thread after the images
+   *                  have been replaced.
+   */
+  public void resize( final int height, final Runnable onResized ) {
+    mHeight = height;
+
+    final var cached = mCache.get( height );
+
+    if( cached == null ) {
+      final var deviceScale = deviceScale();
+
+      sExecutor.execute( () -> {
+        // Skip sizes that were passed over while waiting to run.
+        if( height == mHeight ) {
+          final var switchImages = rasterize( height, deviceScale );
+          mCache.put( height, switchImages );
+
+          invokeLater( () -> {
+            if( height == mHeight ) {
+              apply( switchImages, onResized );
+            }
+          } );
+        }
+      } );
+    }
+    else {
+      apply( cached, onResized );
+    }
+  }
+
+  public HardwareComponent<HardwareSwitchState, Image> get(
+      final HardwareSwitch hwSwitch ) {
+    return mSwitches.get( hwSwitch );
+  }
+
+  private void apply(
+      final Map<HardwareSwitch, SwitchImages> switchImages,
+      final Runnable onResized ) {
+    for( final var entry : switchImages.entrySet() ) {
+      final var images = entry.getValue();
+      final var component = get( entry.getKey() );
+
+      component.setImages( images.getImages(), images.getInsets() );
+    }
+
+    onResized.run();
+  }
+
+  /**
+   * Answers the scale of the display showing the application, or the default
+   * display before the application is shown.
+   *
+   * @return The number of device pixels per logical pixel.
+   */
+  private double deviceScale() {
+    final var component = get( KEY_REGULAR );
+    var config = component == null
+        ? null
+        : component.getGraphicsConfiguration();
+
+    if( config == null && !isHeadless() ) {
+      config = getLocalGraphicsEnvironment()
+          .getDefaultScreenDevice()
+          .getDefaultConfiguration();
+    }
+
+    return config == null ? 1 : config.getDefaultTransform().getScaleX();
+  }
+
+  /**
+   * Rasterizes all vector graphics to fit the given application height.
+   *
+   * @param height      The application height, in pixels.
+   * @param deviceScale The display scale to rasterize in advance.
+   * @return The images for each hardware component; mouse images are keyed
+   * by {@link HardwareSwitch#MOUSE_EXTRA}.
+   */
+  private Map<HardwareSwitch, SwitchImages> rasterize(
+      final int height, final double deviceScale ) {
+    final var dimensions = mUserSettings.createAppDimensions( height );
+    final var result = new LinkedHashMap<HardwareSwitch, SwitchImages>();
 
-    final var mouseReleased = mouseImage( "0" );
+    final var mouseReleased = mouseImage( "0", dimensions, deviceScale );
     final var mouseScale = mouseReleased.getValue();
-    final var mouseStates =
-        createHardwareComponent( MOUSE_EXTRA, mouseScale );
+    final var mouseStates = createSwitchImages( MOUSE_EXTRA, mouseScale );
 
     for( final var hwSwitch : mouseSwitches() ) {
       final var stateOn = state( hwSwitch, SWITCH_PRESSED );
       final var stateOff = state( hwSwitch, SWITCH_RELEASED );
-      final var imageDn = mouseImage( hwSwitch.toString() );
+      final var imageDn = mouseImage(
+          hwSwitch.toString(), dimensions, deviceScale );
 
       mouseStates.put( stateOn, imageDn.getKey() );
       mouseStates.put( stateOff, mouseReleased.getKey() );
-      mSwitches.put( hwSwitch, mouseStates );
     }
 
+    result.put( MOUSE_EXTRA, mouseStates );
+
+    // Key cap images are shared by all keys of any width.
+    final var caps = new HashMap<String, Pair<Image, DimensionTuple>>();
+
     for( final var key : keyboardSwitches() ) {
       final var stateOn = state( key, SWITCH_PRESSED );
       final var stateOff = state( key, SWITCH_RELEASED );
-      final var imageDn = keyDnImage( FILE_NAME_PREFIXES.get( key ) );
-      final var imageUp = keyUpImage( FILE_NAME_PREFIXES.get( key ) );
-      final var scale = imageDn.getValue();
-      final var keyStates = createHardwareComponent( key, scale );
-
-      keyStates.put( stateOn, imageDn.getKey() );
-      keyStates.put( stateOff, imageUp.getKey() );
-      mSwitches.put( key, keyStates );
+      final var prefix = FILE_NAME_PREFIXES.get( key );
+      final var capDn = keyCap( "dn", prefix, dimensions, deviceScale, caps );
+      final var capUp = keyCap( "up", prefix, dimensions, deviceScale, caps );
+      final var capScale = capDn.getValue();
+      final var slices = scaleSlices( prefix, capScale );
+      final var scale = keyScale( key, capScale );
+      final var keyStates = createSwitchImages( key, scale );
+      final var w = scale.getValue().width;
+      final var h = scale.getValue().height;
+
+      keyStates.put(
+          stateOn, new NineSliceImage( capDn.getKey(), slices, w, h ) );
+      keyStates.put(
+          stateOff, new NineSliceImage( capUp.getKey(), slices, w, h ) );
+      result.put( key, keyStates );
     }
+
+    return result;
+  }
+
+  /**
+   * Creates a key cap image whose variants are rasterized, then have their
+   * stretchable region squeezed.
+   *
+   * @param state       Key cap state directory, either "up" or "dn".
+   * @param prefix      Key cap image file name, without extension.
+   * @param dimensions  The application dimensions.
+   * @param deviceScale The display scale to rasterize in advance.
+   * @param caps        Key caps already created for the dimensions.
+   * @return The compact key cap image and the full key cap image scale.
+   */
+  private Pair<Image, DimensionTuple> keyCap(
+      final String state,
+      final String prefix,
+      final Dimension dimensions,
+      final double deviceScale,
+      final Map<String, Pair<Image, DimensionTuple>> caps ) {
+    return caps.computeIfAbsent( state + prefix, k -> {
+      final var path = format( "%s/%s/%s", DIR_IMAGES_KEYBOARD, state, prefix );
+      final var scale = calculateScale( path, dimensions );
+      final var slices = scaleSlices( prefix, scale );
+      final var middle = (int) ceil(
+          KEY_SLICE_MIDDLE * scale.getWidthRatio() );
+      final var w = slices.left + middle + slices.right;
+      final var h = scale.getValue().height;
+
+      final var image = new LazyMultiResolutionImage( w, h, size -> {
+        final var cap = rasterize(
+            path, mUserSettings.createAppDimensions( size.height ) );
+        final var variantSlices = NineSliceImage.scale(
+            slices, (double) size.width / w, (double) size.height / h );
+
+        return store(
+            NineSliceImage.compact( cap, variantSlices, size.width ),
+            "dn".equals( state ) );
+      } );
+
+      prepare( image, deviceScale );
+
+      return new Pair<>( image, scale );
+    } );
+  }
+
+  /**
+   * Converts a key cap's unstretched regions into pixels.
+   *
+   * @param prefix Key cap image file name, without extension.
+   * @param scale  The key cap image scale.
+   * @return The unstretched regions, in pixels.
+   */
+  private Insets scaleSlices(
+      final String prefix, final DimensionTuple scale ) {
+    final var slices = KEY_SLICES.get( prefix );
+    final var ratio = scale.getWidthRatio();
+
+    return new Insets(
+        0, (int) ceil( slices.left * ratio ),
+        0, (int) ceil( slices.right * ratio ) );
+  }
+
+  /**
+   * Computes the scale of a key, which may be wider than its key cap image.
+   *
+   * @param key   The key to scale.
+   * @param scale The key cap image scale.
+   * @return The key's size in vector graphic units and pixels.
+   */
+  private DimensionTuple keyScale(
+      final HardwareSwitch key, final DimensionTuple scale ) {
+    final var width = KEY_WIDTHS.get( key );
+    final var height = scale.getKey().height;
+    final var ratio = scale.getHeightRatio();
+
+    return new DimensionTuple(
+        new Dimension( width, height ),
+        new ScalableDimension( width * ratio, scale.getValue().getHeight() )
+    );
   }
 
   private PaddedInsets createInsets( final HardwareSwitch hwSwitch ) {
     return new PaddedInsets( SWITCH_INSETS.get( hwSwitch ) );
   }
 
-  private HardwareComponent<HardwareSwitchState, Image> createHardwareComponent(
+  private SwitchImages createSwitchImages(
       final HardwareSwitch hwSwitch,
       final DimensionTuple scale ) {
     final var insets = createInsets( hwSwitch );
     final var scaledInsets = insets.scale( scale );
 
-    return new HardwareComponent<>( scaledInsets );
-  }
-
-  public HardwareComponent<HardwareSwitchState, Image> get(
-      final HardwareSwitch hwSwitch ) {
-    return mSwitches.get( hwSwitch );
+    return new SwitchImages( scaledInsets );
   }
 
   private HardwareSwitchState state(
@@ -140,34 +444,91 @@ public final class HardwareImages {
     return new HardwareSwitchState( name, state );
   }
 
-  private Pair<Image, DimensionTuple> mouseImage( final String prefix ) {
-    return createImage( format( "%s/%s", DIR_IMAGES_MOUSE, prefix ) );
+  private Pair<Image, DimensionTuple> mouseImage(
+      final String prefix,
+      final Dimension dimensions,
+      final double deviceScale ) {
+    final var path = format( "%s/%s", DIR_IMAGES_MOUSE, prefix );
+    final var scale = calculateScale( path, dimensions );
+    final var image = new LazyMultiResolutionImage(
+        scale.getValue().width,
+        scale.getValue().height,
+        size -> store( rasterize( path, size ), !"0".equals( prefix ) ) );
+
+    prepare( image, deviceScale );
+
+    return new Pair<>( image, scale );
   }
 
-  private Pair<Image, DimensionTuple> keyImage(
-      final String state, final String prefix ) {
-    return createImage(
-        format( "%s/%s/%s", DIR_IMAGES_KEYBOARD, state, prefix )
-    );
+  private static DimensionTuple calculateScale(
+      final String path, final Dimension dimensions ) {
+    final var resource = format( "%s.svg", path );
+
+    try {
+      return sRasterizer.calculateScale( resource, dimensions );
+    } catch( final Exception ex ) {
+      rethrow( ex );
+    }
+
+    final var msg = format( "Missing resource %s", resource );
+    throw new RuntimeException( msg );
   }
 
-  private Pair<Image, DimensionTuple> keyUpImage( final String prefix ) {
-    return keyImage( "up", prefix );
+  /**
+   * Converts a rasterized image into the storage format selected by the user.
+   * Masks are tinted with the image's dominant colour to reproduce it, except
+   * for pressed switches when a tint is given. Images having more than one
+   * hue are kept in full colour, because a mask cannot reproduce them.
+   *
+   * @param image   The full-colour image.
+   * @param pressed Whether the image shows a pressed switch.
+   * @return The image to paint.
+   */
+  private Image store( final BufferedImage image, final boolean pressed ) {
+    if( !mMaskImages ) {
+      return image;
+    }
+
+    final var mask = new LuminanceMask( image );
+
+    if( !mask.isMonochrome() ) {
+      return image;
+    }
+
+    final var dominant = mask.getDominant();
+
+    return mask.tint( pressed ? mTint.orElse( dominant ) : dominant );
   }
 
-  private Pair<Image, DimensionTuple> keyDnImage( final String prefix ) {
-    return keyImage( "dn", prefix );
+  /**
+   * Rasterizes the variant of an image that will be painted first, so that
+   * the user interface need not wait for it.
+   *
+   * @param image       The image to prepare.
+   * @param deviceScale The number of device pixels per logical pixel.
+   */
+  private static void prepare(
+      final LazyMultiResolutionImage image, final double deviceScale ) {
+    image.getResolutionVariant(
+        image.getWidth( null ) * deviceScale,
+        image.getHeight( null ) * deviceScale );
   }
 
-  private Pair<Image, DimensionTuple> createImage( final String path ) {
+  /**
+   * Rasterizes a resolution variant of a vector graphic. The vector graphic
+   * is loaded for each variant rather than retained by the image, so that
+   * it can be reclaimed between uses.
+   *
+   * @param path The vector graphic to rasterize, without extension.
+   * @param size The maximum variant size, in device pixels.
+   * @return The vector graphic scaled to fit the given size.
+   */
+  private static BufferedImage rasterize(
+      final String path, final Dimension size ) {
     final var resource = format( "%s.svg", path );
 
     try {
-      final var d = sRasterizer.loadDiagram( resource );
-      final var scale = sRasterizer.calculateScale( d, getAppDimensions() );
-      final var image = sRasterizer.rasterize( d, getAppDimensions() );
-
-      return new Pair<>( image, scale );
+      return sRasterizer.rasterize( resource, size );
     } catch( final Exception ex ) {
       rethrow( ex );
     }
@@ -176,7 +537,60 @@ public final class HardwareImages {
     throw new RuntimeException( msg );
   }
 
-  private Dimension getAppDimensions() {
-    return mAppDimensions;
+  /**
+   * Returns the hardware switches that share the component keyed by the
+   * given switch.
+   *
+   * @param hwSwitch The key for a set of images.
+   * @return All mouse switches for the mouse, otherwise the given switch.
+   */
+  private static HardwareSwitch[] switches( final HardwareSwitch hwSwitch ) {
+    return hwSwitch.isMouse()
+        ? mouseSwitches()
+        : new HardwareSwitch[]{hwSwitch};
+  }
+
+  /**
+   * Estimates the memory used by a set of rasterized images. Images shared
+   * between states are counted once, as are all resolution variants created
+   * so far.
+   *
+   * @param switchImages The images to measure.
+   * @return The approximate number of bytes used by the images.
+   */
+  private static long byteCount(
+      final Map<HardwareSwitch, SwitchImages> switchImages ) {
+    final var unique = Collections.newSetFromMap(
+        new IdentityHashMap<Image, Boolean>() );
+
+    for( final var images : switchImages.values() ) {
+      for( final var image : images.getImages().values() ) {
+        final var source = image instanceof NineSliceImage
+            ? ((NineSliceImage) image).getCompactImage()
+            : image;
+
+        if( source instanceof MultiResolutionImage ) {
+          unique.addAll(
+              ((MultiResolutionImage) source).getResolutionVariants() );
+        }
+        else {
+          unique.add( source );
+        }
+      }
+    }
+
+    long bytes = 0;
+
+    for( final var image : unique ) {
+      if( image instanceof BufferedImage ) {
+        final var raster = ((BufferedImage) image).getRaster();
+        final var buffer = raster.getDataBuffer();
+        final var bits = DataBuffer.getDataTypeSize( buffer.getDataType() );
+
+        bytes += (long) buffer.getSize() * buffer.getNumBanks() * bits / 8;
+      }
+    }
+
+    return bytes;
   }
 }
@@ -28,26 +28,69 @@
 package com.whitemagicsoftware.kmcaster;
 
 import com.github.kwhat.jnativehook.GlobalScreen;
-import com.github.kwhat.jnativehook.NativeHookException;
+import com.whitemagicsoftware.kmcaster.export.SubtitleFormat;
+import com.whitemagicsoftware.kmcaster.export.SubtitleWriter;
 import com.whitemagicsoftware.kmcaster.listeners.DebugListener;
 import com.whitemagicsoftware.kmcaster.listeners.FrameDragListener;
+import com.whitemagicsoftware.kmcaster.listeners.FrameScaleListener;
+import com.whitemagicsoftware.kmcaster.listeners.HistoryListener;
 import com.whitemagicsoftware.kmcaster.listeners.KeyboardListener;
+import com.whitemagicsoftware.kmcaster.listeners.KeyboardViewListener;
 import com.whitemagicsoftware.kmcaster.listeners.MouseListener;
+import com.whitemagicsoftware.kmcaster.listeners.RateListener;
+import com.whitemagicsoftware.kmcaster.listeners.RolloverListener;
+import com.whitemagicsoftware.kmcaster.listeners.SessionListener;
+import com.whitemagicsoftware.kmcaster.listeners.ShortcutListener;
+import com.whitemagicsoftware.kmcaster.listeners.SubtitleListener;
+import com.whitemagicsoftware.kmcaster.listeners.UsageListener;
+import com.whitemagicsoftware.kmcaster.shortcuts.ChordDictionary;
+import com.whitemagicsoftware.kmcaster.stats.SessionLog;
+import com.whitemagicsoftware.kmcaster.stats.UsageFile;
+import com.whitemagicsoftware.kmcaster.stats.UsageTable;
+import com.whitemagicsoftware.kmcaster.ui.HistoryStrip;
+import com.whitemagicsoftware.kmcaster.ui.IdleFader;
+import com.whitemagicsoftware.kmcaster.ui.KeyboardLayout;
+import com.whitemagicsoftware.kmcaster.ui.KeyboardView;
+import com.whitemagicsoftware.kmcaster.ui.RolloverRow;
 import com.whitemagicsoftware.kmcaster.ui.TranslucentPanel;
+import com.whitemagicsoftware.kmcaster.util.StartupTrace;
 import picocli.CommandLine;
 import picocli.CommandLine.Help.Ansi.Style;
 
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.ActionEvent;
 import java.beans.PropertyChangeListener;
 import java.io.IOException;
-import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.util.StringJoiner;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.function.IntConsumer;
+import java.util.function.LongConsumer;
 
 import static com.github.kwhat.jnativehook.GlobalScreen.*;
-import static com.whitemagicsoftware.kmcaster.ui.FontLoader.initFonts;
+import static com.whitemagicsoftware.kmcaster.exceptions.Rethrowable.rethrow;
+import static com.whitemagicsoftware.kmcaster.ui.Constants.COLOUR_KEY_DN;
+import static com.whitemagicsoftware.kmcaster.ui.Constants.COLOUR_KEY_UP;
+import static com.whitemagicsoftware.kmcaster.ui.FontLoader.loadFont;
+import static com.whitemagicsoftware.kmcaster.util.StartupTrace.start;
+import static java.awt.event.InputEvent.CTRL_DOWN_MASK;
+import static java.awt.event.KeyEvent.*;
 import static java.lang.Integer.valueOf;
+import static java.lang.Math.min;
+import static java.lang.Math.pow;
+import static java.lang.Math.round;
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static java.util.logging.Level.OFF;
 import static java.util.logging.Logger.getLogger;
+import static javax.swing.KeyStroke.getKeyStroke;
 import static javax.swing.SwingUtilities.invokeLater;
 import static picocli.CommandLine.Help.ColorScheme;
 
@@ -69,25 +112,226 @@ import static picocli.CommandLine.Help.ColorScheme;
  * </ol>
  */
 public final class KmCaster extends JFrame {
+  /**
+   * Multiplier applied to the application height for each rescaling step.
+   */
+  private static final double SCALE_STEP = 1.1;
+
+  /**
+   * Maximum time to wait for the font to load and the native hook to register
+   * after the images are ready.
+   */
+  private static final long PREREQUISITE_TIMEOUT_SECONDS = 10;
+
+  /**
+   * Height of each row beneath the keys relative to the application height.
+   */
+  private static final float FOOTER_HEIGHT = .4f;
+
+  /**
+   * Caption text height relative to its row height.
+   */
+  private static final float CAPTION_TEXT = .6f;
+
   private final Settings mUserSettings = new Settings( this );
 
+  /**
+   * Completes when the native hook is registered.
+   */
+  private final CompletableFuture<Void> mHookRegistration;
+
+  /**
+   * Milliseconds between updates of the typing and clicking rates.
+   */
+  private static final int METER_REFRESH = 500;
+
+  /**
+   * Seconds between writing the usage tallies to the usage file.
+   */
+  private static final long STATS_FLUSH_SECONDS = 60;
+
+  /**
+   * Height of the whole keyboard relative to the application height.
+   */
+  private static final float KEYBOARD_HEIGHT = 2f;
+
+  /**
+   * Contains the hardware switch images or the whole keyboard.
+   */
+  private TranslucentPanel mSwitchPanel;
+
+  /**
+   * Keys to show when the whole keyboard is shown, otherwise {@code null}.
+   */
+  private KeyboardLayout mKeyboardLayout;
+
+  /**
+   * Shows the whole keyboard, or {@code null} if disabled.
+   */
+  private KeyboardView mKeyboardView;
+
+  /**
+   * Shows recent keystrokes, or {@code null} if disabled.
+   */
+  private HistoryStrip mHistoryStrip;
+
+  /**
+   * Shows every held regular key, or {@code null} if disabled.
+   */
+  private RolloverRow mRolloverRow;
+
+  /**
+   * Tallies key and shortcut usage, or {@code null} if not recorded.
+   */
+  private UsageTable mUsage;
+
+  /**
+   * Stores {@link #mUsage}, or {@code null} if usage is not recorded.
+   */
+  private UsageFile mUsageFile;
+
+  /**
+   * Shows the typing and clicking rates, or {@code null} if disabled.
+   */
+  private JLabel mMeter;
+
+  /**
+   * Names the actions for shortcuts, or {@code null} if none were loaded.
+   */
+  private ChordDictionary mChords;
+
+  /**
+   * Shows shortcut action names, or {@code null} if disabled.
+   */
+  private JLabel mCaption;
+
   /**
    * Constructs a window with the class name for its frame title.
+   *
+   * @param hookRegistration Completes when the native hook is registered.
    */
-  public KmCaster() {
+  public KmCaster( final CompletableFuture<Void> hookRegistration ) {
     super( KmCaster.class.getSimpleName() );
+
+    mHookRegistration = hookRegistration;
   }
 
+  /**
+   * Loads the configured font in the background and rasterizes the images
+   * while the prerequisites complete, then shows the window on the event
+   * dispatch thread. The image components are created on the calling thread,
+   * which is safe because they are not yet realized.
+   */
   public void init() {
-    final var hardwareImages = new HardwareImages( mUserSettings );
-    final var eventHandler = new EventHandler( hardwareImages, mUserSettings );
+    final var fontName = mUserSettings.getFontName();
+    final var fontLoad = runAsync( "Load font", () -> loadFont( fontName ) );
+    final HardwareImages hardwareImages;
+
+    try( final var ignored = start( "Load shortcuts" ) ) {
+      mChords = loadChords();
+    }
+
+    try( final var ignored = start( "Load keyboard layout" ) ) {
+      mKeyboardLayout = loadKeyboardLayout();
+    }
+
+    try( final var ignored = start( "Load usage statistics" ) ) {
+      loadUsage();
+    }
+
+    try( final var ignored = start( "Create hardware images" ) ) {
+      hardwareImages = new HardwareImages( mUserSettings );
+    }
+
+    try( final var ignored = start( "Wait for prerequisites" ) ) {
+      awaitPrerequisites( fontLoad, fontName );
+    }
+
+    invokeLater( () -> show( hardwareImages ) );
+  }
+
+  /**
+   * Blocks until the font is loaded and the native hook is registered.
+   *
+   * @param fontLoad Completes when the font is loaded.
+   * @param fontName The font being loaded, named if it fails to load in time.
+   * @throws IllegalStateException The prerequisites did not complete in
+   *                               time.
+   */
+  private void awaitPrerequisites(
+    final CompletableFuture<Void> fontLoad, final String fontName ) {
+    try {
+      CompletableFuture.allOf( mHookRegistration, fontLoad )
+                       .get( PREREQUISITE_TIMEOUT_SECONDS, SECONDS );
+    } catch( final TimeoutException e ) {
+      final var reasons = new StringJoiner( "; " );
+
+      if( !mHookRegistration.isDone() ) {
+        reasons.add(
+          "keyboard and mouse hook not registered (check that the desktop " +
+            "permits global input monitoring)" );
+      }
+
+      if( !fontLoad.isDone() ) {
+        reasons.add( format( "font '%s' not loaded", fontName ) );
+      }
+
+      throw new IllegalStateException( format(
+        "Not ready after %d seconds: %s",
+        PREREQUISITE_TIMEOUT_SECONDS, reasons ), e );
+    } catch( final ExecutionException e ) {
+      rethrow( e.getCause() );
+    } catch( final InterruptedException e ) {
+      Thread.currentThread().interrupt();
+      rethrow( e );
+    }
+  }
+
+  private void show( final HardwareImages hardwareImages ) {
+    final EventHandler eventHandler;
+    final var idleFader = new IdleFader( this, getIdleHide() );
+
+    try( final var ignored = start( "Create event handler" ) ) {
+      eventHandler =
+        new EventHandler( hardwareImages, mUserSettings, idleFader );
+    }
 
     initWindowFrame();
     initWindowContents( hardwareImages );
-    pack();
+
+    try( final var ignored = start( "Pack window" ) ) {
+      pack();
+    }
+
     setResizable( false );
-    initListeners( eventHandler );
-    setVisible( true );
+    initListeners( eventHandler, idleFader );
+    initScaleListeners( hardwareImages, eventHandler );
+
+    try( final var ignored = start( "Show window" ) ) {
+      setVisible( true );
+    }
+
+    idleFader.start();
+    reportStartup();
+  }
+
+  /**
+   * Prints the startup phase times and writes a trace file, if requested.
+   */
+  private void reportStartup() {
+    final var settings = getUserSettings();
+
+    if( settings.isStartupTraceEnabled() ) {
+      StartupTrace.report( System.out );
+
+      settings.getStartupTraceFile().ifPresent( path -> {
+        try {
+          StartupTrace.write( path );
+        } catch( final IOException e ) {
+          e.printStackTrace();
+        }
+      } );
+    }
   }
 
   private void initWindowFrame() {
@@ -104,26 +348,388 @@ public final class KmCaster extends JFrame {
   private void initWindowContents( final HardwareImages hardwareImages ) {
     final var hgap = getGapHorizontal();
     final var vgap = getGapVertical();
-    final var panel = new TranslucentPanel( hgap, vgap );
+    final var panel = new TranslucentPanel( hgap, vgap, createRateListener() );
+
+    if( mKeyboardLayout != null ) {
+      mKeyboardView = new KeyboardView(
+        mKeyboardLayout, getUserSettings().createFont(),
+        COLOUR_KEY_DN, COLOUR_KEY_UP );
+      resizeKeyboard();
+      panel.add( mKeyboardView );
+    }
 
+    // The hardware switches are replaced by the whole keyboard, if shown.
     for( final var hwSwitch : HardwareSwitch.values() ) {
       final var component = hardwareImages.get( hwSwitch );
 
       // If there is no image for the switch, it may be a mouse button without
       // a direct visual representation.
-      if( component != null ) {
+      if( component != null && mKeyboardView == null ) {
         panel.add( component );
       }
     }
 
     getContentPane().add( panel );
+    mSwitchPanel = panel;
+
+    final var footer = createFooter( hgap, vgap );
+
+    if( footer.getComponentCount() > 0 ) {
+      resizeFooter();
+      getContentPane().add( footer, BorderLayout.SOUTH );
+    }
   }
 
-  private void initListeners( final EventHandler eventHandler ) {
+  /**
+   * Creates the rows beneath the keys: the held keys, the history strip, the
+   * shortcut caption, and the rate meter, if enabled.
+   *
+   * @param hgap Horizontal padding around the rows.
+   * @param vgap Vertical padding between the rows.
+   * @return A panel that may have no rows.
+   */
+  private TranslucentPanel createFooter( final int hgap, final int vgap ) {
+    final var settings = getUserSettings();
+    final var rolloverSize = settings.getRolloverSize();
+    final var historySize = settings.getHistorySize();
+    final var footer = new TranslucentPanel( hgap, vgap );
+
+    footer.setLayout( new GridLayout( 0, 1, 0, vgap ) );
+    footer.setBorder( BorderFactory.createEmptyBorder( 0, hgap, vgap, hgap ) );
+
+    if( rolloverSize > 0 ) {
+      mRolloverRow = new RolloverRow(
+        rolloverSize, settings.createFont(), COLOUR_KEY_UP, COLOUR_KEY_DN );
+      footer.add( mRolloverRow );
+    }
+
+    if( historySize > 0 ) {
+      final var font = settings.createFont();
+
+      mHistoryStrip = new HistoryStrip( historySize, font, COLOUR_KEY_UP );
+      footer.add( mHistoryStrip );
+    }
+
+    if( mChords != null ) {
+      mCaption = new JLabel( "", SwingConstants.CENTER );
+      mCaption.setForeground( COLOUR_KEY_UP );
+      footer.add( mCaption );
+    }
+
+    if( settings.isMeterEnabled() ) {
+      mMeter = new JLabel( "", SwingConstants.CENTER );
+      mMeter.setForeground( COLOUR_KEY_UP );
+      footer.add( mMeter );
+    }
+
+    return footer;
+  }
+
+  /**
+   * Sizes the rows beneath the keys, if any, to span the hardware switches.
+   */
+  private void resizeFooter() {
+    final var width = mSwitchPanel.getPreferredSize().width;
+    final var height = getUserSettings().getHeight() * FOOTER_HEIGHT;
+    final var size = new Dimension(
+      width - 2 * getGapHorizontal(), round( height ) );
+
+    if( mRolloverRow != null ) {
+      mRolloverRow.setRowSize( size );
+    }
+
+    if( mHistoryStrip != null ) {
+      mHistoryStrip.setStripSize( size );
+    }
+
+    for( final var label : new JLabel[]{mCaption, mMeter} ) {
+      if( label != null ) {
+        final var font = getUserSettings().createFont();
+
+        label.setPreferredSize( size );
+        label.setFont( font.deriveFont( size.height * CAPTION_TEXT ) );
+      }
+    }
+  }
+
+  /**
+   * Sizes the whole keyboard, if shown, relative to the application height.
+   */
+  private void resizeKeyboard() {
+    if( mKeyboardView != null ) {
+      final var height = getUserSettings().getHeight() * KEYBOARD_HEIGHT;
+
+      mKeyboardView.setViewHeight( round( height ) );
+    }
+  }
+
+  /**
+   * Reads the keyboard layout, if the whole keyboard is to be shown.
+   *
+   * @return The layout, or {@code null} if the keyboard is not shown.
+   */
+  private KeyboardLayout loadKeyboardLayout() {
+    final var settings = getUserSettings();
+
+    if( !settings.isKeyboardEnabled() ) {
+      return null;
+    }
+
+    try {
+      return KeyboardLayout.load(
+        settings.getKeyboardLayoutFile().orElse( null ) );
+    } catch( final IOException e ) {
+      rethrow( e );
+      return null;
+    }
+  }
+
+  /**
+   * Opens the usage file, if usage is to be recorded, adding the tallies it
+   * holds to those recorded by this run.
+   */
+  private void loadUsage() {
+    final var file = getUserSettings().getStatsFile();
+
+    if( file.isPresent() ) {
+      final var usage = new UsageTable();
+
+      try {
+        mUsageFile = UsageFile.open( file.get(), usage );
+        mUsage = usage;
+      } catch( final IOException e ) {
+        rethrow( e );
+      }
+    }
+  }
+
+  /**
+   * Reads the shortcut dictionaries given on the command line.
+   *
+   * @return The shortcuts, or {@code null} if no dictionaries were given.
+   */
+  private ChordDictionary loadChords() {
+    final var files = getUserSettings().getShortcutFiles();
+
+    try {
+      return files.isEmpty() ? null : ChordDictionary.load( files );
+    } catch( final IOException e ) {
+      rethrow( e );
+      return null;
+    }
+  }
+
+  private void initListeners(
+    final EventHandler eventHandler, final IdleFader idleFader ) {
     initWindowDragListener( this );
     initMouseListener( eventHandler );
     initKeyboardListener( eventHandler );
     initDebugListener();
+    initRateListener( idleFader );
+    initUsageListener();
+    initSessionListener();
+    initSubtitleListener();
+  }
+
+  /**
+   * Writes key presses as subtitle cues, if enabled, timed from when the
+   * listener is added. The last cue is written when the application exits.
+   */
+  private void initSubtitleListener() {
+    final var settings = getUserSettings();
+    final var file = settings.getSubtitlesFile();
+
+    if( file.isEmpty() ) {
+      return;
+    }
+
+    try {
+      final var path = file.get();
+      final var writer = new SubtitleWriter(
+        Files.newBufferedWriter( path, UTF_8 ),
+        SubtitleFormat.valueFrom( path ),
+        SubtitleWriter.DELAY, 0, settings.getKeyCount() );
+
+      addNativeKeyListener( new SubtitleListener( writer ) );
+
+      Runtime.getRuntime().addShutdownHook( new Thread( () -> {
+        try {
+          writer.close();
+        } catch( final IOException e ) {
+          e.printStackTrace();
+        }
+      }, "subtitles" ) );
+    } catch( final IOException e ) {
+      rethrow( e );
+    }
+  }
+
+  /**
+   * Records every key event in a new session log, if enabled. The log is
+   * closed when the application exits.
+   */
+  private void initSessionListener() {
+    final var directory = getUserSettings().getRecordDirectory();
+
+    if( directory.isEmpty() ) {
+      return;
+    }
+
+    try {
+      final var log = SessionLog.create( directory.get() );
+
+      addNativeKeyListener( new SessionListener( log ) );
+
+      Runtime.getRuntime().addShutdownHook( new Thread( () -> {
+        try {
+          log.close();
+        } catch( final IOException e ) {
+          e.printStackTrace();
+        }
+      }, "session" ) );
+    } catch( final IOException e ) {
+      rethrow( e );
+    }
+  }
+
+  /**
+   * Tallies key and shortcut usage, if enabled. The tallies are written to
+   * the usage file periodically on a background thread, and when the
+   * application exits, so that the native hook's thread is never blocked.
+   */
+  private void initUsageListener() {
+    final var usage = mUsage;
+    final var file = mUsageFile;
+
+    if( usage == null ) {
+      return;
+    }
+
+    addNativeKeyListener( new UsageListener( usage ) );
+
+    final var flusher = newSingleThreadScheduledExecutor( runnable -> {
+      final var thread = new Thread( runnable, "usage" );
+      thread.setDaemon( true );
+      return thread;
+    } );
+
+    flusher.scheduleWithFixedDelay(
+      () -> file.write( usage ),
+      STATS_FLUSH_SECONDS, STATS_FLUSH_SECONDS, SECONDS );
+
+    Runtime.getRuntime().addShutdownHook( new Thread( () -> {
+      flusher.shutdown();
+      file.write( usage );
+
+      try {
+        file.close();
+      } catch( final IOException e ) {
+        e.printStackTrace();
+      }
+    }, "usage" ) );
+  }
+
+  /**
+   * Measures the typing and clicking rates, which are shown beneath the keys
+   * and, when debugging, written to standard output. The rates are refreshed
+   * at a fixed interval rather than for every event. The refresh stops while
+   * the window is hidden for being idle.
+   *
+   * @param idleFader Suspends the refresh while the window is hidden.
+   */
+  private void initRateListener( final IdleFader idleFader ) {
+    final var meter = mMeter;
+    final var debug = isDebugEnabled();
+
+    if( meter == null && !debug ) {
+      return;
+    }
+
+    final var rates = new RateListener();
+    addNativeKeyListener( rates );
+    addNativeMouseListener( rates );
+
+    idleFader.startSuspendable( new Timer( METER_REFRESH, e -> {
+      final var text = format(
+        "%.1f keys/s  %.0f wpm  %.1f clicks/s",
+        rates.getKeysPerSecond(),
+        rates.getWordsPerMinute(),
+        rates.getClicksPerSecond() );
+
+      if( meter != null ) {
+        meter.setText( text );
+      }
+
+      if( debug ) {
+        System.out.println( text );
+      }
+    } ) );
+  }
+
+  /**
+   * Allows the user to rescale the window using Ctrl with the mouse wheel or
+   * with the plus and minus keys, while the window has focus.
+   */
+  private void initScaleListeners(
+    final HardwareImages hardwareImages, final EventHandler eventHandler ) {
+    final IntConsumer scaler =
+      steps -> rescale( hardwareImages, eventHandler, steps );
+
+    addMouseWheelListener( new FrameScaleListener( scaler ) );
+
+    final var inputMap = getRootPane().getInputMap(
+      JComponent.WHEN_IN_FOCUSED_WINDOW );
+    final var actionMap = getRootPane().getActionMap();
+
+    for( final var key : new int[]{VK_EQUALS, VK_PLUS, VK_ADD} ) {
+      inputMap.put( getKeyStroke( key, CTRL_DOWN_MASK ), "grow" );
+    }
+
+    for( final var key : new int[]{VK_MINUS, VK_SUBTRACT} ) {
+      inputMap.put( getKeyStroke( key, CTRL_DOWN_MASK ), "shrink" );
+    }
+
+    actionMap.put( "grow", createScaleAction( scaler, 1 ) );
+    actionMap.put( "shrink", createScaleAction( scaler, -1 ) );
+  }
+
+  private Action createScaleAction(
+    final IntConsumer scaler, final int steps ) {
+    return new AbstractAction() {
+      @Override
+      public void actionPerformed( final ActionEvent e ) {
+        scaler.accept( steps );
+      }
+    };
+  }
+
+  /**
+   * Changes the application height by the given number of steps. The new
+   * images are rasterized in the background (unless cached); the window is
+   * resized once they are ready.
+   *
+   * @param steps Positive values enlarge, negative values shrink.
+   */
+  private void rescale(
+    final HardwareImages hardwareImages,
+    final EventHandler eventHandler,
+    final int steps ) {
+    final var settings = getUserSettings();
+    final var height = settings.getHeight();
+    final var scaled = (int) round( height * pow( SCALE_STEP, steps ) );
+    final var screen = getGraphicsConfiguration().getBounds().height;
+
+    // Change by at least one pixel, without exceeding the screen height.
+    settings.setHeight( min(
+      scaled == height ? height + Integer.signum( steps ) : scaled, screen
+    ) );
+
+    hardwareImages.resize( settings.getHeight(), () -> {
+      resizeKeyboard();
+      resizeFooter();
+      pack();
+      eventHandler.relabel();
+    } );
   }
 
   private void initWindowDragListener( final JFrame listener ) {
@@ -144,6 +750,29 @@ public final class KmCaster extends JFrame {
     final KeyboardListener keyboardListener = new KeyboardListener();
     addNativeKeyListener( keyboardListener );
     keyboardListener.addPropertyChangeListener( listener );
+
+    if( mKeyboardView != null ) {
+      addNativeKeyListener( new KeyboardViewListener( mKeyboardView ) );
+    }
+
+    if( mRolloverRow != null ) {
+      addNativeKeyListener( new RolloverListener( mRolloverRow ) );
+    }
+
+    if( mHistoryStrip != null ) {
+      keyboardListener.addPropertyChangeListener(
+        new HistoryListener( mHistoryStrip ) );
+    }
+
+    if( mCaption != null ) {
+      final var settings = getUserSettings();
+      final var sequences =
+        mChords.compileSequences( settings.getSequenceTimeout() );
+
+      keyboardListener.addPropertyChangeListener( new ShortcutListener(
+        mChords, sequences, mCaption, settings.getDelayKeyRegular() ) );
+    }
+
     keyboardListener.initModifiers();
   }
 
@@ -154,6 +783,18 @@ public final class KmCaster extends JFrame {
     }
   }
 
+  /**
+   * Creates a listener that writes the number of pixels repainted per second
+   * to standard output when debugging is enabled.
+   *
+   * @return A listener that receives the repaint rate.
+   */
+  private LongConsumer createRateListener() {
+    return isDebugEnabled()
+      ? rate -> System.out.printf( "Repainted %d px/s%n", rate )
+      : rate -> {};
+  }
+
   @SuppressWarnings( "PointlessArithmeticExpression" )
   private Color getUserBgColour() {
     final var hex = getUserSettings().getBackgroundColour();
@@ -181,6 +822,10 @@ public final class KmCaster extends JFrame {
     return getUserSettings().getGapVertical();
   }
 
+  private int getIdleHide() {
+    return getUserSettings().getIdleHide();
+  }
+
   private boolean isDebugEnabled() {
     return getUserSettings().isDebugEnabled();
   }
@@ -210,31 +855,90 @@ public final class KmCaster extends JFrame {
   }
 
   /**
-   * Main entry point.
+   * Runs a startup task in the background.
    *
-   * @param args Unused.
+   * @param phase The startup phase name to trace.
+   * @param task  The task to run.
+   * @return Completes when the task finishes, exceptionally if it failed.
    */
-  public static void main( final String[] args )
-    throws NativeHookException, IOException, URISyntaxException {
-    initFonts();
-    disableNativeHookLogger();
-    registerNativeHook();
+  private static CompletableFuture<Void> runAsync(
+    final String phase, final Callable<?> task ) {
+    return CompletableFuture.runAsync( () -> {
+      try( final var ignored = start( phase ) ) {
+        task.call();
+      } catch( final Exception e ) {
+        throw new CompletionException( e );
+      }
+    } );
+  }
+
+  /**
+   * Answers whether the command line runs a subcommand instead of the
+   * application. This is checked before the command line is parsed; a
+   * subcommand may follow options that set the overlay's appearance.
+   *
+   * @param args Command-line arguments, see {@link Settings}.
+   * @return {@code true} if an argument names a subcommand.
+   */
+  private static boolean isSubcommand( final String[] args ) {
+    final var command =
+      Settings.class.getAnnotation( CommandLine.Command.class );
+
+    for( final var subcommand : command.subcommands() ) {
+      final var name =
+        subcommand.getAnnotation( CommandLine.Command.class ).name();
+
+      for( final var arg : args ) {
+        if( arg.equals( name ) ) {
+          return true;
+        }
+      }
+    }
+
+    return false;
+  }
 
-    while( !isNativeHookRegistered() ) {
-      Thread.yield();
+  /**
+   * Main entry point. The native hook is registered in the background while
+   * the command line is parsed, the configured font is loaded, and the images
+   * are rasterized.
+   *
+   * @param args Command-line arguments, see {@link Settings}.
+   */
+  public static void main( final String[] args ) {
+    // Subcommands, such as the usage report, need neither the native hook
+    // nor the window.
+    if( isSubcommand( args ) ) {
+      final var parser = new CommandLine( new Settings( null ) );
+      parser.setColorScheme( createColourScheme() );
+      System.exit( parser.execute( args ) );
     }
 
-    final var kc = new KmCaster();
+    disableNativeHookLogger();
+
+    final var hookRegistration = runAsync( "Register native hook", () -> {
+      registerNativeHook();
+      return null;
+    } );
+
+    final var kc = new KmCaster( hookRegistration );
     final var parser = new CommandLine( kc.getUserSettings() );
+    final var parsing = start( "Parse command line" );
+
     parser.setColorScheme( createColourScheme() );
+    parser.setExecutionStrategy( parseResult -> {
+      parsing.close();
+      return new CommandLine.RunLast().execute( parseResult );
+    } );
 
-    invokeLater( () -> {
-      final var exitCode = parser.execute( args );
-      final var parseResult = parser.getParseResult();
+    final var exitCode = parser.execute( args );
+    final var parseResult = parser.getParseResult();
 
-      if( parseResult.isUsageHelpRequested() ) {
-        System.exit( exitCode );
-      }
-    } );
+    if( exitCode != 0 ||
+      parseResult == null ||
+      parseResult.isUsageHelpRequested() ||
+      parseResult.isVersionHelpRequested() ) {
+      System.exit( exitCode );
+    }
   }
 }
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2023 White Magic Software, Ltd.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.whitemagicsoftware.kmcaster;
+
+import static java.lang.System.nanoTime;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Responsible for selecting the {@link RenderingProfile} used to paint
+ * images on screen. When adaptive, the governor tracks a moving average of
+ * paint durations: bursts that exceed the frame budget step down to a
+ * faster profile, and the profile steps back up after a quiet period. No
+ * timers are used; the decisions are made while painting.
+ */
+public final class RenderingGovernor {
+  /**
+   * Maximum average time to paint a single hardware switch.
+   */
+  private static final long FRAME_BUDGET = MILLISECONDS.toNanos( 4 );
+
+  /**
+   * Time without exceeding the budget before improving quality.
+   */
+  private static final long RECOVERY = MILLISECONDS.toNanos( 1000 );
+
+  /**
+   * Weight given to the most recent paint duration in the moving average.
+   */
+  private static final double SMOOTHING = 0.25;
+
+  /**
+   * Best quality profile that may be used.
+   */
+  private final RenderingProfile mCeiling;
+
+  /**
+   * Indicates whether the profile may change while painting.
+   */
+  private final boolean mAdaptive;
+
+  private RenderingProfile mProfile;
+
+  /**
+   * Moving average of paint durations, in nanoseconds.
+   */
+  private double mAverage;
+
+  /**
+   * Time when the frame budget was last exceeded, in nanoseconds.
+   */
+  private long mLastOverrun = nanoTime();
+
+  /**
+   * Creates a governor that either keeps to the given profile or adapts
+   * to the painting load, never exceeding the given profile's quality.
+   *
+   * @param profile  The initial and highest quality profile.
+   * @param adaptive {@code true} to change the profile based on load.
+   */
+  public RenderingGovernor(
+    final RenderingProfile profile, final boolean adaptive ) {
+    assert profile != null;
+
+    mCeiling = profile;
+    mProfile = profile;
+    mAdaptive = adaptive;
+  }
+
+  /**
+   * Returns the profile to use for the next paint. This must be called from
+   * the event dispatch thread.
+   *
+   * @return The rendering profile to apply.
+   */
+  public RenderingProfile getProfile() {
+    if( mAdaptive && mProfile != mCeiling &&
+      nanoTime() - mLastOverrun > RECOVERY ) {
+      mProfile = mProfile.better();
+      mLastOverrun = nanoTime();
+    }
+
+    return mProfile;
+  }
+
+  /**
+   * Records how long a paint took. This must be called from the event
+   * dispatch thread.
+   *
+   * @param duration Time spent painting, in nanoseconds.
+   */
+  public void record( final long duration ) {
+    if( mAdaptive ) {
+      mAverage += SMOOTHING * (duration - mAverage);
+
+      if( mAverage > FRAME_BUDGET ) {
+        mProfile = mProfile.faster();
+        mLastOverrun = nanoTime();
+
+        // Measure the new profile without the prior profile's history.
+        mAverage = 0;
+      }
+    }
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2023 White Magic Software, Ltd.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.whitemagicsoftware.kmcaster;
+
+import java.util.Map;
+
+import static com.whitemagicsoftware.kmcaster.SvgRasterizer.RENDERING_HINTS;
+import static java.awt.RenderingHints.*;
+import static java.util.Map.entry;
+
+/**
+ * Defines sets of rendering hints that trade visual fidelity for speed when
+ * painting the rasterized images on screen. Rasterizing the vector graphics
+ * always uses {@link SvgRasterizer#RENDERING_HINTS}.
+ */
+public enum RenderingProfile {
+  /**
+   * Same hints as used to rasterize the vector graphics.
+   */
+  QUALITY( RENDERING_HINTS ),
+
+  /**
+   * Keeps bilinear interpolation and anti-aliasing, uses platform defaults
+   * for the remaining hints.
+   */
+  BALANCED( Map.ofEntries(
+    entry( KEY_ANTIALIASING, VALUE_ANTIALIAS_ON ),
+    entry( KEY_ALPHA_INTERPOLATION, VALUE_ALPHA_INTERPOLATION_DEFAULT ),
+    entry( KEY_COLOR_RENDERING, VALUE_COLOR_RENDER_DEFAULT ),
+    entry( KEY_DITHERING, VALUE_DITHER_DISABLE ),
+    entry( KEY_INTERPOLATION, VALUE_INTERPOLATION_BILINEAR ),
+    entry( KEY_RENDERING, VALUE_RENDER_DEFAULT ),
+    entry( KEY_STROKE_CONTROL, VALUE_STROKE_NORMALIZE ),
+    entry( KEY_TEXT_ANTIALIASING, VALUE_TEXT_ANTIALIAS_ON )
+  ) ),
+
+  /**
+   * Prefers the fastest algorithms, such as nearest neighbour interpolation.
+   */
+  SPEED( Map.ofEntries(
+    entry( KEY_ANTIALIASING, VALUE_ANTIALIAS_OFF ),
+    entry( KEY_ALPHA_INTERPOLATION, VALUE_ALPHA_INTERPOLATION_SPEED ),
+    entry( KEY_COLOR_RENDERING, VALUE_COLOR_RENDER_SPEED ),
+    entry( KEY_DITHERING, VALUE_DITHER_DISABLE ),
+    entry( KEY_INTERPOLATION, VALUE_INTERPOLATION_NEAREST_NEIGHBOR ),
+    entry( KEY_RENDERING, VALUE_RENDER_SPEED ),
+    entry( KEY_STROKE_CONTROL, VALUE_STROKE_NORMALIZE ),
+    entry( KEY_TEXT_ANTIALIASING, VALUE_TEXT_ANTIALIAS_DEFAULT )
+  ) );
+
+  private final Map<Object, Object> mHints;
+
+  RenderingProfile( final Map<Object, Object> hints ) {
+    mHints = hints;
+  }
+
+  /**
+   * Returns the rendering hints to apply to a graphics context.
+   *
+   * @return An immutable map of rendering hints.
+   */
+  public Map<Object, Object> getHints() {
+    return mHints;
+  }
+
+  /**
+   * Returns the next profile that favours speed over quality.
+   *
+   * @return The next faster profile, or this profile if it is the fastest.
+   */
+  public RenderingProfile faster() {
+    final var profiles = values();
+    return profiles[ Math.min( ordinal() + 1, profiles.length - 1 ) ];
+  }
+
+  /**
+   * Returns the next profile that favours quality over speed.
+   *
+   * @return The next higher quality profile, or this profile if it is the
+   * highest quality.
+   */
+  public RenderingProfile better() {
+    return values()[ Math.max( ordinal() - 1, 0 ) ];
+  }
+}
@@ -27,20 +27,38 @@
  */
 package com.whitemagicsoftware.kmcaster;
 
+import com.whitemagicsoftware.kmcaster.export.FrameExport;
+import com.whitemagicsoftware.kmcaster.export.SubtitleExport;
+import com.whitemagicsoftware.kmcaster.stats.SessionAnalysis;
+import com.whitemagicsoftware.kmcaster.stats.SessionLog;
+import com.whitemagicsoftware.kmcaster.stats.UsageFile;
+import com.whitemagicsoftware.kmcaster.stats.UsageReport;
 import picocli.CommandLine;
 
 import java.awt.*;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.Callable;
+import java.util.stream.Stream;
 
 import static java.awt.Font.*;
+import static java.util.Locale.ROOT;
 import static java.util.Map.entry;
-import static javax.swing.SwingUtilities.invokeLater;
 
 @CommandLine.Command(
   name = "KmCaster",
   mixinStandardHelpOptions = true,
-  description = "Displays key presses and mouse clicks on the screen."
+  description = "Displays key presses and mouse clicks on the screen.",
+  subcommands = {
+    UsageReport.class,
+    SessionAnalysis.class,
+    SubtitleExport.class,
+    FrameExport.class
+  }
 )
 @SuppressWarnings( {"FieldMayBeFinal", "CanBeFinal"} )
 public final class Settings implements Callable<Integer> {
@@ -59,6 +77,11 @@ public final class Settings implements Callable<Integer> {
     entry( "bold+italic", BOLD + ITALIC )
   );
 
+  /**
+   * Value for {@link #mRendering} that adapts the profile to the load.
+   */
+  private static final String RENDERING_ADAPTIVE = "adaptive";
+
   /**
    * Executable class.
    */
@@ -160,6 +183,18 @@ public final class Settings implements Callable<Integer> {
   )
   private int mGapVertical = 5;
 
+  /**
+   * Milliseconds without input before the application fades out.
+   */
+  @CommandLine.Option(
+    names = {"-i", "--idle-hide"},
+    description =
+      "Hide after inactivity, 0 never hides (${DEFAULT-VALUE} milliseconds)",
+    paramLabel = "ms",
+    defaultValue = "0"
+  )
+  private int mIdleHide = 0;
+
   /**
    * Number of times to count a key press before displaying +.
    */
@@ -172,6 +207,78 @@ public final class Settings implements Callable<Integer> {
   )
   private int mKeyCount = 9;
 
+  /**
+   * Number of recent keystrokes to show beneath the keys, zero to disable.
+   */
+  @CommandLine.Option(
+    names = {"--history"},
+    description =
+      "Recent keystrokes to show (${DEFAULT-VALUE} disables)",
+    paramLabel = "number",
+    defaultValue = "0"
+  )
+  private int mHistorySize = 0;
+
+  /**
+   * Layout file for the whole keyboard, empty for the default layout.
+   */
+  @CommandLine.Option(
+    names = {"--keyboard"},
+    description =
+      "Show a whole keyboard; optionally read its layout from a file",
+    paramLabel = "file",
+    arity = "0..1",
+    fallbackValue = "",
+    defaultValue = CommandLine.Option.NULL_VALUE
+  )
+  private String mKeyboardLayout;
+
+  /**
+   * Show the typing and clicking rates beneath the keys.
+   */
+  @CommandLine.Option(
+    names = {"--meter"},
+    description =
+      "Show keys per second, words per minute, and clicks per second",
+    defaultValue = "false"
+  )
+  private boolean mMeter = false;
+
+  /**
+   * Number of held keys to show at once beneath the keys, zero to disable.
+   */
+  @CommandLine.Option(
+    names = {"--rollover"},
+    description =
+      "Held keys to show at once (${DEFAULT-VALUE} disables)",
+    paramLabel = "number",
+    defaultValue = "0"
+  )
+  private int mRolloverSize = 0;
+
+  /**
+   * Files that name the actions performed by keyboard shortcuts.
+   */
+  @CommandLine.Option(
+    names = {"--shortcuts"},
+    description =
+      "Shortcut dictionary, lines of 'Ctrl+Shift+T = Reopen tab' (repeatable)",
+    paramLabel = "file"
+  )
+  private List<Path> mShortcutFiles = new ArrayList<>();
+
+  /**
+   * Milliseconds to wait for the next keystroke of a multi-stroke shortcut.
+   */
+  @CommandLine.Option(
+    names = {"--sequence-timeout"},
+    description =
+      "Multi-stroke shortcut timeout (${DEFAULT-VALUE} milliseconds)",
+    paramLabel = "ms",
+    defaultValue = "1000"
+  )
+  private int mSequenceTimeout = 1000;
+
   /**
    * Milliseconds to wait before releasing (clearing) any modifier key.
    */
@@ -198,6 +305,20 @@ public final class Settings implements Callable<Integer> {
   )
   private int mHeight = 100;
 
+  /**
+   * Rendering hints to use when painting images on screen.
+   */
+  @CommandLine.Option(
+    names = {"-r", "--rendering"},
+    description =
+      "${COMPLETION-CANDIDATES} (${DEFAULT-VALUE})",
+    paramLabel = "string",
+    defaultValue = RENDERING_ADAPTIVE,
+    converter = RenderingConverter.class,
+    completionCandidates = RenderingNames.class
+  )
+  private String mRendering = RENDERING_ADAPTIVE;
+
   /**
    * Milliseconds to wait before releasing (clearing) a mouse scroll event.
    */
@@ -210,9 +331,88 @@ public final class Settings implements Callable<Integer> {
   )
   private int mDelayMouseScroll = 300;
 
-  public Settings( final KmCaster kmCaster ) {
-    assert kmCaster != null;
+  /**
+   * File that accumulates key and shortcut usage, empty for the default.
+   */
+  @CommandLine.Option(
+    names = {"--stats"},
+    description =
+      "Record key and shortcut usage (default file: ~/.kmcaster/usage)",
+    paramLabel = "file",
+    arity = "0..1",
+    fallbackValue = "",
+    defaultValue = CommandLine.Option.NULL_VALUE
+  )
+  private String mStatsFile;
+
+  /**
+   * Directory for session logs, empty for the default.
+   */
+  @CommandLine.Option(
+    names = {"--record"},
+    description =
+      "Record every key event (default directory: ~/.kmcaster/sessions)",
+    paramLabel = "dir",
+    arity = "0..1",
+    fallbackValue = "",
+    defaultValue = CommandLine.Option.NULL_VALUE
+  )
+  private String mRecordDirectory;
+
+  /**
+   * File that receives subtitle cues while keys are pressed.
+   */
+  @CommandLine.Option(
+    names = {"--subtitles"},
+    description = "Write key presses as SRT or WebVTT subtitles",
+    paramLabel = "file"
+  )
+  private Path mSubtitlesFile;
+
+  /**
+   * Startup timing report, with an optional trace file.
+   */
+  @CommandLine.Option(
+    names = {"--startup-trace"},
+    description =
+      "Print startup phase times; optionally write a Chrome trace file",
+    paramLabel = "file",
+    arity = "0..1",
+    fallbackValue = "",
+    defaultValue = CommandLine.Option.NULL_VALUE
+  )
+  private String mStartupTrace;
+
+  /**
+   * Store images as 8-bit luminance masks to reduce memory use.
+   */
+  @CommandLine.Option(
+    names = {"--mask-images"},
+    description =
+      "Store single-hue images as 8-bit masks, a quarter of the memory",
+    defaultValue = "false"
+  )
+  private boolean mMaskImages = false;
 
+  /**
+   * Key colour for pressed switches, which implies mask storage.
+   */
+  @CommandLine.Option(
+    names = {"-t", "--tint"},
+    description =
+      "Pressed colour (RGB); implies --mask-images",
+    paramLabel = "hex",
+    defaultValue = ""
+  )
+  private String mTint = "";
+
+  /**
+   * Creates settings that launch the given application once parsed.
+   *
+   * @param kmCaster The application to launch, which may be {@code null}
+   *                 if the settings are only parsed, never called.
+   */
+  public Settings( final KmCaster kmCaster ) {
     mKmCaster = kmCaster;
   }
 
@@ -224,7 +424,7 @@ public final class Settings implements Callable<Integer> {
    */
   @Override
   public Integer call() {
-    invokeLater( mKmCaster::init );
+    mKmCaster.init();
     return 0;
   }
 
@@ -244,10 +444,49 @@ public final class Settings implements Callable<Integer> {
     return mDelayMouseScroll;
   }
 
+  public int getIdleHide() {
+    return mIdleHide;
+  }
+
   public int getKeyCount() {
     return mKeyCount < 2 ? 2 : mKeyCount;
   }
 
+  public int getHistorySize() {
+    return Math.max( mHistorySize, 0 );
+  }
+
+  public boolean isKeyboardEnabled() {
+    return mKeyboardLayout != null;
+  }
+
+  /**
+   * Returns the keyboard layout file, if one was given.
+   *
+   * @return The layout file, or empty to use the default layout.
+   */
+  public Optional<Path> getKeyboardLayoutFile() {
+    return mKeyboardLayout == null || mKeyboardLayout.isBlank()
+      ? Optional.empty()
+      : Optional.of( Path.of( mKeyboardLayout ) );
+  }
+
+  public int getRolloverSize() {
+    return Math.max( mRolloverSize, 0 );
+  }
+
+  public List<Path> getShortcutFiles() {
+    return mShortcutFiles;
+  }
+
+  public int getSequenceTimeout() {
+    return Math.max( mSequenceTimeout, 0 );
+  }
+
+  public String getFontName() {
+    return mFontName;
+  }
+
   @SuppressWarnings( "MagicConstant" )
   public Font createFont() {
     final var style = FONT_STYLES.getOrDefault(
@@ -257,8 +496,66 @@ public final class Settings implements Callable<Integer> {
     return new Font( mFontName, style, 100 );
   }
 
+  /**
+   * Creates the governor that selects rendering hints for painting. The
+   * adaptive profile adapts to the load, starting at best quality.
+   *
+   * @return A fixed or adaptive {@link RenderingGovernor}.
+   */
+  public RenderingGovernor createRenderingGovernor() {
+    if( RENDERING_ADAPTIVE.equals( mRendering ) ) {
+      return new RenderingGovernor( RenderingProfile.QUALITY, true );
+    }
+
+    final var profile =
+      RenderingProfile.valueOf( mRendering.toUpperCase( ROOT ) );
+
+    return new RenderingGovernor( profile, false );
+  }
+
+  /**
+   * Answers whether images are stored as luminance masks, which use a
+   * quarter of the memory of full-colour images. Tinting requires masks.
+   *
+   * @return {@code true} if masks were requested or a tint was given.
+   */
+  public boolean isMaskImages() {
+    return mMaskImages || !mTint.isBlank();
+  }
+
+  /**
+   * Creates the colour for pressed switches. Released switches, and pressed
+   * switches when no tint is given, keep their original colours.
+   *
+   * @return The pressed switch colour, or empty to keep each image's own.
+   */
+  public Optional<Color> createTint() {
+    final var hex = mTint.startsWith( "#" ) ? mTint.substring( 1 ) : mTint;
+
+    try {
+      return hex.isBlank()
+        ? Optional.empty()
+        : Optional.of( new Color( Integer.parseInt( hex, 16 ) ) );
+    } catch( final NumberFormatException e ) {
+      e.printStackTrace();
+    }
+
+    return Optional.empty();
+  }
+
   public Dimension createAppDimensions() {
-    return new Dimension( 1024 + getHeight(), getHeight() );
+    return createAppDimensions( getHeight() );
+  }
+
+  /**
+   * Creates the application dimensions for the given height, which need not
+   * be the user-specified height.
+   *
+   * @param height The application height, in pixels.
+   * @return The maximum application width and height.
+   */
+  public Dimension createAppDimensions( final int height ) {
+    return new Dimension( 1024 + height, height );
   }
 
   /**
@@ -266,10 +563,19 @@ public final class Settings implements Callable<Integer> {
    *
    * @return The application height, in pixels.
    */
-  private int getHeight() {
+  public int getHeight() {
     return mHeight < MIN_HEIGHT_PX ? MIN_HEIGHT_PX : mHeight;
   }
 
+  /**
+   * Changes the application height, such as when rescaling at runtime.
+   *
+   * @param height The application height, in pixels.
+   */
+  public void setHeight( final int height ) {
+    mHeight = Math.max( height, MIN_HEIGHT_PX );
+  }
+
   public int getGapHorizontal() {
     return mGapHorizontal;
   }
@@ -282,7 +588,93 @@ public final class Settings implements Callable<Integer> {
     return mBackgroundColour;
   }
 
+  public boolean isStartupTraceEnabled() {
+    return mStartupTrace != null;
+  }
+
+  /**
+   * Answers where to write the startup trace events.
+   *
+   * @return The trace file, or empty to print the startup phases only.
+   */
+  public Optional<Path> getStartupTraceFile() {
+    return mStartupTrace == null || mStartupTrace.isBlank()
+      ? Optional.empty()
+      : Optional.of( Path.of( mStartupTrace ) );
+  }
+
+  /**
+   * Returns the file that accumulates key and shortcut usage.
+   *
+   * @return The usage file, or empty if usage is not recorded.
+   */
+  public Optional<Path> getStatsFile() {
+    return mStatsFile == null
+      ? Optional.empty()
+      : Optional.of( mStatsFile.isBlank()
+                       ? UsageFile.getDefaultPath()
+                       : Path.of( mStatsFile ) );
+  }
+
+  /**
+   * Returns the directory that receives a log of this session's key events.
+   *
+   * @return The session log directory, or empty if events are not recorded.
+   */
+  public Optional<Path> getRecordDirectory() {
+    return mRecordDirectory == null
+      ? Optional.empty()
+      : Optional.of( mRecordDirectory.isBlank()
+                       ? SessionLog.getDefaultDirectory()
+                       : Path.of( mRecordDirectory ) );
+  }
+
+  public Optional<Path> getSubtitlesFile() {
+    return Optional.ofNullable( mSubtitlesFile );
+  }
+
+  public boolean isMeterEnabled() {
+    return mMeter;
+  }
+
   public boolean isDebugEnabled() {
     return mDebug;
   }
+
+  /**
+   * Lists the accepted {@code --rendering} values: the profile names, in
+   * lowercase, followed by the adaptive profile.
+   */
+  static final class RenderingNames implements Iterable<String> {
+    @Override
+    public Iterator<String> iterator() {
+      return Stream.concat(
+        Stream.of( RenderingProfile.values() )
+              .map( profile -> profile.name().toLowerCase( ROOT ) ),
+        Stream.of( RENDERING_ADAPTIVE )
+      ).iterator();
+    }
+  }
+
+  /**
+   * Rejects unknown {@code --rendering} values when the command-line is
+   * parsed, rather than silently adapting to the load.
+   */
+  static final class RenderingConverter
+    implements CommandLine.ITypeConverter<String> {
+    @Override
+    public String convert( final String value ) {
+      final var name = value.toLowerCase( ROOT );
+
+      for( final var candidate : new RenderingNames() ) {
+        if( candidate.equals( name ) ) {
+          return name;
+        }
+      }
+
+      throw new CommandLine.TypeConversionException( String.format(
+        "'%s' is not one of: %s",
+        value, String.join( ", ", new RenderingNames() ) ) );
+    }
+  }
 }
@@ -30,11 +30,14 @@ package com.whitemagicsoftware.kmcaster;
 import com.kitfox.svg.SVGDiagram;
 import com.kitfox.svg.SVGException;
 import com.kitfox.svg.SVGUniverse;
+import com.whitemagicsoftware.kmcaster.svg.DrawList;
 import com.whitemagicsoftware.kmcaster.ui.DimensionTuple;
 import com.whitemagicsoftware.kmcaster.ui.ScalableDimension;
 
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.IOException;
 import java.net.URL;
 import java.util.Map;
 
@@ -44,6 +47,19 @@ import static java.util.Map.entry;
 
 /**
  * Responsible for converting SVG images into rasterized PNG images.
+ * <p>
+ * Loaded diagrams remain in the {@link SVGUniverse} until released. The
+ * universe must hold a diagram while it is rendered because references, such
+ * as gradients that inherit stops, are looked up through the universe on
+ * every render. Releasing a diagram after rasterizing lets its parse tree be
+ * garbage collected; a diagram needed again is parsed anew.
+ * </p>
+ * <p>
+ * Methods that take a resource path first look for a {@link DrawList}
+ * compiled from the vector graphic when the application was built. Draw
+ * lists are replayed without parsing; the SVG renderer is used for vector
+ * graphics that have no draw list, such as user-supplied images.
+ * </p>
  */
 public final class SvgRasterizer {
   public final static Map<Object, Object> RENDERING_HINTS = Map.ofEntries(
@@ -58,12 +74,17 @@ public final class SvgRasterizer {
     entry( KEY_TEXT_ANTIALIASING, VALUE_TEXT_ANTIALIAS_ON )
   );
 
+  /**
+   * Shared by all instances. The universe is not thread-safe, so all access
+   * is synchronized on it: images may be rasterized in the background while
+   * resolution variants are rasterized on demand when painting.
+   */
   private final static SVGUniverse sRenderer = new SVGUniverse();
 
   /**
    * Loads the resource specified by the given path into an instance of
    * {@link SVGDiagram} that can be rasterized into a bitmap format. The
-   * {@link SVGUniverse} class will
+   * {@link SVGUniverse} retains the diagram until {@link #release} is called.
    *
    * @param path The full path (starting at the root), relative to the
    *             application or JAR file's resources directory.
@@ -72,9 +93,12 @@ public final class SvgRasterizer {
    */
   public SVGDiagram loadDiagram( final String path ) {
     final var url = getResourceUrl( path );
-    final var uri = sRenderer.loadSVG( url );
-    final var diagram = sRenderer.getDiagram( uri );
-    return applySettings( diagram );
+
+    synchronized( sRenderer ) {
+      final var uri = sRenderer.loadSVG( url );
+      final var diagram = sRenderer.getDiagram( uri );
+      return applySettings( diagram );
+    }
   }
 
   /**
@@ -88,12 +112,33 @@ public final class SvgRasterizer {
    */
   public DimensionTuple calculateScale(
     final SVGDiagram diagram, final Dimension dstDim ) {
-    final var srcDim = new ScalableDimension(
-      (int) diagram.getWidth(), (int) diagram.getHeight()
-    );
-    final var scaled = srcDim.scale( dstDim );
+    return calculateScale( diagram.getWidth(), diagram.getHeight(), dstDim );
+  }
 
-    return new DimensionTuple( srcDim, scaled );
+  /**
+   * Computes the scaling factor between the vector graphic at the given path
+   * and the target {@link Dimension}s.
+   *
+   * @param path   The full path (starting at the root), relative to the
+   *               application or JAR file's resources directory.
+   * @param dstDim The image's target dimensions.
+   * @return A key-value pair of the source image dimensions (key) and the
+   * scaled image dimensions (value).
+   * @throws IOException Could not read the compiled vector graphic.
+   */
+  public DimensionTuple calculateScale(
+    final String path, final Dimension dstDim ) throws IOException {
+    final var drawList = loadDrawList( path );
+
+    if( drawList != null ) {
+      return calculateScale(
+        drawList.getWidth(), drawList.getHeight(), dstDim );
+    }
+
+    final var diagram = loadDiagram( path );
+    release( diagram );
+
+    return calculateScale( diagram, dstDim );
   }
 
   /**
@@ -108,23 +153,81 @@ public final class SvgRasterizer {
   public BufferedImage rasterize(
     final SVGDiagram diagram, final DimensionTuple tuple )
     throws SVGException {
-    final var scaled = tuple.getValue();
-    final var wScaled = (int) scaled.getWidth();
-    final var hScaled = (int) scaled.getHeight();
-    final var image = new BufferedImage( wScaled, hScaled, TYPE_4BYTE_ABGR );
-    final var graphics = image.createGraphics();
-    graphics.setRenderingHints( RENDERING_HINTS );
+    final var image = createImage( tuple );
+    final var graphics = createGraphics( image, tuple );
 
-    final var transform = graphics.getTransform();
-    transform.setToScale( tuple.getWidthRatio(), tuple.getHeightRatio() );
+    synchronized( sRenderer ) {
+      diagram.render( graphics );
+    }
 
-    graphics.setTransform( transform );
-    diagram.render( graphics );
     graphics.dispose();
 
     return image;
   }
 
+  /**
+   * Rasterizes a compiled vector graphic to a given size.
+   *
+   * @param drawList The shapes to rasterize.
+   * @param tuple    The source and destination image dimensions.
+   * @return The rasterized {@link Image}.
+   */
+  public BufferedImage rasterize(
+    final DrawList drawList, final DimensionTuple tuple ) {
+    final var image = createImage( tuple );
+    final var graphics = createGraphics( image, tuple );
+
+    drawList.render( graphics );
+    graphics.dispose();
+
+    return image;
+  }
+
+  /**
+   * Loads, rasterizes, then releases a vector graphic. Use this to rasterize
+   * an image that is not already loaded.
+   *
+   * @param path   The full path (starting at the root), relative to the
+   *               application or JAR file's resources directory.
+   * @param dstDim The output image dimensions.
+   * @return The rasterized {@link Image}.
+   * @throws SVGException Could not open, read, parse, or render SVG data.
+   * @throws IOException  Could not read the compiled vector graphic.
+   */
+  public BufferedImage rasterize( final String path, final Dimension dstDim )
+    throws SVGException, IOException {
+    final var drawList = loadDrawList( path );
+
+    if( drawList != null ) {
+      return rasterize(
+        drawList,
+        calculateScale( drawList.getWidth(), drawList.getHeight(), dstDim ) );
+    }
+
+    synchronized( sRenderer ) {
+      final var diagram = loadDiagram( path );
+
+      try {
+        return rasterize( diagram, calculateScale( diagram, dstDim ) );
+      } finally {
+        release( diagram );
+      }
+    }
+  }
+
+  /**
+   * Evicts a diagram from the {@link SVGUniverse} so that its parse tree can
+   * be garbage collected once the caller no longer references it. Rendering
+   * a released diagram causes its references to be parsed again.
+   *
+   * @param diagram The diagram that is no longer needed.
+   */
+  public void release( final SVGDiagram diagram ) {
+    synchronized( sRenderer ) {
+      sRenderer.removeDocument( diagram.getXMLBase() );
+    }
+  }
+
   /**
    * Rasterizes a vector graphic to a given size using a {@link BufferedImage}.
    * The rendering hints are set to produce high quality output.
@@ -139,6 +242,55 @@ public final class SvgRasterizer {
     return rasterize( diagram, calculateScale( diagram, dstDim ) );
   }
 
+  /**
+   * Reads the draw list compiled from the vector graphic at the given path.
+   *
+   * @param path The vector graphic's resource path.
+   * @return The compiled vector graphic, or {@code null} if the vector
+   * graphic was not compiled.
+   * @throws IOException Could not read the compiled vector graphic.
+   */
+  private DrawList loadDrawList( final String path ) throws IOException {
+    final var name = path.replaceFirst( "\\.svg$", DrawList.EXTENSION );
+
+    try( final var in = SvgRasterizer.class.getResourceAsStream( name ) ) {
+      return in == null ? null : DrawList.read( new BufferedInputStream( in ) );
+    }
+  }
+
+  private DimensionTuple calculateScale(
+    final float width, final float height, final Dimension dstDim ) {
+    final var srcDim = new ScalableDimension( (int) width, (int) height );
+    final var scaled = srcDim.scale( dstDim );
+
+    return new DimensionTuple( srcDim, scaled );
+  }
+
+  private BufferedImage createImage( final DimensionTuple tuple ) {
+    final var scaled = tuple.getValue();
+    final var wScaled = (int) scaled.getWidth();
+    final var hScaled = (int) scaled.getHeight();
+
+    return new BufferedImage( wScaled, hScaled, TYPE_4BYTE_ABGR );
+  }
+
+  /**
+   * Creates a high quality graphics context that maps vector graphic
+   * coordinates onto the given image.
+   */
+  private Graphics2D createGraphics(
+    final BufferedImage image, final DimensionTuple tuple ) {
+    final var graphics = image.createGraphics();
+    graphics.setRenderingHints( RENDERING_HINTS );
+
+    final var transform = graphics.getTransform();
+    transform.setToScale( tuple.getWidthRatio(), tuple.getHeightRatio() );
+
+    graphics.setTransform( transform );
+
+    return graphics;
+  }
+
   /**
    * Gets an instance of {@link URL} that references a file in the
    * application's resources.
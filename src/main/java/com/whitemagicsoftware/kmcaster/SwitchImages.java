@@ -0,0 +1,78 @@
+/*
+ * Copyright 2023 White Magic Software, Ltd.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.whitemagicsoftware.kmcaster;
+
+import java.awt.*;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Responsible for grouping the images and insets of a single
+ * {@link HardwareComponent}, rasterized for a particular application height.
+ */
+final class SwitchImages {
+  /**
+   * Retains insertion order, which determines the component's initial state.
+   */
+  private final Map<HardwareSwitchState, Image> mImages =
+    new LinkedHashMap<>();
+
+  /**
+   * Safe drawing area, scaled to the image dimensions.
+   */
+  private final Insets mInsets;
+
+  /**
+   * Creates an empty set of images.
+   *
+   * @param insets The safe drawing area, scaled to the image dimensions.
+   */
+  SwitchImages( final Insets insets ) {
+    assert insets != null;
+
+    mInsets = insets;
+  }
+
+  /**
+   * Associates a switch state with the image to paint for that state.
+   *
+   * @param state The switch state to associate with the image.
+   * @param image The image to paint when the switch is in the given state.
+   */
+  void put( final HardwareSwitchState state, final Image image ) {
+    mImages.put( state, image );
+  }
+
+  Map<HardwareSwitchState, Image> getImages() {
+    return mImages;
+  }
+
+  Insets getInsets() {
+    return mInsets;
+  }
+}
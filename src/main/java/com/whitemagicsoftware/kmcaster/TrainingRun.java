@@ -0,0 +1,189 @@
+/*
+ * Copyright 2023 White Magic Software, Ltd.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.whitemagicsoftware.kmcaster;
+
+import com.github.kwhat.jnativehook.keyboard.NativeKeyEvent;
+import com.github.kwhat.jnativehook.mouse.NativeMouseEvent;
+import com.github.kwhat.jnativehook.mouse.NativeMouseWheelEvent;
+import com.whitemagicsoftware.kmcaster.listeners.KeyboardListener;
+import com.whitemagicsoftware.kmcaster.listeners.MouseListener;
+import com.whitemagicsoftware.kmcaster.ui.IdleFader;
+import com.whitemagicsoftware.kmcaster.ui.TranslucentPanel;
+import picocli.CommandLine;
+
+import java.awt.image.BufferedImage;
+
+import static com.github.kwhat.jnativehook.keyboard.NativeKeyEvent.*;
+import static com.github.kwhat.jnativehook.mouse.NativeMouseEvent.*;
+import static com.github.kwhat.jnativehook.mouse.NativeMouseWheelEvent.*;
+import static com.whitemagicsoftware.kmcaster.ui.FontLoader.loadFont;
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static javax.swing.SwingUtilities.invokeAndWait;
+
+/**
+ * Responsible for exercising the application without a display, so that the
+ * classes loaded at startup and while typing can be recorded into a class
+ * data sharing archive. The command line is parsed, the images are
+ * rasterized, and synthetic keyboard and mouse events are replayed through
+ * the listeners into off-screen paints. The native hook is never
+ * registered, but its event classes are loaded.
+ */
+public final class TrainingRun {
+  /**
+   * Text typed by the synthetic keyboard, including shifted characters.
+   */
+  private static final String TYPED = "Hello, World! 0123456789 ~/{}";
+
+  /**
+   * Linux raw codes for the modifiers pressed by the synthetic keyboard.
+   */
+  private static final int[] MODIFIERS = {65505, 65507, 65511};
+
+  /**
+   * Mouse buttons clicked, including one without an image.
+   */
+  private static final int[] BUTTONS = {1, 2, 3, 4};
+
+  private final KeyboardListener mKeyboard = new KeyboardListener();
+  private final MouseListener mMouse = new MouseListener();
+  private final TranslucentPanel mPanel;
+  private final BufferedImage mCanvas;
+
+  private TrainingRun( final Settings settings ) throws Exception {
+    loadFont( settings.getFontName() );
+
+    final var images = new HardwareImages( settings );
+    final var handler =
+      new EventHandler( images, settings, new IdleFader( null, 0 ) );
+
+    mPanel = new TranslucentPanel(
+      settings.getGapHorizontal(), settings.getGapVertical() );
+
+    for( final var hwSwitch : HardwareSwitch.values() ) {
+      final var component = images.get( hwSwitch );
+
+      if( component != null ) {
+        mPanel.add( component );
+      }
+    }
+
+    mPanel.setSize( mPanel.getPreferredSize() );
+    mPanel.doLayout();
+    mCanvas = new BufferedImage(
+      mPanel.getWidth(), mPanel.getHeight(), TYPE_INT_ARGB );
+
+    mKeyboard.addPropertyChangeListener( handler );
+    mMouse.addPropertyChangeListener( handler );
+    mKeyboard.initModifiers();
+  }
+
+  /**
+   * Replays the synthetic events, painting after each one.
+   *
+   * @throws Exception Could not paint on the event dispatch thread.
+   */
+  private void run() throws Exception {
+    for( final var modifier : MODIFIERS ) {
+      mKeyboard.nativeKeyPressed( key( NATIVE_KEY_PRESSED, modifier ) );
+      paint();
+      mKeyboard.nativeKeyReleased( key( NATIVE_KEY_RELEASED, modifier ) );
+      paint();
+    }
+
+    for( final var c : TYPED.toCharArray() ) {
+      mKeyboard.nativeKeyPressed( key( NATIVE_KEY_PRESSED, c ) );
+      mKeyboard.nativeKeyTyped( key( NATIVE_KEY_TYPED, c ) );
+      paint();
+      mKeyboard.nativeKeyReleased( key( NATIVE_KEY_RELEASED, c ) );
+      paint();
+    }
+
+    for( final var button : BUTTONS ) {
+      mMouse.nativeMousePressed( mouse( NATIVE_MOUSE_PRESSED, button ) );
+      paint();
+      mMouse.nativeMouseReleased( mouse( NATIVE_MOUSE_RELEASED, button ) );
+      paint();
+    }
+
+    for( final var direction : new int[]{
+      WHEEL_VERTICAL_DIRECTION, WHEEL_HORIZONTAL_DIRECTION} ) {
+      for( final var rotation : new int[]{-1, 1} ) {
+        mMouse.nativeMouseWheelMoved( wheel( direction, rotation ) );
+        paint();
+      }
+    }
+  }
+
+  /**
+   * Paints the panel off-screen once all pending events are handled.
+   *
+   * @throws Exception Could not paint on the event dispatch thread.
+   */
+  private void paint() throws Exception {
+    invokeAndWait( () -> {
+      final var g = mCanvas.createGraphics();
+      mPanel.printAll( g );
+      g.dispose();
+    } );
+  }
+
+  private static NativeKeyEvent key( final int id, final int rawCode ) {
+    return new NativeKeyEvent(
+      id, 0, rawCode, VC_UNDEFINED,
+      id == NATIVE_KEY_TYPED ? (char) rawCode : CHAR_UNDEFINED,
+      KEY_LOCATION_STANDARD
+    );
+  }
+
+  private static NativeMouseEvent mouse( final int id, final int button ) {
+    return new NativeMouseEvent( id, 0, 0, 0, 1, button );
+  }
+
+  private static NativeMouseWheelEvent wheel(
+    final int direction, final int rotation ) {
+    return new NativeMouseWheelEvent(
+      NATIVE_MOUSE_WHEEL, 0, 0, 0, 0,
+      WHEEL_UNIT_SCROLL, 1, rotation, direction
+    );
+  }
+
+  /**
+   * Performs a training run, then exits so that the archive is written.
+   *
+   * @param args Command-line arguments, see {@link Settings}.
+   * @throws Exception Could not complete the training run.
+   */
+  public static void main( final String[] args ) throws Exception {
+    final var settings = new Settings( null );
+
+    new CommandLine( settings ).parseArgs( args );
+    new TrainingRun( settings ).run();
+
+    System.exit( 0 );
+  }
+}
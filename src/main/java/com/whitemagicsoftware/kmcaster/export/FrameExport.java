@@ -0,0 +1,189 @@
+/*
+ * Copyright 2023 White Magic Software, Ltd.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.whitemagicsoftware.kmcaster.export;
+
+import com.whitemagicsoftware.kmcaster.Settings;
+import com.whitemagicsoftware.kmcaster.stats.SessionLog;
+import picocli.CommandLine;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+
+import static com.whitemagicsoftware.kmcaster.exceptions.Rethrowable.rethrow;
+import static com.whitemagicsoftware.kmcaster.ui.FontLoader.loadFont;
+
+/**
+ * Responsible for rendering a recorded session log as the overlay would
+ * have shown it, for compositing in a video editor. Frames are written as
+ * a numbered PNG sequence or as a single animated PNG, with a transparent
+ * background. The appearance and key delays are taken from the options
+ * given before the command name.
+ * <p>
+ * The frames are split into one run per thread. Each run is rendered by
+ * its own {@link FrameRenderer} and written to disk as it is rendered; for
+ * an animation, each run is written to a part file and the parts are joined
+ * in order at the end.
+ * </p>
+ */
+@CommandLine.Command(
+  name = "frames",
+  mixinStandardHelpOptions = true,
+  description = "Renders a recorded session log as PNG frames."
+)
+@SuppressWarnings( {"FieldMayBeFinal", "CanBeFinal"} )
+public final class FrameExport implements Callable<Integer> {
+  @CommandLine.ParentCommand
+  private Settings mSettings;
+
+  @CommandLine.Option(
+    names = {"-o", "--output"},
+    description = "Directory for PNG frames, or an .apng or .png file " +
+      "for an animation (${DEFAULT-VALUE})",
+    paramLabel = "path",
+    defaultValue = "frames"
+  )
+  private Path mOutput = Path.of( "frames" );
+
+  @CommandLine.Option(
+    names = {"--fps"},
+    description = "Frames per second (${DEFAULT-VALUE})",
+    paramLabel = "number",
+    defaultValue = "30"
+  )
+  private int mFps = 30;
+
+  @CommandLine.Option(
+    names = {"-j", "--threads"},
+    description = "Rendering threads (default: one per processor)",
+    paramLabel = "number"
+  )
+  private int mThreads = Runtime.getRuntime().availableProcessors();
+
+  @CommandLine.Parameters(
+    description = "Session log to render",
+    paramLabel = "file"
+  )
+  private Path mPath;
+
+  @Override
+  public Integer call() throws Exception {
+    final var settings = mSettings;
+    final var began = System.nanoTime();
+    final var fps = Math.max( 1, Math.min( mFps, 1000 ) );
+    final var name = mOutput.getFileName().toString().toLowerCase();
+    final var animated = name.endsWith( ".png" ) || name.endsWith( ".apng" );
+
+    loadFont( settings.getFontName() );
+
+    // Render until the last release has been shown.
+    final var duration = SessionLog.getDuration( mPath ) + Math.max(
+      settings.getDelayKeyModifier(), settings.getDelayKeyRegular() );
+    final var frames = (int) Math.min(
+      duration * fps / 1000 + 1, Integer.MAX_VALUE );
+    final var threads = Math.max( 1, Math.min( mThreads, frames ) );
+    final var run = (frames + threads - 1) / threads;
+    final var renderers = new ArrayList<FrameRenderer>( threads );
+    final var parts = new ArrayList<Path>( threads );
+
+    if( !animated ) {
+      Files.createDirectories( mOutput );
+    }
+
+    for( int first = 0; first < frames; first += run ) {
+      final var part = animated
+        ? mOutput.resolveSibling( name + ".part" + renderers.size() )
+        : mOutput;
+
+      renderers.add( new FrameRenderer(
+        settings, mPath, part, animated, fps, first,
+        Math.min( frames, first + run ) ) );
+      parts.add( part );
+    }
+
+    final var pool = Executors.newFixedThreadPool( renderers.size() );
+
+    try {
+      for( final var future : pool.invokeAll( renderers ) ) {
+        future.get();
+      }
+
+      if( animated ) {
+        join( renderers.get( 0 ), parts, frames );
+      }
+    } catch( final ExecutionException e ) {
+      rethrow( e.getCause() );
+    } catch( final InterruptedException e ) {
+      Thread.currentThread().interrupt();
+      return 1;
+    } finally {
+      pool.shutdown();
+
+      if( animated ) {
+        for( final var part : parts ) {
+          Files.deleteIfExists( part );
+        }
+      }
+    }
+
+    final var renderer = renderers.get( 0 );
+
+    System.out.printf( "Wrote %d frames (%dx%d) in %d ms%n",
+                       frames, renderer.getWidth(), renderer.getHeight(),
+                       (System.nanoTime() - began) / 1_000_000 );
+
+    return 0;
+  }
+
+  /**
+   * Writes the animation header, then copies the frames from each part
+   * file in order.
+   */
+  private void join(
+    final FrameRenderer renderer, final Iterable<Path> parts, final int frames )
+    throws IOException {
+    final var encoder =
+      new PngEncoder( renderer.getWidth(), renderer.getHeight() );
+
+    try( final var out = new BufferedOutputStream(
+      Files.newOutputStream( mOutput ) ) ) {
+      encoder.writeHeader( out, frames );
+
+      for( final var part : parts ) {
+        Files.copy( part, out );
+      }
+
+      encoder.writeEnd( out );
+    }
+  }
+}
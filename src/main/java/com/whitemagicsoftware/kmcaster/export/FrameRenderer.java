@@ -0,0 +1,279 @@
+/*
+ * Copyright 2023 White Magic Software, Ltd.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.whitemagicsoftware.kmcaster.export;
+
+import com.whitemagicsoftware.kmcaster.EventHandler;
+import com.whitemagicsoftware.kmcaster.HardwareImages;
+import com.whitemagicsoftware.kmcaster.HardwareSwitch;
+import com.whitemagicsoftware.kmcaster.Settings;
+import com.whitemagicsoftware.kmcaster.stats.SessionLog;
+import com.whitemagicsoftware.kmcaster.ui.IdleFader;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Callable;
+
+import static com.whitemagicsoftware.kmcaster.exceptions.Rethrowable.rethrow;
+import static java.lang.String.format;
+
+/**
+ * Responsible for rendering a run of frames from a session log. Each
+ * renderer has its own hardware components, labels, and canvas, so several
+ * renderers can paint at once on different threads. The components are
+ * never displayed; they are painted into the canvas for each frame.
+ * <p>
+ * The renderer reads the log from the start, tracking what the overlay
+ * shows without painting until its first frame. Each frame is encoded and
+ * written as soon as it is painted. A frame that shows the same keys as the
+ * previous frame is not painted again: its file is linked to the previous
+ * frame's file, or its animation frame leaves the canvas unchanged.
+ * </p>
+ */
+final class FrameRenderer implements Callable<Void> {
+  /**
+   * Bytes buffered before writing to disk.
+   */
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private final Path mLog;
+  private final Path mOutput;
+  private final boolean mAnimated;
+  private final int mFps;
+  private final int mFirst;
+  private final int mLast;
+
+  private final EventHandler mHandler;
+  private final JPanel mPanel;
+  private final OverlayState mState;
+  private final PngEncoder mEncoder;
+  private final BufferedImage mCanvas;
+
+  /**
+   * Receives the animation frames, or {@code null} when writing one file
+   * per frame.
+   */
+  private OutputStream mOut;
+
+  /**
+   * Index of the next frame to render.
+   */
+  private int mNext;
+
+  /**
+   * Whether the canvas has been painted at least once.
+   */
+  private boolean mPainted;
+
+  /**
+   * Creates the components for rendering frames. This rasterizes the
+   * images, so renderers should be created before any starts rendering.
+   *
+   * @param settings Determines the overlay's appearance and key delays.
+   * @param log      The session log to replay.
+   * @param output   Directory for frame files, or the file that receives
+   *                 the animation frames.
+   * @param animated {@code true} to write animation frames.
+   * @param fps      Frames per second.
+   * @param first    Index of the first frame to render.
+   * @param last     Index after the last frame to render.
+   */
+  FrameRenderer(
+    final Settings settings,
+    final Path log,
+    final Path output,
+    final boolean animated,
+    final int fps,
+    final int first,
+    final int last ) {
+    mLog = log;
+    mOutput = output;
+    mAnimated = animated;
+    mFps = fps;
+    mFirst = first;
+    mLast = last;
+
+    final var images = new HardwareImages( settings );
+
+    mHandler = new EventHandler( images, settings, new IdleFader( null, 0 ) );
+    mPanel = new JPanel( new FlowLayout(
+      FlowLayout.CENTER,
+      settings.getGapHorizontal(),
+      settings.getGapVertical() ) );
+    mPanel.setOpaque( false );
+
+    for( final var hwSwitch : HardwareSwitch.values() ) {
+      final var component = images.get( hwSwitch );
+
+      if( component != null ) {
+        mPanel.add( component );
+      }
+    }
+
+    mPanel.setSize( mPanel.getPreferredSize() );
+    mPanel.doLayout();
+
+    mState = new OverlayState(
+      settings.getDelayKeyModifier(),
+      settings.getDelayKeyRegular(),
+      settings.getKeyCount() );
+    mEncoder = new PngEncoder( mPanel.getWidth(), mPanel.getHeight() );
+    mCanvas = mEncoder.createImage();
+  }
+
+  /**
+   * Replays the log, writing the frames from first to last.
+   *
+   * @return {@code null}
+   * @throws IOException The log could not be read or a frame written.
+   */
+  @Override
+  public Void call() throws IOException {
+    mNext = mFirst;
+
+    if( mAnimated ) {
+      mOut = new BufferedOutputStream(
+        Files.newOutputStream( mOutput ), BUFFER_SIZE );
+    }
+
+    try {
+      SessionLog.replay( mLog, ( time, code, mask, pressed ) -> {
+        try {
+          while( mNext < mLast && frameTime( mNext ) < time ) {
+            render( mNext++ );
+          }
+        } catch( final IOException e ) {
+          rethrow( e );
+        }
+
+        mState.event( time, code, pressed );
+
+        return mNext < mLast;
+      } );
+
+      while( mNext < mLast ) {
+        render( mNext++ );
+      }
+    } finally {
+      if( mOut != null ) {
+        mOut.close();
+      }
+    }
+
+    return null;
+  }
+
+  int getWidth() {
+    return mCanvas.getWidth();
+  }
+
+  int getHeight() {
+    return mCanvas.getHeight();
+  }
+
+  /**
+   * Paints, encodes, and writes a frame.
+   *
+   * @param index The frame's index in the whole export.
+   */
+  private void render( final int index ) throws IOException {
+    mState.advance( frameTime( index ) );
+
+    final var repeat = !mState.apply( mHandler ) && mPainted;
+
+    if( !repeat ) {
+      final var g = mCanvas.createGraphics();
+
+      g.setComposite( AlphaComposite.Clear );
+      g.fillRect( 0, 0, mCanvas.getWidth(), mCanvas.getHeight() );
+      g.setComposite( AlphaComposite.SrcOver );
+      mPanel.printAll( g );
+      g.dispose();
+
+      mEncoder.compress( mCanvas );
+      mPainted = true;
+    }
+
+    if( mAnimated ) {
+      if( repeat ) {
+        mEncoder.writeRepeat( mOut, index, mFps );
+      }
+      else {
+        mEncoder.writeFrame( mOut, index, mFps );
+      }
+    }
+    else {
+      final var file = frameFile( index );
+
+      // Replace, rather than overwrite, a file from an earlier export, which
+      // may be linked to other frames.
+      Files.deleteIfExists( file );
+
+      if( !repeat || !link( file, frameFile( index - 1 ) ) ) {
+        try( final var out = new BufferedOutputStream(
+          Files.newOutputStream( file ), BUFFER_SIZE ) ) {
+          mEncoder.writeImage( out );
+        }
+      }
+    }
+  }
+
+  /**
+   * Links a repeated frame to the previous frame's file, which saves writing
+   * the same image again.
+   *
+   * @return {@code false} if the file system does not support links.
+   */
+  private static boolean link( final Path file, final Path previous ) {
+    try {
+      Files.createLink( file, previous );
+      return true;
+    } catch( final IOException | UnsupportedOperationException e ) {
+      return false;
+    }
+  }
+
+  private Path frameFile( final int index ) {
+    return mOutput.resolve( format( "frame-%06d.png", index ) );
+  }
+
+  /**
+   * Returns the time that the given frame shows.
+   *
+   * @param index The frame's index in the whole export.
+   * @return Milliseconds since the session started.
+   */
+  private long frameTime( final int index ) {
+    return index * 1000L / mFps;
+  }
+}
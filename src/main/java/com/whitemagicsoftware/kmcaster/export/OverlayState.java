@@ -0,0 +1,241 @@
+/*
+ * Copyright 2023 White Magic Software, Ltd.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.whitemagicsoftware.kmcaster.export;
+
+import com.github.kwhat.jnativehook.keyboard.NativeKeyEvent;
+import com.whitemagicsoftware.kmcaster.EventHandler;
+import com.whitemagicsoftware.kmcaster.HardwareSwitch;
+import com.whitemagicsoftware.kmcaster.HardwareSwitchState;
+import com.whitemagicsoftware.kmcaster.listeners.KeyboardListener;
+import com.whitemagicsoftware.kmcaster.util.ConsecutiveEventCounter;
+
+import java.util.Arrays;
+
+import static com.github.kwhat.jnativehook.keyboard.NativeKeyEvent.*;
+import static com.whitemagicsoftware.kmcaster.HardwareState.SWITCH_PRESSED;
+import static com.whitemagicsoftware.kmcaster.HardwareState.SWITCH_RELEASED;
+import static com.whitemagicsoftware.kmcaster.HardwareSwitch.*;
+
+/**
+ * Responsible for tracking what the overlay shows while a session is
+ * replayed, using the session's clock instead of timers. As with
+ * {@link EventHandler}, a press is shown at once, a release is shown after
+ * the modifier or regular key delay unless the key changes again first, and
+ * repeated regular keys are tallied until a modifier changes.
+ * <p>
+ * Tracking costs no painting, so a replay can skip ahead cheaply; the keys
+ * that changed are shown only when a frame is needed.
+ * </p>
+ */
+final class OverlayState {
+  /**
+   * Keys shown by the overlay, indexed as by {@link #index(int)}.
+   */
+  private static final HardwareSwitch[] SWITCHES = {
+    KEY_SHIFT, KEY_CTRL, KEY_ALT, KEY_REGULAR
+  };
+
+  /**
+   * Index of {@link HardwareSwitch#KEY_REGULAR} in {@link #SWITCHES}.
+   */
+  private static final int REGULAR = SWITCHES.length - 1;
+
+  /**
+   * Marks a key without a pending release in {@link #mReleases}.
+   */
+  private static final long NONE = Long.MAX_VALUE;
+
+  private final long mDelayModifier;
+  private final long mDelayRegular;
+  private final ConsecutiveEventCounter<String> mCounter;
+
+  /**
+   * Whether each key is shown pressed.
+   */
+  private final boolean[] mPressed = new boolean[ SWITCHES.length ];
+
+  /**
+   * When each key's release is to be shown, or {@link #NONE}.
+   */
+  private final long[] mReleases = new long[ SWITCHES.length ];
+
+  /**
+   * Whether each key has changed since it was last shown.
+   */
+  private final boolean[] mChanged = new boolean[ SWITCHES.length ];
+
+  /**
+   * Text of the regular key being shown.
+   */
+  private String mText = "";
+
+  /**
+   * Consecutive presses of the regular key being shown, possibly empty.
+   */
+  private String mTally = "";
+
+  /**
+   * Creates a state with all keys released.
+   *
+   * @param delayModifier Milliseconds before a modifier's release shows.
+   * @param delayRegular  Milliseconds before a regular key's release shows.
+   * @param limit         Repeated presses counted before the tally shows "+".
+   */
+  OverlayState(
+    final long delayModifier, final long delayRegular, final int limit ) {
+    mDelayModifier = delayModifier;
+    mDelayRegular = delayRegular;
+    mCounter = new ConsecutiveEventCounter<>( Math.max( limit, 2 ) );
+
+    Arrays.fill( mReleases, NONE );
+    Arrays.fill( mChanged, true );
+  }
+
+  /**
+   * Applies a key event, first showing the releases that are due.
+   *
+   * @param time    Milliseconds since the session started.
+   * @param code    The virtual key code.
+   * @param pressed {@code true} for a press, {@code false} for a release.
+   */
+  void event( final long time, final int code, final boolean pressed ) {
+    advance( time );
+
+    final var i = index( code );
+
+    if( i < 0 ) {
+      return;
+    }
+
+    mReleases[ i ] = NONE;
+
+    if( pressed ) {
+      if( i == REGULAR ) {
+        mText = text( code );
+      }
+
+      show( i, true );
+    }
+    else {
+      mReleases[ i ] = time + (i == REGULAR ? mDelayRegular : mDelayModifier);
+    }
+  }
+
+  /**
+   * Shows the releases that are due by the given time, in the order they
+   * fall due.
+   *
+   * @param time Milliseconds since the session started.
+   */
+  void advance( final long time ) {
+    while( true ) {
+      var next = -1;
+
+      for( int i = 0; i < SWITCHES.length; i++ ) {
+        if( mReleases[ i ] <= time &&
+          (next < 0 || mReleases[ i ] < mReleases[ next ]) ) {
+          next = i;
+        }
+      }
+
+      if( next < 0 ) {
+        return;
+      }
+
+      mReleases[ next ] = NONE;
+      show( next, false );
+    }
+  }
+
+  /**
+   * Shows the keys that have changed since this was last called.
+   *
+   * @param handler Changes the hardware components and their labels.
+   * @return {@code true} if any key changed.
+   */
+  boolean apply( final EventHandler handler ) {
+    var changed = false;
+
+    for( int i = 0; i < SWITCHES.length; i++ ) {
+      if( mChanged[ i ] ) {
+        final var state = new HardwareSwitchState(
+          SWITCHES[ i ],
+          mPressed[ i ] ? SWITCH_PRESSED : SWITCH_RELEASED,
+          i == REGULAR ? mText : "" );
+
+        handler.show( state, i == REGULAR ? mTally : "" );
+        mChanged[ i ] = false;
+        changed = true;
+      }
+    }
+
+    return changed;
+  }
+
+  private void show( final int i, final boolean pressed ) {
+    if( i == REGULAR ) {
+      mTally = pressed && mCounter.apply( mText ) ? mCounter.toString() : "";
+    }
+    else {
+      mCounter.reset();
+    }
+
+    mPressed[ i ] = pressed;
+    mChanged[ i ] = true;
+  }
+
+  /**
+   * Returns the index into {@link #SWITCHES} for the given key.
+   *
+   * @param code The virtual key code.
+   * @return The key's index, or -1 for keys that the overlay does not show.
+   */
+  private static int index( final int code ) {
+    switch( code ) {
+      case VC_SHIFT:
+        return 0;
+      case VC_CONTROL:
+        return 1;
+      case VC_ALT:
+        return 2;
+      case VC_META:
+        return -1;
+      default:
+        return REGULAR;
+    }
+  }
+
+  /**
+   * Returns the key cap text for the given key.
+   */
+  private static String text( final int code ) {
+    return KeyboardListener.keyText( new NativeKeyEvent(
+      NATIVE_KEY_PRESSED, 0, 0, code, CHAR_UNDEFINED, KEY_LOCATION_STANDARD
+    ) );
+  }
+}
@@ -0,0 +1,382 @@
+/*
+ * Copyright 2023 White Magic Software, Ltd.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.whitemagicsoftware.kmcaster.export;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+
+/**
+ * Responsible for encoding images as PNG files and as the frames of an
+ * animated PNG. Images are written as 8-bit RGBA with each row filtered by
+ * its left neighbour. An encoder reuses its buffers from frame to frame, so
+ * it must be confined to one thread.
+ * <p>
+ * Every animation frame is written as a frame control chunk followed by a
+ * single data chunk, so the sequence numbers of a frame depend only on its
+ * index. That lets separate encoders write separate runs of frames, which
+ * are joined in order afterwards.
+ * </p>
+ */
+final class PngEncoder {
+  private static final byte[] SIGNATURE = {
+    (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'
+  };
+
+  private static final byte[] IHDR = type( "IHDR" );
+  private static final byte[] ACTL = type( "acTL" );
+  private static final byte[] FCTL = type( "fcTL" );
+  private static final byte[] IDAT = type( "IDAT" );
+  private static final byte[] FDAT = type( "fdAT" );
+  private static final byte[] IEND = type( "IEND" );
+
+  /**
+   * Frame disposal that leaves the canvas as the frame left it.
+   */
+  private static final byte DISPOSE_NONE = 0;
+
+  /**
+   * Frame blending that replaces the frame's region of the canvas.
+   */
+  private static final int BLEND_SOURCE = 0;
+
+  /**
+   * Frame blending that draws the frame over the canvas.
+   */
+  private static final int BLEND_OVER = 1;
+
+  /**
+   * Compressed data for a single transparent pixel.
+   */
+  private static final byte[] BLANK = blank();
+
+  /**
+   * Bytes per pixel.
+   */
+  private static final int PIXEL = 4;
+
+  /**
+   * Row filter type that subtracts the pixel to the left.
+   */
+  private static final int FILTER_SUB = 1;
+
+  private final int mWidth;
+  private final int mHeight;
+  private final Deflater mDeflater = new Deflater( Deflater.BEST_SPEED );
+  private final CRC32 mCrc = new CRC32();
+
+  /**
+   * One filtered row, preceded by its filter type.
+   */
+  private final byte[] mRow;
+
+  /**
+   * Compressed image data from the most recent call to {@link #compress}.
+   */
+  private byte[] mData = new byte[ 1 << 16 ];
+  private int mDataLength;
+
+  /**
+   * Small chunk bodies, or the start of a frame data chunk.
+   */
+  private final byte[] mScratch = new byte[ 32 ];
+
+  /**
+   * A chunk's length and type, or its checksum.
+   */
+  private final byte[] mFrame = new byte[ 8 ];
+
+  /**
+   * Creates an encoder for images of the given size.
+   *
+   * @param width  Image width, in pixels.
+   * @param height Image height, in pixels.
+   */
+  PngEncoder( final int width, final int height ) {
+    mWidth = width;
+    mHeight = height;
+    mRow = new byte[ 1 + width * PIXEL ];
+  }
+
+  /**
+   * Creates an image that can be passed to {@link #compress}.
+   *
+   * @return A transparent image of this encoder's size.
+   */
+  BufferedImage createImage() {
+    return new BufferedImage( mWidth, mHeight, TYPE_INT_ARGB );
+  }
+
+  /**
+   * Filters and compresses the given image, replacing the compressed data
+   * of the previous image.
+   *
+   * @param image An image from {@link #createImage()}.
+   */
+  void compress( final BufferedImage image ) {
+    final var pixels =
+      ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+
+    mDeflater.reset();
+    mDataLength = 0;
+    mRow[ 0 ] = FILTER_SUB;
+
+    for( int y = 0; y < mHeight; y++ ) {
+      var left = 0;
+
+      for( int x = 0, offset = y * mWidth, i = 1; x < mWidth; x++ ) {
+        final var argb = pixels[ offset + x ];
+
+        mRow[ i++ ] = (byte) ((argb >> 16) - (left >> 16));
+        mRow[ i++ ] = (byte) ((argb >> 8) - (left >> 8));
+        mRow[ i++ ] = (byte) (argb - left);
+        mRow[ i++ ] = (byte) ((argb >>> 24) - (left >>> 24));
+        left = argb;
+      }
+
+      mDeflater.setInput( mRow );
+      deflate();
+    }
+
+    mDeflater.finish();
+
+    while( !mDeflater.finished() ) {
+      deflate();
+    }
+  }
+
+  /**
+   * Writes the compressed image as a complete PNG file.
+   *
+   * @param out Receives the file.
+   * @throws IOException The file could not be written.
+   */
+  void writeImage( final OutputStream out ) throws IOException {
+    writeHeader( out, 0 );
+    writeChunk( out, IDAT, 0, mData, mDataLength );
+    writeEnd( out );
+  }
+
+  /**
+   * Writes the signature and image header, and the animation control chunk
+   * when there is more than one frame.
+   *
+   * @param out    Receives the header.
+   * @param frames Number of animation frames, or zero for a still image.
+   * @throws IOException The header could not be written.
+   */
+  void writeHeader( final OutputStream out, final int frames )
+    throws IOException {
+    out.write( SIGNATURE );
+
+    putInt( 0, mWidth );
+    putInt( 4, mHeight );
+    mScratch[ 8 ] = 8;
+    mScratch[ 9 ] = 6;
+    mScratch[ 10 ] = 0;
+    mScratch[ 11 ] = 0;
+    mScratch[ 12 ] = 0;
+    writeChunk( out, IHDR, 13, mData, 0 );
+
+    if( frames > 0 ) {
+      putInt( 0, frames );
+      putInt( 4, 0 );
+      writeChunk( out, ACTL, 8, mData, 0 );
+    }
+  }
+
+  /**
+   * Writes the compressed image as an animation frame that replaces the
+   * whole canvas.
+   *
+   * @param out   Receives the frame.
+   * @param index The frame's position in the animation, from zero.
+   * @param fps   Frames per second.
+   * @throws IOException The frame could not be written.
+   */
+  void writeFrame( final OutputStream out, final int index, final int fps )
+    throws IOException {
+    writeFrameControl( out, index, fps, mWidth, mHeight, BLEND_SOURCE );
+
+    if( index == 0 ) {
+      writeChunk( out, IDAT, 0, mData, mDataLength );
+    }
+    else {
+      writeFrameData( out, index, mData, mDataLength );
+    }
+  }
+
+  /**
+   * Writes an animation frame that leaves the canvas unchanged: a single
+   * transparent pixel drawn over the previous frame. This keeps the frame
+   * rate constant at a cost of a few dozen bytes per frame.
+   *
+   * @param out   Receives the frame.
+   * @param index The frame's position in the animation, from one.
+   * @param fps   Frames per second.
+   * @throws IOException The frame could not be written.
+   */
+  void writeRepeat( final OutputStream out, final int index, final int fps )
+    throws IOException {
+    assert index > 0;
+
+    writeFrameControl( out, index, fps, 1, 1, BLEND_OVER );
+    writeFrameData( out, index, BLANK, BLANK.length );
+  }
+
+  private void writeFrameControl(
+    final OutputStream out,
+    final int index,
+    final int fps,
+    final int width,
+    final int height,
+    final int blend ) throws IOException {
+    putInt( 0, sequence( index ) );
+    putInt( 4, width );
+    putInt( 8, height );
+    putInt( 12, 0 );
+    putInt( 16, 0 );
+    putShort( 20, 1 );
+    putShort( 22, fps );
+    mScratch[ 24 ] = DISPOSE_NONE;
+    mScratch[ 25 ] = (byte) blend;
+    writeChunk( out, FCTL, 26, mData, 0 );
+  }
+
+  /**
+   * Writes a frame data chunk, which starts with its sequence number.
+   */
+  private void writeFrameData(
+    final OutputStream out,
+    final int index,
+    final byte[] data,
+    final int length ) throws IOException {
+    putInt( 0, sequence( index ) + 1 );
+    writeChunk( out, FDAT, 4, data, length );
+  }
+
+  /**
+   * Returns the sequence number of the given frame's control chunk. The
+   * first frame's image is an IDAT chunk, which has no sequence number.
+   */
+  private static int sequence( final int index ) {
+    return index == 0 ? 0 : index * 2 - 1;
+  }
+
+  /**
+   * Writes the image trailer.
+   *
+   * @param out Receives the trailer.
+   * @throws IOException The trailer could not be written.
+   */
+  void writeEnd( final OutputStream out ) throws IOException {
+    writeChunk( out, IEND, 0, mData, 0 );
+  }
+
+  private void deflate() {
+    while( true ) {
+      if( mDataLength == mData.length ) {
+        mData = Arrays.copyOf( mData, mData.length * 2 );
+      }
+
+      final var n = mDeflater.deflate(
+        mData, mDataLength, mData.length - mDataLength );
+
+      mDataLength += n;
+
+      if( n == 0 && mDataLength < mData.length ) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Writes a chunk whose body is the start of {@link #mScratch} followed by
+   * the start of the given data.
+   */
+  private void writeChunk(
+    final OutputStream out,
+    final byte[] type,
+    final int scratchLength,
+    final byte[] data,
+    final int dataLength ) throws IOException {
+    putInt( mFrame, 0, scratchLength + dataLength );
+    System.arraycopy( type, 0, mFrame, 4, 4 );
+    out.write( mFrame );
+    out.write( mScratch, 0, scratchLength );
+    out.write( data, 0, dataLength );
+
+    mCrc.reset();
+    mCrc.update( type );
+    mCrc.update( mScratch, 0, scratchLength );
+    mCrc.update( data, 0, dataLength );
+    putInt( mFrame, 0, (int) mCrc.getValue() );
+    out.write( mFrame, 0, 4 );
+  }
+
+  private void putInt( final int offset, final int value ) {
+    putInt( mScratch, offset, value );
+  }
+
+  private void putShort( final int offset, final int value ) {
+    mScratch[ offset ] = (byte) (value >>> 8);
+    mScratch[ offset + 1 ] = (byte) value;
+  }
+
+  private static byte[] blank() {
+    final var deflater = new Deflater();
+    final var data = new byte[ 32 ];
+
+    deflater.setInput( new byte[ 1 + PIXEL ] );
+    deflater.finish();
+
+    final var length = deflater.deflate( data );
+    deflater.end();
+
+    return Arrays.copyOf( data, length );
+  }
+
+  private static byte[] type( final String name ) {
+    return name.getBytes( StandardCharsets.US_ASCII );
+  }
+
+  private static void putInt(
+    final byte[] bytes, final int offset, final int value ) {
+    bytes[ offset ] = (byte) (value >>> 24);
+    bytes[ offset + 1 ] = (byte) (value >>> 16);
+    bytes[ offset + 2 ] = (byte) (value >>> 8);
+    bytes[ offset + 3 ] = (byte) value;
+  }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2023 White Magic Software, Ltd.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.whitemagicsoftware.kmcaster.export;
+
+import com.whitemagicsoftware.kmcaster.stats.SessionLog;
+import picocli.CommandLine;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Callable;
+
+import static com.whitemagicsoftware.kmcaster.exceptions.Rethrowable.rethrow;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Responsible for exporting the key presses in a recorded session log as
+ * subtitles, for adding keystrokes to a screencast without burning the
+ * overlay into the video. The log is read and the cues are written as a
+ * stream, so exporting uses the same memory for any length of recording.
+ */
+@CommandLine.Command(
+  name = "subtitles",
+  mixinStandardHelpOptions = true,
+  description = "Exports a recorded session log as SRT or WebVTT subtitles."
+)
+@SuppressWarnings( {"FieldMayBeFinal", "CanBeFinal"} )
+public final class SubtitleExport implements Callable<Integer> {
+  @CommandLine.Option(
+    names = {"-o", "--output"},
+    description = "Subtitle file, format from its extension " +
+      "(default: SRT to standard output)",
+    paramLabel = "file"
+  )
+  private Path mOutput;
+
+  @CommandLine.Option(
+    names = {"--format"},
+    description = "Subtitle format: ${COMPLETION-CANDIDATES}",
+    paramLabel = "format"
+  )
+  private SubtitleFormat mFormat;
+
+  @CommandLine.Option(
+    names = {"--delay"},
+    description = "Cue display time after the last key is released " +
+      "(${DEFAULT-VALUE} milliseconds)",
+    paramLabel = "ms",
+    defaultValue = "1000"
+  )
+  private long mDelay = 1000;
+
+  @CommandLine.Option(
+    names = {"--offset"},
+    description = "Milliseconds added to every cue time (${DEFAULT-VALUE})",
+    paramLabel = "ms",
+    defaultValue = "0"
+  )
+  private long mOffset;
+
+  @CommandLine.Option(
+    names = {"-k", "--key-counter"},
+    description = "Count repeated key presses (${DEFAULT-VALUE} times)",
+    paramLabel = "number",
+    defaultValue = "9"
+  )
+  private int mKeyCount = 9;
+
+  @CommandLine.Parameters(
+    description = "Session log to export",
+    paramLabel = "file"
+  )
+  private Path mPath;
+
+  @Override
+  public Integer call() throws IOException {
+    final var format = mFormat != null
+      ? mFormat
+      : mOutput == null
+      ? SubtitleFormat.SRT
+      : SubtitleFormat.valueFrom( mOutput );
+    final var out = mOutput == null
+      ? new BufferedWriter( new OutputStreamWriter( System.out, UTF_8 ) )
+      : Files.newBufferedWriter( mOutput, UTF_8 );
+
+    try( final var writer = new SubtitleWriter(
+      out, format, mDelay, mOffset, mKeyCount ) ) {
+      SessionLog.replay( mPath, ( time, code, mask, pressed ) -> {
+        try {
+          if( pressed ) {
+            writer.press( time, code, mask );
+          }
+          else {
+            writer.release( time, code );
+          }
+        } catch( final IOException e ) {
+          rethrow( e );
+        }
+
+        return true;
+      } );
+    }
+
+    return 0;
+  }
+}
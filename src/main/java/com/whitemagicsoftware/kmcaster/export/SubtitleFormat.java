@@ -0,0 +1,93 @@
+/*
+ * Copyright 2023 White Magic Software, Ltd.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.whitemagicsoftware.kmcaster.export;
+
+import java.nio.file.Path;
+
+/**
+ * Responsible for the differences between the subtitle file formats.
+ */
+public enum SubtitleFormat {
+  SRT( ".srt", "", ',', true ),
+  VTT( ".vtt", "WEBVTT\n\n", '.', false );
+
+  private final String mExtension;
+  private final String mHeader;
+  private final char mDecimal;
+  private final boolean mNumbered;
+
+  SubtitleFormat(
+    final String extension,
+    final String header,
+    final char decimal,
+    final boolean numbered ) {
+    mExtension = extension;
+    mHeader = header;
+    mDecimal = decimal;
+    mNumbered = numbered;
+  }
+
+  /**
+   * Returns the format for the given file's extension.
+   *
+   * @param path The subtitle file.
+   * @return {@link #VTT} for ".vtt" files, otherwise {@link #SRT}.
+   */
+  public static SubtitleFormat valueFrom( final Path path ) {
+    final var name = path.getFileName().toString().toLowerCase();
+
+    return name.endsWith( VTT.mExtension ) ? VTT : SRT;
+  }
+
+  /**
+   * Returns the text that starts a file.
+   *
+   * @return The header, possibly empty.
+   */
+  String getHeader() {
+    return mHeader;
+  }
+
+  /**
+   * Returns the character between seconds and milliseconds in timestamps.
+   *
+   * @return A comma or full stop.
+   */
+  char getDecimal() {
+    return mDecimal;
+  }
+
+  /**
+   * Answers whether each cue is preceded by its sequence number.
+   *
+   * @return {@code true} if cues are numbered.
+   */
+  boolean isNumbered() {
+    return mNumbered;
+  }
+}
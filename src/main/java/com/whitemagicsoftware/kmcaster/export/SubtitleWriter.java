@@ -0,0 +1,293 @@
+/*
+ * Copyright 2023 White Magic Software, Ltd.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.whitemagicsoftware.kmcaster.export;
+
+import com.github.kwhat.jnativehook.keyboard.NativeKeyEvent;
+import com.whitemagicsoftware.kmcaster.listeners.ModifierMask;
+import com.whitemagicsoftware.kmcaster.stats.UsageTable;
+import com.whitemagicsoftware.kmcaster.util.ConsecutiveEventCounter;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+
+import static com.github.kwhat.jnativehook.keyboard.NativeKeyEvent.*;
+
+/**
+ * Responsible for writing key presses as timed subtitle cues. A cue holds
+ * the keys pressed while it is showing, written as chords such as "Ctrl+S"
+ * and separated by spaces; a key pressed repeatedly is written once, with
+ * its tally, following the same rules as the overlay's key counter. A cue
+ * shows until the delay has elapsed after its last key was released, or
+ * until it holds {@link #KEYS_PER_CUE} keys and another key is pressed.
+ * <p>
+ * Each cue is written as soon as it ends, so only the cue being built is
+ * kept in memory. Events must be given in the order they happened.
+ * </p>
+ */
+public final class SubtitleWriter implements Closeable, Flushable {
+  /**
+   * Default milliseconds that a cue shows after its last key is released.
+   */
+  public static final long DELAY = 1000;
+
+  /**
+   * Most keys in a cue, which keeps cues short enough to read.
+   */
+  private static final int KEYS_PER_CUE = 8;
+
+  /**
+   * Marks the absence of a cue in {@link #mStart}.
+   */
+  private static final long NONE = -1;
+
+  private final Writer mOut;
+  private final SubtitleFormat mFormat;
+  private final long mDelay;
+  private final long mOffset;
+  private final ConsecutiveEventCounter<String> mCounter;
+
+  /**
+   * Chord names by {@link UsageTable} cell, created as keys are pressed.
+   */
+  private final String[] mLabels = new String[ UsageTable.CELLS ];
+
+  /**
+   * Text of the cue being built.
+   */
+  private final StringBuilder mText = new StringBuilder( 128 );
+
+  /**
+   * Reused to write each cue's timing line.
+   */
+  private final StringBuilder mLine = new StringBuilder( 64 );
+
+  /**
+   * Index into {@link #mText} where the last key's name starts.
+   */
+  private int mKeyStart;
+
+  private int mKeys;
+  private int mCues;
+  private long mStart = NONE;
+  private long mEnd;
+
+  /**
+   * Creates a writer that writes cues as they end.
+   *
+   * @param out    Receives the subtitle file, which is written immediately.
+   * @param format The subtitle file format.
+   * @param delay  Milliseconds that a cue shows after its last key is
+   *               released.
+   * @param offset Milliseconds to add to every time, such as to align the
+   *               cues with a recording started earlier or later.
+   * @param limit  Repeated presses counted before the tally shows "+".
+   * @throws IOException The header could not be written.
+   */
+  public SubtitleWriter(
+    final Writer out,
+    final SubtitleFormat format,
+    final long delay,
+    final long offset,
+    final int limit ) throws IOException {
+    mOut = out;
+    mFormat = format;
+    mDelay = delay;
+    mOffset = offset;
+    mCounter = new ConsecutiveEventCounter<>( Math.max( limit, 2 ) );
+
+    mOut.write( format.getHeader() );
+  }
+
+  /**
+   * Adds a key press to the current cue, first writing the cue if it has
+   * ended. Modifier keys are written as part of the chords they make.
+   *
+   * @param time Milliseconds since the session started.
+   * @param code The virtual key code.
+   * @param mask The modifiers held, using {@link ModifierMask} bits.
+   * @throws IOException A cue could not be written.
+   */
+  public synchronized void press(
+    final long time, final int code, final int mask ) throws IOException {
+    if( isModifier( code ) ) {
+      return;
+    }
+
+    if( mStart != NONE && time > mEnd ) {
+      cue( mEnd );
+    }
+
+    final var label = label( code, mask );
+
+    if( mCounter.apply( label ) ) {
+      mText.setLength( mKeyStart );
+      mText.append( label ).append( mCounter );
+    }
+    else {
+      if( mKeys == KEYS_PER_CUE ) {
+        cue( time );
+        mCounter.apply( label );
+      }
+
+      if( mStart == NONE ) {
+        mStart = time;
+      }
+      else {
+        mText.append( ' ' );
+      }
+
+      mKeyStart = mText.length();
+      mText.append( label );
+      mKeys++;
+    }
+
+    mEnd = Math.max( mEnd, time + mDelay );
+  }
+
+  /**
+   * Extends the current cue so that it shows until the delay has elapsed
+   * after the key's release.
+   *
+   * @param time Milliseconds since the session started.
+   * @param code The virtual key code.
+   */
+  public synchronized void release( final long time, final int code ) {
+    if( mStart != NONE && !isModifier( code ) ) {
+      mEnd = Math.max( mEnd, time + mDelay );
+    }
+  }
+
+  @Override
+  public synchronized void flush() throws IOException {
+    mOut.flush();
+  }
+
+  /**
+   * Writes the current cue, if any, and closes the output.
+   *
+   * @throws IOException The cue could not be written.
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    try {
+      if( mStart != NONE ) {
+        cue( mEnd );
+      }
+    } finally {
+      mOut.close();
+    }
+  }
+
+  /**
+   * Writes the current cue, ending at the given time, and starts a new one.
+   * Cues that end before the offset time are dropped.
+   */
+  private void cue( final long end ) throws IOException {
+    final var from = Math.max( mStart + mOffset, 0 );
+    final var to = end + mOffset;
+
+    if( to > from ) {
+      mLine.setLength( 0 );
+
+      if( mFormat.isNumbered() ) {
+        mLine.append( ++mCues ).append( '\n' );
+      }
+
+      timestamp( from );
+      mLine.append( " --> " );
+      timestamp( to );
+      mLine.append( '\n' );
+
+      mOut.append( mLine );
+      mOut.append( mText );
+      mOut.write( "\n\n" );
+    }
+
+    mText.setLength( 0 );
+    mKeys = 0;
+    mStart = NONE;
+    mCounter.reset();
+  }
+
+  /**
+   * Appends the given time as hours, minutes, seconds, and milliseconds.
+   */
+  private void timestamp( final long millis ) {
+    final var seconds = millis / 1000;
+
+    pad( seconds / 3600, 2 );
+    mLine.append( ':' );
+    pad( seconds / 60 % 60, 2 );
+    mLine.append( ':' );
+    pad( seconds % 60, 2 );
+    mLine.append( mFormat.getDecimal() );
+    pad( millis % 1000, 3 );
+  }
+
+  private void pad( final long value, final int digits ) {
+    for( long bound = 10, i = 1; i < digits; i++, bound *= 10 ) {
+      if( value < bound ) {
+        mLine.append( '0' );
+      }
+    }
+
+    mLine.append( value );
+  }
+
+  /**
+   * Returns the name of the chord, escaping characters that subtitle
+   * formats treat as markup.
+   */
+  private String label( final int code, final int mask ) {
+    final var slot = UsageTable.slot( code );
+    final var cell = slot * ModifierMask.SIZE + mask;
+
+    if( slot >= 0 && mLabels[ cell ] != null ) {
+      return mLabels[ cell ];
+    }
+
+    final var label = ModifierMask
+      .toString( mask, NativeKeyEvent.getKeyText( code ) )
+      .replace( "&", "&amp;" )
+      .replace( "<", "&lt;" )
+      .replace( ">", "&gt;" );
+
+    if( slot >= 0 ) {
+      mLabels[ cell ] = label;
+    }
+
+    return label;
+  }
+
+  private static boolean isModifier( final int code ) {
+    return code == VC_SHIFT || code == VC_CONTROL ||
+      code == VC_ALT || code == VC_META;
+  }
+}
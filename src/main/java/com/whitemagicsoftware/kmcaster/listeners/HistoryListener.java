@@ -0,0 +1,110 @@
+/*
+ * Copyright 2023 White Magic Software, Ltd.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.whitemagicsoftware.kmcaster.listeners;
+
+import com.whitemagicsoftware.kmcaster.HardwareSwitch;
+import com.whitemagicsoftware.kmcaster.ui.HistoryStrip;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.whitemagicsoftware.kmcaster.HardwareSwitch.*;
+import static javax.swing.SwingUtilities.invokeLater;
+
+/**
+ * Responsible for adding regular key presses to a {@link HistoryStrip},
+ * prefixed by the modifiers held at the time, such as "Ctrl+Alt+T". Shift is
+ * only shown alongside another modifier, because it is already reflected in
+ * the key's text. Label identifiers are cached by key and modifier mask, so
+ * chords are only formatted the first time they are typed.
+ */
+public final class HistoryListener implements PropertyChangeListener {
+  private static final int SHIFT_BIT = ModifierMask.bitOf( KEY_SHIFT );
+
+  private final HistoryStrip mStrip;
+
+  /**
+   * Label identifiers indexed by key text, then by modifier mask; -1 marks
+   * a combination that has not been typed.
+   */
+  private final Map<String, int[]> mIds = new HashMap<>();
+
+  private final ModifierMask mModifiers = new ModifierMask();
+
+  public HistoryListener( final HistoryStrip strip ) {
+    assert strip != null;
+
+    mStrip = strip;
+  }
+
+  @Override
+  public void propertyChange( final PropertyChangeEvent e ) {
+    invokeLater( () -> update( e ) );
+  }
+
+  /**
+   * Tracks modifier state and adds regular key presses to the strip. This
+   * must be invoked from Swing's event dispatch thread.
+   *
+   * @param e The switch that changed, with its previous and new values.
+   */
+  private void update( final PropertyChangeEvent e ) {
+    final var hwSwitch = HardwareSwitch.valueFrom( e.getPropertyName() );
+    final var value = e.getNewValue().toString();
+
+    if( !mModifiers.apply( hwSwitch, value ) &&
+      hwSwitch == KEY_REGULAR && !value.isEmpty() ) {
+      mStrip.push( lookup( value ) );
+    }
+  }
+
+  /**
+   * Returns the label identifier for the given key with the modifiers held.
+   *
+   * @param key The regular key's text.
+   * @return The identifier to push onto the strip.
+   */
+  private int lookup( final String key ) {
+    final var held = mModifiers.get();
+    final var mask = held == SHIFT_BIT ? 0 : held;
+    final var ids = mIds.computeIfAbsent( key, k -> {
+      final var unset = new int[ ModifierMask.SIZE ];
+      Arrays.fill( unset, -1 );
+      return unset;
+    } );
+
+    if( ids[ mask ] < 0 ) {
+      ids[ mask ] = mStrip.intern( ModifierMask.toString( mask, key ) );
+    }
+
+    return ids[ mask ];
+  }
+}
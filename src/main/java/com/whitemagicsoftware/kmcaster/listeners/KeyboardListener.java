@@ -262,7 +262,7 @@ public final class KeyboardListener
    * The 65511, 65512 are shifted alt key codes (a.k.a. the meta key).
    * </p>
    */
-  private final Map<Integer, HandedSwitch> MODIFIERS_LINUX =
+  private final static Map<Integer, HandedSwitch> MODIFIERS_LINUX =
     Map.ofEntries(
       entry( 65505, KEY_SHIFT_LEFT ),
       entry( 65506, KEY_SHIFT_RIGHT ),
@@ -338,7 +338,20 @@ public final class KeyboardListener
     }
   }
 
-  private String translate( final NativeKeyEvent e ) {
+  /**
+   * Returns the text for the key cap of a pressed or released key, which
+   * is available before (or without) the key being typed.
+   *
+   * @param e The native key event.
+   * @return The human-readable text to display on screen.
+   */
+  public static String keyText( final NativeKeyEvent e ) {
+    final var text = translate( e );
+
+    return IS_OS_LINUX ? RAW_CODES.getOrDefault( e.getRawCode(), text ) : text;
+  }
+
+  private static String translate( final NativeKeyEvent e ) {
     final var keyCode = e.getKeyCode();
     final var text = NativeKeyEvent.getKeyText( keyCode );
     return TRANSLATE.getOrDefault( text, text );
@@ -405,7 +418,13 @@ public final class KeyboardListener
     }
   }
 
-  private boolean isRegular( final NativeKeyEvent e ) {
+  /**
+   * Answers whether the given event is for a key other than a modifier.
+   *
+   * @param e The native key event.
+   * @return {@code false} if the key is Shift, Ctrl, or Alt.
+   */
+  static boolean isRegular( final NativeKeyEvent e ) {
     final var rawCode = e.getRawCode();
 
     return !((MODIFIERS_LINUX.containsKey( rawCode ) && IS_OS_LINUX) ||
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2023 White Magic Software, Ltd.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.whitemagicsoftware.kmcaster.listeners;
+
+import com.whitemagicsoftware.kmcaster.HardwareSwitch;
+
+import static com.whitemagicsoftware.kmcaster.HardwareSwitch.*;
+
+/**
+ * Responsible for tracking the modifier keys that are held as a bit mask,
+ * using one bit per entry in {@link HardwareSwitch#modifierSwitches()}. The
+ * mask is compact so that it can index tables directly.
+ */
+public final class ModifierMask {
+  /**
+   * Number of distinct masks, which bounds every mask value.
+   */
+  public static final int SIZE = 1 << modifierSwitches().length;
+
+  /**
+   * Modifiers in the order they are written.
+   */
+  private static final HardwareSwitch[] WRITTEN = {
+    KEY_CTRL, KEY_ALT, KEY_SHIFT
+  };
+
+  /**
+   * Modifiers currently held.
+   */
+  private int mMask;
+
+  /**
+   * Returns the bit that represents the given modifier.
+   *
+   * @param modifier One of {@link HardwareSwitch#modifierSwitches()}.
+   * @return A mask having a single bit set.
+   * @throws IllegalArgumentException The switch is not a modifier.
+   */
+  public static int bitOf( final HardwareSwitch modifier ) {
+    final var modifiers = modifierSwitches();
+
+    for( int i = 0; i < modifiers.length; i++ ) {
+      if( modifiers[ i ] == modifier ) {
+        return 1 << i;
+      }
+    }
+
+    throw new IllegalArgumentException( modifier.toString() );
+  }
+
+  /**
+   * Returns the name of a key with the given modifiers, such as "Ctrl+A".
+   *
+   * @param mask The modifiers held.
+   * @param key  The name of the key.
+   * @return The chord's name.
+   */
+  public static String toString( final int mask, final String key ) {
+    final var label = new StringBuilder();
+
+    for( final var modifier : WRITTEN ) {
+      if( (mask & bitOf( modifier )) != 0 ) {
+        label.append( modifier.toTitleCase() ).append( '+' );
+      }
+    }
+
+    return label.append( key ).toString();
+  }
+
+  /**
+   * Updates the mask if the given switch is a modifier.
+   *
+   * @param hwSwitch The switch that changed.
+   * @param value    The new switch value, "true" when pressed.
+   * @return {@code true} if the switch is a modifier.
+   */
+  public boolean apply( final HardwareSwitch hwSwitch, final String value ) {
+    final var modifier = hwSwitch.isModifier();
+
+    if( modifier ) {
+      final var bit = bitOf( hwSwitch );
+
+      mMask = Boolean.parseBoolean( value ) ? mMask | bit : mMask & ~bit;
+    }
+
+    return modifier;
+  }
+
+  /**
+   * Returns the modifiers currently held.
+   *
+   * @return A value less than {@link #SIZE}.
+   */
+  public int get() {
+    return mMask;
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2023 White Magic Software, Ltd.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.whitemagicsoftware.kmcaster.listeners;
+
+import com.github.kwhat.jnativehook.keyboard.NativeKeyEvent;
+import com.github.kwhat.jnativehook.keyboard.NativeKeyListener;
+import com.github.kwhat.jnativehook.mouse.NativeMouseEvent;
+import com.github.kwhat.jnativehook.mouse.NativeMouseListener;
+import com.whitemagicsoftware.kmcaster.util.RateCounter;
+
+import static com.github.kwhat.jnativehook.keyboard.NativeKeyEvent.CHAR_UNDEFINED;
+import static java.lang.System.nanoTime;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Responsible for measuring how fast the user types and clicks: key presses
+ * per second, words per minute, and mouse clicks per second. A word is five
+ * typed characters, including spaces. Events are counted on the native
+ * hook's thread without locks or allocation; the rates are averaged over a
+ * sliding window of a few seconds and may be read from any thread.
+ */
+public final class RateListener
+  implements NativeKeyListener, NativeMouseListener {
+  /**
+   * Number of buckets in each sliding window.
+   */
+  private static final int BUCKETS = 20;
+
+  /**
+   * Duration of each bucket, making a five-second window.
+   */
+  private static final long BUCKET_NANOS = MILLISECONDS.toNanos( 250 );
+
+  /**
+   * Characters in a word, by convention.
+   */
+  private static final double WORD_LENGTH = 5;
+
+  private final RateCounter mKeys = new RateCounter( BUCKETS, BUCKET_NANOS );
+  private final RateCounter mChars = new RateCounter( BUCKETS, BUCKET_NANOS );
+  private final RateCounter mClicks = new RateCounter( BUCKETS, BUCKET_NANOS );
+
+  @Override
+  public void nativeKeyPressed( final NativeKeyEvent e ) {
+    mKeys.record( nanoTime() );
+  }
+
+  @Override
+  public void nativeKeyTyped( final NativeKeyEvent e ) {
+    final var c = e.getKeyChar();
+
+    if( c >= ' ' && c != CHAR_UNDEFINED ) {
+      mChars.record( nanoTime() );
+    }
+  }
+
+  @Override
+  public void nativeMousePressed( final NativeMouseEvent e ) {
+    mClicks.record( nanoTime() );
+  }
+
+  /**
+   * Returns the average number of keys pressed per second, including
+   * modifiers and repeats.
+   *
+   * @return Key presses per second over the sliding window.
+   */
+  public double getKeysPerSecond() {
+    return mKeys.getRate( nanoTime() );
+  }
+
+  /**
+   * Returns the average typing speed.
+   *
+   * @return Words per minute over the sliding window.
+   */
+  public double getWordsPerMinute() {
+    return mChars.getRate( nanoTime() ) * 60 / WORD_LENGTH;
+  }
+
+  /**
+   * Returns the average number of mouse buttons pressed per second.
+   *
+   * @return Mouse clicks per second over the sliding window.
+   */
+  public double getClicksPerSecond() {
+    return mClicks.getRate( nanoTime() );
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2023 White Magic Software, Ltd.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.whitemagicsoftware.kmcaster.listeners;
+
+import com.github.kwhat.jnativehook.keyboard.NativeKeyEvent;
+import com.github.kwhat.jnativehook.keyboard.NativeKeyListener;
+import com.whitemagicsoftware.kmcaster.ui.RolloverRow;
+import com.whitemagicsoftware.kmcaster.util.KeySet;
+
+import static com.github.kwhat.jnativehook.keyboard.NativeKeyEvent.VC_UNDEFINED;
+import static com.whitemagicsoftware.kmcaster.listeners.KeyboardListener.isRegular;
+import static com.whitemagicsoftware.kmcaster.listeners.KeyboardListener.keyText;
+
+/**
+ * Responsible for showing every regular key that is held at once in a
+ * {@link RolloverRow}. Held keys are tracked by virtual key code, which,
+ * unlike the raw code on Linux, does not change when Shift is pressed or
+ * released while the key is held. Repeated presses from a held key are
+ * ignored. The row is updated directly from the native hook's thread, so
+ * pressing and releasing keys does not allocate.
+ */
+public final class RolloverListener implements NativeKeyListener {
+  private final KeySet mHeld = new KeySet();
+  private final RolloverRow mRow;
+
+  public RolloverListener( final RolloverRow row ) {
+    assert row != null;
+
+    mRow = row;
+  }
+
+  @Override
+  public void nativeKeyPressed( final NativeKeyEvent e ) {
+    final var code = e.getKeyCode();
+
+    if( code != VC_UNDEFINED && isRegular( e ) && mHeld.add( code ) ) {
+      if( !mRow.isRegistered( code ) ) {
+        mRow.register( code, keyText( e ) );
+      }
+
+      mRow.press( code );
+    }
+  }
+
+  @Override
+  public void nativeKeyReleased( final NativeKeyEvent e ) {
+    final var code = e.getKeyCode();
+
+    if( mHeld.remove( code ) ) {
+      mRow.release( code );
+    }
+  }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2023 White Magic Software, Ltd.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.whitemagicsoftware.kmcaster.listeners;
+
+import com.github.kwhat.jnativehook.keyboard.NativeKeyEvent;
+import com.github.kwhat.jnativehook.keyboard.NativeKeyListener;
+import com.whitemagicsoftware.kmcaster.stats.SessionLog;
+import com.whitemagicsoftware.kmcaster.util.KeySet;
+
+import static java.lang.System.nanoTime;
+
+/**
+ * Responsible for recording key presses and releases in a
+ * {@link SessionLog}. Repeated presses while a key is held are not
+ * recorded, nor are releases of keys pressed before the hook started.
+ */
+public final class SessionListener implements NativeKeyListener {
+  private final SessionLog mLog;
+  private final KeySet mHeld = new KeySet();
+
+  public SessionListener( final SessionLog log ) {
+    assert log != null;
+
+    mLog = log;
+  }
+
+  @Override
+  public void nativeKeyPressed( final NativeKeyEvent e ) {
+    final var code = e.getKeyCode();
+
+    if( mHeld.add( code ) ) {
+      mLog.append( code, UsageListener.mask( e ), true, nanoTime() );
+    }
+  }
+
+  @Override
+  public void nativeKeyReleased( final NativeKeyEvent e ) {
+    final var code = e.getKeyCode();
+
+    if( mHeld.remove( code ) ) {
+      mLog.append( code, 0, false, nanoTime() );
+    }
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2023 White Magic Software, Ltd.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.whitemagicsoftware.kmcaster.listeners;
+
+import com.whitemagicsoftware.kmcaster.HardwareSwitch;
+import com.whitemagicsoftware.kmcaster.shortcuts.ChordDictionary;
+import com.whitemagicsoftware.kmcaster.shortcuts.SequenceAutomaton;
+import com.whitemagicsoftware.kmcaster.ui.ResetTimer;
+
+import javax.swing.*;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+
+import static com.whitemagicsoftware.kmcaster.HardwareSwitch.KEY_REGULAR;
+import static java.lang.System.nanoTime;
+import static javax.swing.SwingUtilities.invokeLater;
+
+/**
+ * Responsible for showing the action name of a keyboard shortcut, such as
+ * "Reopen tab", when its chord is typed. Multi-stroke sequences, such as
+ * "C-x C-f", are shown when their final chord is typed, taking precedence
+ * over that chord's own action. The caption is cleared after the key is
+ * released, using the same delay as the regular key cap.
+ */
+public final class ShortcutListener implements PropertyChangeListener {
+  private final ChordDictionary mChords;
+  private final SequenceAutomaton mSequences;
+  private final JLabel mCaption;
+  private final ResetTimer mClearTimer;
+  private final ModifierMask mModifiers = new ModifierMask();
+
+  /**
+   * Creates a listener that writes action names to the given caption.
+   *
+   * @param chords    The shortcuts to recognize.
+   * @param sequences The multi-stroke shortcuts to recognize, compiled from
+   *                  the same dictionary as the chords.
+   * @param caption   The label that shows the action names.
+   * @param delay     Milliseconds to keep showing an action after its key
+   *                  is released.
+   */
+  public ShortcutListener(
+    final ChordDictionary chords,
+    final SequenceAutomaton sequences,
+    final JLabel caption,
+    final int delay ) {
+    assert chords != null;
+    assert sequences != null;
+    assert caption != null;
+
+    mChords = chords;
+    mSequences = sequences;
+    mCaption = caption;
+    mClearTimer = new ResetTimer( delay );
+  }
+
+  @Override
+  public void propertyChange( final PropertyChangeEvent e ) {
+    invokeLater( () -> update( e ) );
+  }
+
+  /**
+   * Tracks modifier state and shows the action for regular key presses.
+   * This must be invoked from Swing's event dispatch thread.
+   *
+   * @param e The switch that changed, with its previous and new values.
+   */
+  private void update( final PropertyChangeEvent e ) {
+    final var hwSwitch = HardwareSwitch.valueFrom( e.getPropertyName() );
+    final var value = e.getNewValue().toString();
+
+    if( mModifiers.apply( hwSwitch, value ) || hwSwitch != KEY_REGULAR ) {
+      return;
+    }
+
+    if( value.isEmpty() ) {
+      mClearTimer.addActionListener( event -> mCaption.setText( "" ) );
+    }
+    else {
+      final var symbol = mChords.symbol( mModifiers.get(), value );
+      final var sequence = mSequences.next( symbol, nanoTime() );
+      final var action = sequence == null ? mChords.lookup( symbol ) : sequence;
+
+      mClearTimer.stop();
+      mCaption.setText( action == null ? "" : action );
+    }
+  }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2023 White Magic Software, Ltd.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.whitemagicsoftware.kmcaster.listeners;
+
+import com.github.kwhat.jnativehook.keyboard.NativeKeyEvent;
+import com.github.kwhat.jnativehook.keyboard.NativeKeyListener;
+import com.whitemagicsoftware.kmcaster.stats.UsageTable;
+
+import static com.github.kwhat.jnativehook.NativeInputEvent.*;
+import static com.github.kwhat.jnativehook.keyboard.NativeKeyEvent.*;
+import static com.whitemagicsoftware.kmcaster.HardwareSwitch.*;
+import static java.lang.System.nanoTime;
+
+/**
+ * Responsible for tallying key and chord usage in a {@link UsageTable}. The
+ * modifiers are taken from each event, rather than tracked, so a chord is
+ * tallied correctly even if a modifier was pressed before the hook started.
+ * Modifier keys are tallied on their own, without a mask.
+ */
+public final class UsageListener implements NativeKeyListener {
+  private static final int SHIFT = ModifierMask.bitOf( KEY_SHIFT );
+  private static final int CTRL = ModifierMask.bitOf( KEY_CTRL );
+  private static final int ALT = ModifierMask.bitOf( KEY_ALT );
+
+  private final UsageTable mTable;
+
+  public UsageListener( final UsageTable table ) {
+    assert table != null;
+
+    mTable = table;
+  }
+
+  @Override
+  public void nativeKeyPressed( final NativeKeyEvent e ) {
+    mTable.press( e.getKeyCode(), mask( e ), nanoTime() );
+  }
+
+  @Override
+  public void nativeKeyReleased( final NativeKeyEvent e ) {
+    mTable.release( e.getKeyCode(), nanoTime() );
+  }
+
+  /**
+   * Converts the event's modifiers into {@link ModifierMask} bits.
+   *
+   * @param e The native key event.
+   * @return The modifiers held, or zero for a modifier key.
+   */
+  static int mask( final NativeKeyEvent e ) {
+    final var code = e.getKeyCode();
+
+    if( code == VC_SHIFT || code == VC_CONTROL ||
+      code == VC_ALT || code == VC_META ) {
+      return 0;
+    }
+
+    final var modifiers = e.getModifiers();
+
+    return ((modifiers & SHIFT_MASK) != 0 ? SHIFT : 0) |
+      ((modifiers & CTRL_MASK) != 0 ? CTRL : 0) |
+      ((modifiers & ALT_MASK) != 0 ? ALT : 0);
+  }
+}
@@ -0,0 +1,445 @@
+/*
+ * Copyright 2023 White Magic Software, Ltd.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.whitemagicsoftware.kmcaster.shortcuts;
+
+import com.whitemagicsoftware.kmcaster.listeners.ModifierMask;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.whitemagicsoftware.kmcaster.HardwareSwitch.*;
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Locale.ROOT;
+import static java.util.Map.entry;
+
+/**
+ * Responsible for naming the actions that keyboard shortcuts perform, such
+ * as "Reopen tab" for Ctrl+Shift+T. Each keystroke is reduced to a symbol,
+ * which is the key's index times {@link ModifierMask#SIZE} plus the
+ * modifier mask. Actions are stored in a table indexed directly by symbol,
+ * so finding the action for a keystroke takes constant time and allocates
+ * nothing. ASCII keys are indexed by character code; other keys, such as
+ * "F5", are assigned indexes as they are read. Letters ignore case when Ctrl
+ * or Alt is held, and Shift alone is ignored for keys that type a character
+ * because the character already reflects it, so "G" means Shift+G. For the
+ * same reason, "Shift+g" is read as "G", and Shift alone with any other
+ * character, such as "Shift+1", is rejected in favour of the character it
+ * types, which depends on the keyboard layout.
+ * <p>
+ * Dictionaries are text files having one shortcut per line:
+ * </p>
+ * <pre>
+ * # Comments start with a hash.
+ * Ctrl+Shift+T = Reopen tab
+ * Alt+F4 = Close window
+ * Ctrl+= = Zoom in
+ * C-x C-f = Find file
+ * g g = Go to first line
+ * </pre>
+ * <p>
+ * Modifiers are Ctrl (or Control), Alt (or Option), and Shift, or the Emacs
+ * prefixes C-, M-, and S-. Keys are named as they appear on the key caps, or
+ * by a common name such as Tab, Enter, Backspace, Escape, Up, or PageDown.
+ * Chords separated by spaces form a sequence, which is recognized by the
+ * {@link SequenceAutomaton} that {@link #compileSequences(long)} creates;
+ * numeric keypad keys are therefore written without a space, as in "Num5".
+ * </p>
+ */
+public final class ChordDictionary {
+  /**
+   * Number of keys indexed by character code.
+   */
+  private static final int ASCII = 128;
+
+  /**
+   * Modifiers that make letters ignore case.
+   */
+  private static final int FOLDING =
+    ModifierMask.bitOf( KEY_CTRL ) | ModifierMask.bitOf( KEY_ALT );
+
+  /**
+   * Modifier that is ignored when it is held alone with a character key.
+   */
+  private static final int SHIFT = ModifierMask.bitOf( KEY_SHIFT );
+
+  /**
+   * Prefix for numeric keypad key caps, such as "Num 5".
+   */
+  private static final String KEYPAD = "Num";
+
+  /**
+   * Maps common key names to the text shown on the key caps.
+   */
+  private static final Map<String, String> KEY_NAMES = Map.ofEntries(
+    entry( "backspace", "Back ⌫" ),
+    entry( "back", "Back ⌫" ),
+    entry( "tab", "Tab ↔" ),
+    entry( "enter", "Enter ⏎" ),
+    entry( "return", "Enter ⏎" ),
+    entry( "escape", "Esc" ),
+    entry( "esc", "Esc" ),
+    entry( "space", "Space" ),
+    entry( "up", "↑" ),
+    entry( "down", "↓" ),
+    entry( "left", "←" ),
+    entry( "right", "→" ),
+    entry( "pageup", "PgUp" ),
+    entry( "pagedown", "PgDn" ),
+    entry( "delete", "Del" ),
+    entry( "insert", "Ins" ),
+    entry( "plus", "+" )
+  );
+
+  /**
+   * Maps modifier names to their mask bits.
+   */
+  private static final Map<String, Integer> MODIFIER_NAMES = Map.ofEntries(
+    entry( "ctrl", ModifierMask.bitOf( KEY_CTRL ) ),
+    entry( "control", ModifierMask.bitOf( KEY_CTRL ) ),
+    entry( "alt", ModifierMask.bitOf( KEY_ALT ) ),
+    entry( "option", ModifierMask.bitOf( KEY_ALT ) ),
+    entry( "shift", ModifierMask.bitOf( KEY_SHIFT ) )
+  );
+
+  /**
+   * Maps Emacs modifier prefixes, such as the "C" in "C-x", to mask bits.
+   */
+  private static final Map<Character, Integer> EMACS_PREFIXES = Map.of(
+    'C', ModifierMask.bitOf( KEY_CTRL ),
+    'M', ModifierMask.bitOf( KEY_ALT ),
+    'S', ModifierMask.bitOf( KEY_SHIFT )
+  );
+
+  /**
+   * Indexes for keys beyond {@link #ASCII}, by key cap text.
+   */
+  private final Map<String, Integer> mKeys = new HashMap<>();
+
+  /**
+   * Action names indexed by symbol.
+   */
+  private String[] mActions = new String[ ASCII * ModifierMask.SIZE ];
+
+  /**
+   * Symbols for each multi-stroke sequence, parallel to
+   * {@link #mSequenceActions}.
+   */
+  private final List<int[]> mSequences = new ArrayList<>();
+
+  /**
+   * Action names for each multi-stroke sequence.
+   */
+  private final List<String> mSequenceActions = new ArrayList<>();
+
+  /**
+   * Creates an empty dictionary.
+   */
+  public ChordDictionary() {
+  }
+
+  /**
+   * Reads shortcuts from the given files. Shortcuts in later files replace
+   * those for the same chord in earlier files.
+   *
+   * @param paths The dictionary files to read.
+   * @return A dictionary containing the shortcuts from all files.
+   * @throws IOException              Could not read a file.
+   * @throws IllegalArgumentException A line is not a valid shortcut.
+   */
+  public static ChordDictionary load( final Iterable<Path> paths )
+    throws IOException {
+    final var dictionary = new ChordDictionary();
+
+    for( final var path : paths ) {
+      try( final var reader = Files.newBufferedReader( path, UTF_8 ) ) {
+        dictionary.read( reader, path );
+      }
+    }
+
+    return dictionary;
+  }
+
+  /**
+   * Names the action performed by a shortcut.
+   *
+   * @param keys   The chord, such as "Ctrl+Shift+T", or a sequence of
+   *               chords separated by spaces, such as "C-x C-f".
+   * @param action The action name, such as "Reopen tab".
+   * @throws IllegalArgumentException A chord has no key or an unknown
+   *                                  modifier.
+   */
+  public void put( final String keys, final String action ) {
+    final var chords = keys.strip().split( "\\s+" );
+    final var symbols = new int[ chords.length ];
+
+    for( int i = 0; i < chords.length; i++ ) {
+      symbols[ i ] = parse( chords[ i ] );
+    }
+
+    if( symbols.length == 1 ) {
+      mActions[ symbols[ 0 ] ] = action;
+    }
+    else {
+      mSequences.add( symbols );
+      mSequenceActions.add( action );
+    }
+  }
+
+  /**
+   * Reduces a keystroke to a symbol, without allocating.
+   *
+   * @param mask The modifiers held, from {@link ModifierMask#get()}.
+   * @param key  The regular key's text, as shown on its key cap.
+   * @return The keystroke's symbol, or -1 if the key has no shortcuts.
+   */
+  public int symbol( final int mask, final String key ) {
+    final var index = index( key, mask );
+
+    return index < 0 ? -1 : index * ModifierMask.SIZE + modifiers( mask, key );
+  }
+
+  /**
+   * Returns the action performed by a keystroke.
+   *
+   * @param symbol The keystroke, from {@link #symbol(int, String)}.
+   * @return The action name, or {@code null} if the keystroke is not a
+   * shortcut.
+   */
+  public String lookup( final int symbol ) {
+    return symbol < 0 ? null : mActions[ symbol ];
+  }
+
+  /**
+   * Compiles the multi-stroke sequences read so far into an automaton. The
+   * automaton's symbols are only valid for this dictionary.
+   *
+   * @param timeout Milliseconds to wait for the next keystroke of a
+   *                partially typed sequence before starting over.
+   * @return An automaton that recognizes this dictionary's sequences.
+   */
+  public SequenceAutomaton compileSequences( final long timeout ) {
+    return new SequenceAutomaton(
+      mSequences, mSequenceActions, mActions.length, timeout );
+  }
+
+  private void read( final BufferedReader reader, final Path path )
+    throws IOException {
+    var number = 0;
+
+    for( String line; (line = reader.readLine()) != null; ) {
+      number++;
+      line = line.strip();
+
+      if( line.isEmpty() || line.startsWith( "#" ) ) {
+        continue;
+      }
+
+      final var separator = separator( line );
+
+      if( separator < 0 ) {
+        throw new IllegalArgumentException(
+          format( "%s:%d: expected 'chord = action'", path, number ) );
+      }
+
+      try {
+        put( line.substring( 0, separator ),
+             line.substring( separator + 1 ).strip() );
+      } catch( final IllegalArgumentException e ) {
+        throw new IllegalArgumentException(
+          format( "%s:%d: %s", path, number, e.getMessage() ), e );
+      }
+    }
+  }
+
+  /**
+   * Finds the equals sign between the keys and the action. An equals sign
+   * that starts the line or follows a plus sign or Emacs prefix is the key,
+   * as in "Ctrl+=" or "C-=".
+   *
+   * @param line The shortcut definition.
+   * @return The separator index, or -1 if there is none.
+   */
+  private static int separator( final String line ) {
+    for( int i = line.indexOf( '=', 1 ); i >= 0;
+         i = line.indexOf( '=', i + 1 ) ) {
+      final var previous = line.charAt( i - 1 );
+
+      if( previous != '+' && previous != '-' ) {
+        return i;
+      }
+    }
+
+    return -1;
+  }
+
+  /**
+   * Converts a single chord into a symbol, assigning an index to its key if
+   * the key has none.
+   *
+   * @param chord The modifiers and key, such as "Ctrl+T" or "C-t".
+   * @return The chord's symbol.
+   * @throws IllegalArgumentException The chord has no key, an unknown
+   *                                  modifier, or Shift alone with a
+   *                                  character other than a letter.
+   */
+  private int parse( final String chord ) {
+    final var end = chord.length() - 1;
+    var mask = 0;
+    var start = 0;
+
+    // A plus sign ending the chord is the key, not a separator.
+    for( int i = chord.indexOf( '+' ); i >= 0 && i < end;
+         i = chord.indexOf( '+', start ) ) {
+      final var name = chord.substring( start, i ).toLowerCase( ROOT );
+      final var bit = MODIFIER_NAMES.get( name );
+
+      if( bit == null ) {
+        throw new IllegalArgumentException( "Unknown modifier: " + name );
+      }
+
+      mask |= bit;
+      start = i + 1;
+    }
+
+    // Emacs prefixes, such as the "C-M-" in "C-M-f".
+    while( end - start >= 2 && chord.charAt( start + 1 ) == '-' ) {
+      final var bit = EMACS_PREFIXES.get( chord.charAt( start ) );
+
+      if( bit == null ) {
+        break;
+      }
+
+      mask |= bit;
+      start += 2;
+    }
+
+    final var key = shift( mask, normalize( chord.substring( start ) ) );
+
+    if( key.isEmpty() ) {
+      throw new IllegalArgumentException( "Missing key: " + chord );
+    }
+
+    if( index( key, mask ) < 0 ) {
+      assign( key );
+    }
+
+    return symbol( mask, key );
+  }
+
+  /**
+   * Returns the table index for the given key, without allocating.
+   *
+   * @param key  The key cap text.
+   * @param mask The modifiers held with the key.
+   * @return The key's index, or -1 if the key has no shortcuts.
+   */
+  private int index( final String key, final int mask ) {
+    if( key.length() == 1 ) {
+      var c = key.charAt( 0 );
+
+      // Control characters are typed when Ctrl is held with a letter.
+      if( c > 0 && c < ' ' ) {
+        c += '@';
+      }
+
+      if( c < ASCII ) {
+        return (mask & FOLDING) != 0 && c >= 'a' && c <= 'z'
+          ? c - 'a' + 'A'
+          : c;
+      }
+    }
+
+    final var index = mKeys.get( key );
+    return index == null ? -1 : index;
+  }
+
+  /**
+   * Drops Shift when it is held alone with a key that types a character,
+   * because the character already reflects it, as with "?" or "G".
+   *
+   * @param mask The modifiers held with the key.
+   * @param key  The key cap text.
+   * @return The modifiers that distinguish the keystroke.
+   */
+  private static int modifiers( final int mask, final String key ) {
+    return mask == SHIFT && key.length() == 1 ? 0 : mask;
+  }
+
+  /**
+   * Writes a character key held with Shift alone as the character it types,
+   * because that is the key text received when it is pressed.
+   *
+   * @param mask The modifiers held with the key.
+   * @param key  The key cap text.
+   * @return The uppercase letter for a lowercase letter held with Shift,
+   * otherwise the given key.
+   * @throws IllegalArgumentException Shift is held alone with a character
+   *                                  that is not a letter.
+   */
+  private static String shift( final int mask, final String key ) {
+    if( mask != SHIFT || key.length() != 1 ) {
+      return key;
+    }
+
+    if( Character.isLetter( key.charAt( 0 ) ) ) {
+      return key.toUpperCase( ROOT );
+    }
+
+    throw new IllegalArgumentException( format(
+      "Write the character that Shift+%s types instead", key ) );
+  }
+
+  private void assign( final String key ) {
+    final var index = ASCII + mKeys.size();
+    final var length = (index + 1) * ModifierMask.SIZE;
+
+    mKeys.put( key, index );
+
+    if( length > mActions.length ) {
+      mActions = Arrays.copyOf(
+        mActions, Math.max( length, mActions.length * 2 ) );
+    }
+  }
+
+  private static String normalize( final String key ) {
+    final var name = KEY_NAMES.getOrDefault( key.toLowerCase( ROOT ), key );
+
+    // Keypad keys are written without the space shown on their key caps.
+    return name.length() > KEYPAD.length() && name.startsWith( KEYPAD )
+      ? KEYPAD + ' ' + name.substring( KEYPAD.length() )
+      : name;
+  }
+}
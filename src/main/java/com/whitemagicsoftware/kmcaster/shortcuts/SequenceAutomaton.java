@@ -0,0 +1,221 @@
+/*
+ * Copyright 2023 White Magic Software, Ltd.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.whitemagicsoftware.kmcaster.shortcuts;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Responsible for recognizing multi-stroke sequences, such as "C-x C-f" or
+ * "g g", as they are typed. The sequences are compiled into a deterministic
+ * automaton using the Aho-Corasick construction: a trie of the sequences
+ * whose missing transitions are resolved through failure links ahead of
+ * time. Every keystroke is then a single table lookup, regardless of how
+ * many sequences there are, and no memory is allocated while typing.
+ * <p>
+ * Only keys that appear in some sequence are part of the automaton's
+ * alphabet; any other keystroke returns to the start. A sequence that is
+ * left unfinished for longer than the timeout is abandoned. Once a sequence
+ * is recognized, matching starts over, so typing "g g g" after defining
+ * "g g" recognizes the sequence once and leaves one "g" pending.
+ * </p>
+ */
+public final class SequenceAutomaton {
+  /**
+   * The state before any keystroke of a sequence is typed.
+   */
+  private static final int START = 0;
+
+  /**
+   * Maps keystroke symbols to letters of the alphabet, or -1 for symbols
+   * that start over.
+   */
+  private final int[] mLetters;
+
+  /**
+   * Number of letters in the alphabet.
+   */
+  private final int mAlphabet;
+
+  /**
+   * Next state, indexed by state times {@link #mAlphabet} plus letter.
+   */
+  private final int[] mTransitions;
+
+  /**
+   * Action recognized upon entering each state, or {@code null}.
+   */
+  private final String[] mActions;
+
+  /**
+   * Nanoseconds a partially typed sequence remains pending.
+   */
+  private final long mTimeout;
+
+  /**
+   * Current state, {@link #START} when no sequence is pending.
+   */
+  private int mState = START;
+
+  /**
+   * Time of the keystroke that entered the current state, in nanoseconds.
+   */
+  private long mUpdated;
+
+  /**
+   * Compiles the given sequences.
+   *
+   * @param sequences Keystroke symbols for each sequence.
+   * @param actions   Action names for each sequence.
+   * @param symbols   Upper bound on the keystroke symbols.
+   * @param timeout   Milliseconds a partially typed sequence remains
+   *                  pending.
+   */
+  SequenceAutomaton(
+    final List<int[]> sequences,
+    final List<String> actions,
+    final int symbols,
+    final long timeout ) {
+    assert sequences.size() == actions.size();
+
+    mLetters = new int[ symbols ];
+    Arrays.fill( mLetters, -1 );
+
+    var alphabet = 0;
+
+    for( final var sequence : sequences ) {
+      for( final var symbol : sequence ) {
+        if( mLetters[ symbol ] < 0 ) {
+          mLetters[ symbol ] = alphabet++;
+        }
+      }
+    }
+
+    mAlphabet = alphabet;
+    mTimeout = MILLISECONDS.toNanos( timeout );
+
+    // Builds the trie, keyed by state times the alphabet size plus letter.
+    final Map<Long, Integer> trie = new HashMap<>();
+    final var states = new int[]{1};
+    final var outputs = new HashMap<Integer, String>();
+
+    for( int i = 0; i < sequences.size(); i++ ) {
+      var state = START;
+
+      for( final var symbol : sequences.get( i ) ) {
+        final var key = (long) state * alphabet + mLetters[ symbol ];
+        state = trie.computeIfAbsent( key, k -> states[ 0 ]++ );
+      }
+
+      // Later definitions replace earlier ones for the same sequence.
+      outputs.put( state, actions.get( i ) );
+    }
+
+    final var count = states[ 0 ];
+    final var failures = new int[ count ];
+
+    mTransitions = new int[ count * alphabet ];
+    mActions = new String[ count ];
+
+    // Visits states breadth first so that each state's failure target has
+    // all of its transitions resolved before the state itself.
+    final var queue = new ArrayDeque<Integer>();
+    queue.add( START );
+
+    while( !queue.isEmpty() ) {
+      final int state = queue.remove();
+      final var failure = failures[ state ];
+      final var action = outputs.get( state );
+
+      mActions[ state ] = action == null && state != START
+        ? mActions[ failure ]
+        : action;
+
+      for( int letter = 0; letter < alphabet; letter++ ) {
+        final var next = trie.get( (long) state * alphabet + letter );
+        final var index = state * alphabet + letter;
+
+        if( next == null ) {
+          mTransitions[ index ] = state == START
+            ? START
+            : mTransitions[ failure * alphabet + letter ];
+        }
+        else {
+          failures[ next ] = state == START
+            ? START
+            : mTransitions[ failure * alphabet + letter ];
+          mTransitions[ index ] = next;
+          queue.add( next );
+        }
+      }
+    }
+  }
+
+  /**
+   * Advances the automaton by one keystroke.
+   *
+   * @param symbol The keystroke, from {@link ChordDictionary#symbol}.
+   * @param time   When the keystroke happened, from {@link System#nanoTime()}.
+   * @return The action for the sequence that the keystroke completes, or
+   * {@code null} if no sequence was completed.
+   */
+  public String next( final int symbol, final long time ) {
+    final var letter = symbol < 0 || symbol >= mLetters.length
+      ? -1
+      : mLetters[ symbol ];
+
+    if( time - mUpdated > mTimeout ) {
+      mState = START;
+    }
+
+    mState = letter < 0 ? START : mTransitions[ mState * mAlphabet + letter ];
+    mUpdated = time;
+
+    final var action = mActions[ mState ];
+
+    if( action != null ) {
+      mState = START;
+    }
+
+    return action;
+  }
+
+  /**
+   * Answers whether a sequence has been partially typed.
+   *
+   * @return {@code true} if the previous keystrokes began a sequence.
+   */
+  public boolean isPending() {
+    return mState != START;
+  }
+}
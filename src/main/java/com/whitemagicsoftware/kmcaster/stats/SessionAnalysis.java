@@ -0,0 +1,238 @@
+/*
+ * Copyright 2023 White Magic Software, Ltd.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.whitemagicsoftware.kmcaster.stats;
+
+import com.whitemagicsoftware.kmcaster.listeners.ModifierMask;
+import picocli.CommandLine;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import static com.whitemagicsoftware.kmcaster.stats.SessionLog.*;
+import static com.whitemagicsoftware.kmcaster.stats.UsageReport.*;
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * Responsible for printing key and chord frequencies, typing speed, and idle
+ * gaps computed from recorded session logs. Every log is split into ranges
+ * that are scanned in parallel on a fork-join pool; see {@link SessionScan}.
+ */
+@CommandLine.Command(
+  name = "analyze",
+  mixinStandardHelpOptions = true,
+  description = "Prints statistics from recorded session logs."
+)
+@SuppressWarnings( {"FieldMayBeFinal", "CanBeFinal"} )
+public final class SessionAnalysis implements Callable<Integer> {
+  /**
+   * Key presses per word when estimating words per minute.
+   */
+  private static final double PRESSES_PER_WORD = 5;
+
+  @CommandLine.Option(
+    names = {"-n", "--top"},
+    description = "Entries to print per list (${DEFAULT-VALUE})",
+    paramLabel = "number",
+    defaultValue = "10"
+  )
+  private int mTop = 10;
+
+  @CommandLine.Option(
+    names = {"--idle"},
+    description = "Milliseconds between presses that count as idle " +
+      "(${DEFAULT-VALUE})",
+    paramLabel = "ms",
+    defaultValue = "5000"
+  )
+  private long mIdle = 5000;
+
+  @CommandLine.Option(
+    names = {"-j", "--threads"},
+    description = "Scanning threads (default: one per processor)",
+    paramLabel = "number"
+  )
+  private int mThreads = Runtime.getRuntime().availableProcessors();
+
+  @CommandLine.Parameters(
+    description = "Session logs or directories of them " +
+      "(default: ~/.kmcaster/sessions)",
+    paramLabel = "file"
+  )
+  private List<Path> mPaths = new ArrayList<>();
+
+  @Override
+  public Integer call() throws IOException {
+    final var logs = list( mPaths.isEmpty()
+                             ? List.of( getDefaultDirectory() )
+                             : mPaths );
+    final var channels = new ArrayList<FileChannel>( logs.size() );
+    final var pool = new ForkJoinPool( Math.max( mThreads, 1 ) );
+    final var began = System.nanoTime();
+    var bytes = 0L;
+
+    try {
+      final var scans = new ArrayList<ForkJoinTask<SessionStats>>();
+
+      for( final var log : logs ) {
+        final var channel = FileChannel.open( log, READ );
+        channels.add( channel );
+        validate( channel, log );
+
+        final var records = (channel.size() - HEADER) / RECORD;
+        bytes += channel.size();
+        final var scan = new SessionScan( channel, 0, records, mIdle );
+        scans.add( pool.submit( scan ) );
+      }
+
+      final var stats = new SessionStats( mIdle );
+
+      for( final var scan : scans ) {
+        stats.merge( scan.join(), false );
+      }
+
+      final var elapsed = (System.nanoTime() - began) / 1_000_000;
+
+      print( System.out, stats );
+      System.out.printf( "%nScanned %d sessions (%d MiB) in %d ms%n",
+                         logs.size(), bytes >> 20, elapsed );
+    } finally {
+      pool.shutdown();
+
+      for( final var channel : channels ) {
+        channel.close();
+      }
+    }
+
+    return 0;
+  }
+
+  private void print( final PrintStream out, final SessionStats stats ) {
+    final var presses = stats.getPresses();
+    final var active = stats.getActiveTime();
+    final var rate = active == 0 ? 0 : presses * 1000.0 / active;
+
+    out.printf( "Key presses   %d%n", presses );
+    out.printf( "Active time   %s%n", duration( active ) );
+    out.printf( "Typing speed  %.1f keys/s, %.0f wpm%n",
+                rate, rate * 60 / PRESSES_PER_WORD );
+    out.printf( "Idle gaps     %d, %s in total, longest %s%n",
+                stats.getIdleGaps(), duration( stats.getIdleTime() ),
+                duration( stats.getLongestGap() ) );
+
+    final var keys = new long[ UsageTable.KEYS ];
+
+    for( int cell = 0; cell < UsageTable.CELLS; cell++ ) {
+      keys[ cell / ModifierMask.SIZE ] += stats.getCount( cell );
+    }
+
+    out.printf( "%nTop %d keys%n", mTop );
+    out.printf( "%12s %8s  %s%n", "Presses", "Share", "Keys" );
+    top( UsageTable.KEYS, mTop, i -> keys[ i ] ).forEach(
+      slot -> out.printf( "%12d %7.2f%%  %s%n",
+                          keys[ slot ], share( keys[ slot ], presses ),
+                          label( slot, 0 ) ) );
+
+    out.printf( "%nTop %d chords%n", mTop );
+    out.printf( "%12s %8s  %s%n", "Presses", "Share", "Keys" );
+    top( UsageTable.CELLS, mTop, cell ->
+      (cell % ModifierMask.SIZE & SHORTCUT) == 0 ? 0 : stats.getCount( cell )
+    ).forEach( cell -> out.printf(
+      "%12d %7.2f%%  %s%n",
+      stats.getCount( cell ), share( stats.getCount( cell ), presses ),
+      label( cell / ModifierMask.SIZE, cell % ModifierMask.SIZE ) ) );
+
+    var intervals = 0L;
+
+    for( int bucket = 0; bucket < SessionStats.BUCKETS; bucket++ ) {
+      intervals += stats.getIntervals( bucket );
+    }
+
+    out.printf( "%nTime between presses%n" );
+    out.printf( "%12s %12s %12s %8s%n", "From ms", "Keys/s", "Presses",
+                "Share" );
+
+    for( int bucket = 0; bucket < SessionStats.BUCKETS; bucket++ ) {
+      final var count = stats.getIntervals( bucket );
+
+      if( count > 0 ) {
+        final var from = SessionStats.lowerBound( bucket );
+        final var speed = from == 0 ? "-" : String.format(
+          "%.1f", 1000.0 / from );
+
+        out.printf( "%12d %12s %12d %7.2f%%%n",
+                    from, speed, count, share( count, intervals ) );
+      }
+    }
+  }
+
+  /**
+   * Returns the session logs at the given paths, expanding directories into
+   * the logs they contain, in name order.
+   */
+  private static List<Path> list( final List<Path> paths )
+    throws IOException {
+    final var logs = new ArrayList<Path>();
+
+    for( final var path : paths ) {
+      if( Files.isDirectory( path ) ) {
+        try( final var files = Files.list( path ) ) {
+          files.filter( file -> file.toString().endsWith( EXTENSION ) )
+               .sorted()
+               .forEach( logs::add );
+        }
+      }
+      else {
+        logs.add( path );
+      }
+    }
+
+    return logs;
+  }
+
+  private static double share( final long count, final long total ) {
+    return total == 0 ? 0 : count * 100.0 / total;
+  }
+
+  /**
+   * Formats milliseconds as hours, minutes, and seconds.
+   */
+  private static String duration( final long millis ) {
+    final var seconds = millis / 1000;
+
+    return String.format( "%d:%02d:%02d",
+                          seconds / 3600, seconds / 60 % 60, seconds % 60 );
+  }
+}
@@ -0,0 +1,368 @@
+/*
+ * Copyright 2023 White Magic Software, Ltd.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.whitemagicsoftware.kmcaster.stats;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+import static java.nio.channels.FileChannel.MapMode.READ_WRITE;
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Responsible for recording every key press and release of a session in a
+ * memory-mapped file. The file is a header followed by one big-endian long
+ * per event, so that it can be split anywhere on a record boundary and
+ * scanned in parallel without decoding it; see {@link #encode}.
+ * <p>
+ * The file grows a region at a time. Appending an event stores a long into
+ * the mapped region; only when a region fills is the next one mapped. When
+ * closed, the file is truncated after the last event. Should the process
+ * end without closing the file, or the platform refuse to truncate a file
+ * that is still mapped (as Windows does), the rest of the last region holds
+ * zeros, which readers skip.
+ * </p>
+ */
+public final class SessionLog implements Closeable {
+  /**
+   * Identifies session logs: "KMCS" in ASCII.
+   */
+  static final int MAGIC = 0x4B4D4353;
+
+  /**
+   * Incremented when the file format changes.
+   */
+  static final int VERSION = 1;
+
+  /**
+   * Bytes before the events: magic, version, and start time.
+   */
+  static final int HEADER = 2 * Integer.BYTES + Long.BYTES;
+
+  /**
+   * Bytes per event.
+   */
+  static final int RECORD = Long.BYTES;
+
+  /**
+   * File name extension for session logs.
+   */
+  public static final String EXTENSION = ".kms";
+
+  /**
+   * Bytes mapped at a time, a whole number of records after the header.
+   */
+  private static final int REGION = HEADER + (1 << 20) * RECORD;
+
+  /**
+   * Bits used by the key code and flags in a record.
+   */
+  private static final int TIME_SHIFT = 24;
+
+  /**
+   * Set in every record, distinguishing it from unwritten space.
+   */
+  private static final int RECORDED = 0x80;
+
+  /**
+   * Bytes read at a time when replaying a log.
+   */
+  private static final int READ_SIZE = 1 << 16;
+
+  /**
+   * Receives the events of a session log in the order they happened.
+   */
+  @FunctionalInterface
+  public interface Replay {
+    /**
+     * Called for each key press and release.
+     *
+     * @param time    Milliseconds since the session started.
+     * @param code    The virtual key code.
+     * @param mask    The modifiers held, using {@code ModifierMask} bits;
+     *                zero for releases.
+     * @param pressed {@code true} for a press, {@code false} for a release.
+     * @return {@code false} to stop reading the log.
+     */
+    boolean event( long time, int code, int mask, boolean pressed );
+  }
+
+  private final FileChannel mChannel;
+  private final long mStartNanos;
+  private MappedByteBuffer mRegion;
+  private long mRegionOffset;
+
+  private SessionLog( final FileChannel channel, final long startNanos )
+    throws IOException {
+    mChannel = channel;
+    mStartNanos = startNanos;
+    mRegion = channel.map( READ_WRITE, 0, REGION );
+    mRegion.putInt( MAGIC )
+           .putInt( VERSION )
+           .putLong( System.currentTimeMillis() );
+  }
+
+  /**
+   * Returns the directory used when no session directory is given.
+   *
+   * @return A directory in the user's home directory.
+   */
+  public static Path getDefaultDirectory() {
+    return Path.of(
+      System.getProperty( "user.home" ), ".kmcaster", "sessions" );
+  }
+
+  /**
+   * Creates a new session log in the given directory, named after the
+   * current date and time.
+   *
+   * @param directory The directory to contain the log, created if missing.
+   * @return The created log, which must be closed.
+   * @throws IOException The file could not be created.
+   */
+  public static SessionLog create( final Path directory ) throws IOException {
+    Files.createDirectories( directory );
+
+    final var name = LocalDateTime.now().format(
+      DateTimeFormatter.ofPattern( "'session-'yyyyMMdd-HHmmss" ) );
+    final var channel = FileChannel.open(
+      directory.resolve( name + EXTENSION ), CREATE_NEW, READ, WRITE );
+
+    try {
+      return new SessionLog( channel, System.nanoTime() );
+    } catch( final IOException | RuntimeException e ) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Reads a session log from start to end, passing each event to the given
+   * replay, until the replay asks to stop. The log is read sequentially
+   * through a fixed-size buffer, so memory use does not depend on the log's
+   * length.
+   *
+   * @param path   The session log.
+   * @param replay Receives the events.
+   * @throws IOException The file could not be read or is not a session log.
+   */
+  public static void replay( final Path path, final Replay replay )
+    throws IOException {
+    try( final var channel = FileChannel.open( path, READ ) ) {
+      validate( channel, path );
+
+      final var buffer = ByteBuffer.allocateDirect( READ_SIZE );
+      channel.position( HEADER );
+
+      while( channel.read( buffer ) >= 0 || buffer.position() > 0 ) {
+        buffer.flip();
+
+        if( buffer.remaining() < RECORD ) {
+          break;
+        }
+
+        while( buffer.remaining() >= RECORD ) {
+          final var record = buffer.getLong();
+
+          if( record != 0 &&
+            !replay.event( time( record ), code( record ), mask( record ),
+                           isPressed( record ) ) ) {
+            return;
+          }
+        }
+
+        buffer.compact();
+      }
+    }
+  }
+
+  /**
+   * Returns the time of the last event in a session log.
+   *
+   * @param path The session log.
+   * @return Milliseconds from the start of the session to its last event,
+   * or zero if the log has no events.
+   * @throws IOException The file could not be read or is not a session log.
+   */
+  public static long getDuration( final Path path ) throws IOException {
+    try( final var channel = FileChannel.open( path, READ ) ) {
+      validate( channel, path );
+
+      final var buffer = ByteBuffer.allocate( READ_SIZE );
+      var end = HEADER + (channel.size() - HEADER) / RECORD * RECORD;
+
+      // A log that was not closed ends with unwritten, zeroed records.
+      while( end > HEADER ) {
+        final var start = Math.max( HEADER, end - READ_SIZE );
+
+        buffer.clear().limit( (int) (end - start) );
+        channel.read( buffer, start );
+
+        for( int i = buffer.position() - RECORD; i >= 0; i -= RECORD ) {
+          final var record = buffer.getLong( i );
+
+          if( record != 0 ) {
+            return time( record );
+          }
+        }
+
+        end = start;
+      }
+    }
+
+    return 0;
+  }
+
+  /**
+   * Appends an event. This is called from the native hook's thread; it
+   * allocates nothing and only makes a system call when a region fills.
+   *
+   * @param code    The virtual key code.
+   * @param mask    The modifiers held, using {@code ModifierMask} bits.
+   * @param pressed {@code true} for a press, {@code false} for a release.
+   * @param time    When the event happened, from {@link System#nanoTime()}.
+   */
+  public synchronized void append(
+    final int code, final int mask, final boolean pressed, final long time ) {
+    if( !mChannel.isOpen() ) {
+      return;
+    }
+
+    if( mRegion.remaining() < RECORD ) {
+      try {
+        mRegionOffset += mRegion.position();
+        mRegion = mChannel.map( READ_WRITE, mRegionOffset, REGION );
+      } catch( final IOException e ) {
+        e.printStackTrace();
+        return;
+      }
+    }
+
+    final var millis = NANOSECONDS.toMillis( time - mStartNanos );
+    mRegion.putLong( encode( Math.max( millis, 0 ), code, mask, pressed ) );
+  }
+
+  /**
+   * Forces the events to disk, removes the unused part of the last region
+   * where the platform allows, and closes the file.
+   *
+   * @throws IOException The file could not be written.
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    if( !mChannel.isOpen() ) {
+      return;
+    }
+
+    try {
+      mRegion.force();
+      truncate();
+    } finally {
+      mChannel.close();
+    }
+  }
+
+  /**
+   * Removes the unused part of the last region. The region cannot be
+   * unmapped before it is garbage collected, and Windows refuses to shrink a
+   * file while it is mapped; the zeroed tail is then kept, which readers
+   * skip as they would after a crash.
+   */
+  private void truncate() {
+    try {
+      mChannel.truncate( mRegionOffset + mRegion.position() );
+    } catch( final IOException ignored ) {
+      // Keep the zeroed records so that closing never loses events.
+    }
+  }
+
+  /**
+   * Checks that the given file starts with a session log header.
+   *
+   * @param channel The file to check.
+   * @param path    The file's path, for the error message.
+   * @throws IOException The file could not be read or is not a session log.
+   */
+  static void validate( final FileChannel channel, final Path path )
+    throws IOException {
+    final var header = ByteBuffer.allocate( HEADER );
+
+    if( channel.size() < HEADER ||
+      channel.read( header, 0 ) < HEADER ||
+      header.getInt( 0 ) != MAGIC ||
+      header.getInt( 4 ) != VERSION ) {
+      throw new IOException( "Not a session log: " + path );
+    }
+  }
+
+  /**
+   * Packs an event into a record: milliseconds since the session started in
+   * the upper 40 bits, then the 16-bit virtual key code, a bit that is always
+   * set so that no record is zero, the modifier mask in bits 1 to 3, and
+   * whether the key was pressed in bit 0.
+   *
+   * @param millis  Milliseconds since the session started.
+   * @param code    The virtual key code.
+   * @param mask    The modifiers held.
+   * @param pressed {@code true} for a press.
+   * @return The record.
+   */
+  static long encode(
+    final long millis, final int code, final int mask, final boolean pressed ) {
+    return millis << TIME_SHIFT |
+      (long) (code & 0xFFFF) << 8 |
+      RECORDED |
+      (mask & 0x7) << 1 |
+      (pressed ? 1 : 0);
+  }
+
+  static long time( final long record ) {
+    return record >>> TIME_SHIFT;
+  }
+
+  static int code( final long record ) {
+    return (int) (record >>> 8) & 0xFFFF;
+  }
+
+  static int mask( final long record ) {
+    return (int) (record >>> 1) & 0x7;
+  }
+
+  static boolean isPressed( final long record ) {
+    return (record & 1) != 0;
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2023 White Magic Software, Ltd.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.whitemagicsoftware.kmcaster.stats;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.RecursiveTask;
+
+import static com.whitemagicsoftware.kmcaster.exceptions.Rethrowable.rethrow;
+import static com.whitemagicsoftware.kmcaster.stats.SessionLog.*;
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+
+/**
+ * Responsible for tallying a range of records in a session log. Ranges
+ * larger than {@link #SPLIT} records are halved and scanned in parallel;
+ * each smaller range is mapped read-only and its records are read in place,
+ * so the log is never decoded into objects or read into the heap. The two
+ * halves' tallies are merged in order, left then right.
+ */
+final class SessionScan extends RecursiveTask<SessionStats> {
+  /**
+   * Records scanned by one task: 8 MiB of the log.
+   */
+  private static final long SPLIT = 1 << 20;
+
+  private final FileChannel mChannel;
+  private final long mFirst;
+  private final long mCount;
+  private final long mIdle;
+
+  /**
+   * Creates a task to tally a range of records.
+   *
+   * @param channel The session log, positioned anywhere.
+   * @param first   Index of the first record to tally.
+   * @param count   Number of records to tally.
+   * @param idle    Milliseconds without a press that count as idle.
+   */
+  SessionScan(
+    final FileChannel channel,
+    final long first,
+    final long count,
+    final long idle ) {
+    mChannel = channel;
+    mFirst = first;
+    mCount = count;
+    mIdle = idle;
+  }
+
+  @Override
+  protected SessionStats compute() {
+    if( mCount > SPLIT ) {
+      final var half = mCount / 2;
+      final var left = new SessionScan( mChannel, mFirst, half, mIdle );
+      final var right =
+        new SessionScan( mChannel, mFirst + half, mCount - half, mIdle );
+
+      left.fork();
+      final var tail = right.compute();
+
+      return left.join().merge( tail, true );
+    }
+
+    final var stats = new SessionStats( mIdle );
+
+    try {
+      final var buffer = mChannel.map(
+        READ_ONLY, HEADER + mFirst * RECORD, mCount * RECORD );
+      final var end = (int) mCount * RECORD;
+
+      for( int offset = 0; offset < end; offset += RECORD ) {
+        final var record = buffer.getLong( offset );
+
+        if( record != 0 && isPressed( record ) ) {
+          stats.press( time( record ), code( record ), mask( record ) );
+        }
+      }
+    } catch( final IOException e ) {
+      rethrow( e );
+    }
+
+    return stats;
+  }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright 2023 White Magic Software, Ltd.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.whitemagicsoftware.kmcaster.stats;
+
+import com.whitemagicsoftware.kmcaster.listeners.ModifierMask;
+
+/**
+ * Responsible for the tallies computed from part of a session log: presses
+ * by key and chord, a histogram of the time between presses, and the idle
+ * gaps. Tallies for adjacent parts are merged in order, so that the time
+ * between the last press of one part and the first press of the next is
+ * counted too.
+ * <p>
+ * The histogram has power-of-two buckets: bucket 0 counts intervals under
+ * a millisecond and bucket <em>b</em> counts intervals of at least
+ * 2<sup>b-1</sup> and less than 2<sup>b</sup> milliseconds.
+ * </p>
+ */
+final class SessionStats {
+  /**
+   * Number of interval histogram buckets; the last holds all longer gaps.
+   */
+  static final int BUCKETS = 32;
+
+  /**
+   * Marks the absence of a press in {@link #mFirst} and {@link #mLast}.
+   */
+  private static final long NONE = -1;
+
+  /**
+   * Presses by cell, as for {@link UsageTable}.
+   */
+  private final long[] mCounts = new long[ UsageTable.CELLS ];
+
+  /**
+   * Intervals between presses, by bucket.
+   */
+  private final long[] mIntervals = new long[ BUCKETS ];
+
+  /**
+   * Milliseconds without a press that count as an idle gap.
+   */
+  private final long mIdle;
+
+  private long mPresses;
+  private long mActiveTime;
+  private long mIdleGaps;
+  private long mIdleTime;
+  private long mLongestGap;
+  private long mFirst = NONE;
+  private long mLast = NONE;
+
+  /**
+   * Creates tallies for part of a session.
+   *
+   * @param idle Milliseconds without a press that count as an idle gap.
+   */
+  SessionStats( final long idle ) {
+    mIdle = idle;
+  }
+
+  /**
+   * Counts a key press. Presses must be given in the order they happened.
+   *
+   * @param time Milliseconds since the session started.
+   * @param code The virtual key code.
+   * @param mask The modifiers held, using {@link ModifierMask} bits.
+   */
+  void press( final long time, final int code, final int mask ) {
+    final var slot = UsageTable.slot( code );
+
+    if( slot >= 0 ) {
+      mCounts[ slot * ModifierMask.SIZE + mask ]++;
+    }
+
+    if( mLast == NONE ) {
+      mFirst = time;
+    }
+    else {
+      interval( time - mLast );
+    }
+
+    mLast = time;
+    mPresses++;
+  }
+
+  /**
+   * Adds the tallies for the part that follows this one.
+   *
+   * @param next       Tallies to add.
+   * @param contiguous {@code true} if the next part continues this part's
+   *                   session, so the time between them is an interval.
+   * @return This instance, for chaining.
+   */
+  SessionStats merge( final SessionStats next, final boolean contiguous ) {
+    for( int cell = 0; cell < mCounts.length; cell++ ) {
+      mCounts[ cell ] += next.mCounts[ cell ];
+    }
+
+    for( int bucket = 0; bucket < BUCKETS; bucket++ ) {
+      mIntervals[ bucket ] += next.mIntervals[ bucket ];
+    }
+
+    if( contiguous && mLast != NONE && next.mFirst != NONE ) {
+      interval( next.mFirst - mLast );
+    }
+
+    mPresses += next.mPresses;
+    mActiveTime += next.mActiveTime;
+    mIdleGaps += next.mIdleGaps;
+    mIdleTime += next.mIdleTime;
+    mLongestGap = Math.max( mLongestGap, next.mLongestGap );
+
+    if( mFirst == NONE ) {
+      mFirst = next.mFirst;
+    }
+
+    if( next.mLast != NONE ) {
+      mLast = next.mLast;
+    }
+
+    return this;
+  }
+
+  long getCount( final int cell ) {
+    return mCounts[ cell ];
+  }
+
+  long getIntervals( final int bucket ) {
+    return mIntervals[ bucket ];
+  }
+
+  long getPresses() {
+    return mPresses;
+  }
+
+  /**
+   * Returns the total time between presses that were not idle gaps.
+   *
+   * @return A duration in milliseconds.
+   */
+  long getActiveTime() {
+    return mActiveTime;
+  }
+
+  long getIdleGaps() {
+    return mIdleGaps;
+  }
+
+  long getIdleTime() {
+    return mIdleTime;
+  }
+
+  long getLongestGap() {
+    return mLongestGap;
+  }
+
+  /**
+   * Returns the shortest interval counted by the given bucket.
+   *
+   * @param bucket A value less than {@link #BUCKETS}.
+   * @return A duration in milliseconds.
+   */
+  static long lowerBound( final int bucket ) {
+    return bucket == 0 ? 0 : 1L << (bucket - 1);
+  }
+
+  private void interval( final long millis ) {
+    final var bucket = Math.min(
+      Long.SIZE - Long.numberOfLeadingZeros( Math.max( millis, 0 ) ),
+      BUCKETS - 1 );
+
+    mIntervals[ bucket ]++;
+
+    if( millis >= mIdle ) {
+      mIdleGaps++;
+      mIdleTime += millis;
+      mLongestGap = Math.max( mLongestGap, millis );
+    }
+    else {
+      mActiveTime += Math.max( millis, 0 );
+    }
+  }
+}
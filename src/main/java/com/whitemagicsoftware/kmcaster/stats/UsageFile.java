@@ -0,0 +1,238 @@
+/*
+ * Copyright 2023 White Magic Software, Ltd.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.whitemagicsoftware.kmcaster.stats;
+
+import com.whitemagicsoftware.kmcaster.listeners.ModifierMask;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.channels.FileChannel.MapMode.READ_WRITE;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Responsible for storing a {@link UsageTable} in a memory-mapped file. The
+ * file has a fixed size of about 128 KiB, however long usage is recorded:
+ * a header followed by the count and the total milliseconds held for every
+ * cell, as big-endian longs. Writing a snapshot copies the tallies into the
+ * mapped pages, which the operating system writes back to disk; the file is
+ * forced to disk when closed.
+ * <p>
+ * The file is locked while open so that two running instances cannot
+ * overwrite each other's tallies; the second instance fails to open it.
+ * </p>
+ */
+public final class UsageFile implements Closeable {
+  /**
+   * Identifies usage files: "KMCU" in ASCII.
+   */
+  private static final int MAGIC = 0x4B4D4355;
+
+  /**
+   * Incremented when the file format changes.
+   */
+  private static final int VERSION = 1;
+
+  /**
+   * Bytes before the tallies: magic, version, keys, and masks.
+   */
+  private static final int HEADER = 4 * Integer.BYTES;
+
+  /**
+   * Bytes in a usage file.
+   */
+  private static final int SIZE = HEADER + UsageTable.CELLS * 2 * Long.BYTES;
+
+  private final FileChannel mChannel;
+  private final MappedByteBuffer mBuffer;
+
+  private UsageFile(
+    final FileChannel channel, final MappedByteBuffer buffer ) {
+    mChannel = channel;
+    mBuffer = buffer;
+  }
+
+  /**
+   * Returns the file used when no usage file is given.
+   *
+   * @return A file in the user's home directory.
+   */
+  public static Path getDefaultPath() {
+    return Path.of( System.getProperty( "user.home" ), ".kmcaster", "usage" );
+  }
+
+  /**
+   * Opens the given usage file for writing, creating it if it does not
+   * exist, and adds the tallies it contains to the given table.
+   *
+   * @param path  The usage file.
+   * @param table Receives the tallies previously recorded.
+   * @return The opened file, which must be closed.
+   * @throws IOException The file could not be opened, is not a usage file,
+   *                     or is in use by another instance.
+   */
+  public static UsageFile open( final Path path, final UsageTable table )
+    throws IOException {
+    final var parent = path.toAbsolutePath().getParent();
+
+    if( parent != null ) {
+      Files.createDirectories( parent );
+    }
+
+    final var channel = FileChannel.open( path, CREATE, READ, WRITE );
+
+    try {
+      lock( channel, path );
+
+      final var empty = channel.size() == 0;
+
+      if( !empty ) {
+        validate( channel, path );
+      }
+
+      final var buffer = channel.map( READ_WRITE, 0, SIZE );
+
+      if( empty ) {
+        buffer.putInt( 0, MAGIC )
+              .putInt( 4, VERSION )
+              .putInt( 8, UsageTable.KEYS )
+              .putInt( 12, ModifierMask.SIZE );
+      }
+      else {
+        merge( buffer, table );
+      }
+
+      return new UsageFile( channel, buffer );
+    } catch( final IOException | RuntimeException e ) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Reads the tallies from the given usage file.
+   *
+   * @param path The usage file.
+   * @return The tallies previously recorded.
+   * @throws IOException The file could not be read or is not a usage file.
+   */
+  public static UsageTable read( final Path path ) throws IOException {
+    final var table = new UsageTable();
+
+    try( final var channel = FileChannel.open( path, READ ) ) {
+      validate( channel, path );
+      merge( channel.map( READ_ONLY, 0, SIZE ), table );
+    }
+
+    return table;
+  }
+
+  /**
+   * Copies the given tallies into the file. This may be called from any
+   * thread while keys are being tallied; it never blocks the thread that
+   * tallies them.
+   *
+   * @param table The tallies to store.
+   */
+  public synchronized void write( final UsageTable table ) {
+    for( int cell = 0; cell < UsageTable.CELLS; cell++ ) {
+      final var offset = HEADER + cell * 2 * Long.BYTES;
+
+      mBuffer.putLong( offset, table.getCount( cell ) );
+      mBuffer.putLong( offset + Long.BYTES, table.getDwell( cell ) );
+    }
+  }
+
+  /**
+   * Forces the tallies to disk and closes the file.
+   *
+   * @throws IOException The file could not be written.
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    try {
+      mBuffer.force();
+    } finally {
+      mChannel.close();
+    }
+  }
+
+  /**
+   * Locks the whole file, which is released when the channel is closed.
+   *
+   * @throws IOException The file is locked by another process or instance.
+   */
+  private static void lock( final FileChannel channel, final Path path )
+    throws IOException {
+    try {
+      if( channel.tryLock() != null ) {
+        return;
+      }
+    } catch( final OverlappingFileLockException ignored ) {
+      // Locked by this process, which is equally in use.
+    }
+
+    throw new IOException(
+      "Usage file in use by another instance (try a different --stats " +
+        "file): " + path );
+  }
+
+  private static void merge(
+    final MappedByteBuffer buffer, final UsageTable table ) {
+    for( int cell = 0; cell < UsageTable.CELLS; cell++ ) {
+      final var offset = HEADER + cell * 2 * Long.BYTES;
+
+      table.add(
+        cell, buffer.getLong( offset ), buffer.getLong( offset + Long.BYTES ) );
+    }
+  }
+
+  private static void validate( final FileChannel channel, final Path path )
+    throws IOException {
+    if( channel.size() != SIZE ) {
+      throw new IOException( "Not a usage file: " + path );
+    }
+
+    final var header = channel.map( READ_ONLY, 0, HEADER );
+
+    if( header.getInt( 0 ) != MAGIC ||
+      header.getInt( 4 ) != VERSION ||
+      header.getInt( 8 ) != UsageTable.KEYS ||
+      header.getInt( 12 ) != ModifierMask.SIZE ) {
+      throw new IOException( "Not a usage file: " + path );
+    }
+  }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2023 White Magic Software, Ltd.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.whitemagicsoftware.kmcaster.stats;
+
+import com.github.kwhat.jnativehook.keyboard.NativeKeyEvent;
+import com.whitemagicsoftware.kmcaster.listeners.ModifierMask;
+import picocli.CommandLine;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.concurrent.Callable;
+import java.util.function.IntToLongFunction;
+import java.util.stream.IntStream;
+
+import static com.whitemagicsoftware.kmcaster.HardwareSwitch.KEY_ALT;
+import static com.whitemagicsoftware.kmcaster.HardwareSwitch.KEY_CTRL;
+import static java.util.Comparator.comparingLong;
+
+/**
+ * Responsible for printing the most used keys and shortcuts from a usage
+ * file. Keys are tallied across all modifiers; shortcuts are chords that
+ * include Ctrl or Alt.
+ */
+@CommandLine.Command(
+  name = "report",
+  mixinStandardHelpOptions = true,
+  description = "Prints the most used keys and shortcuts."
+)
+@SuppressWarnings( {"FieldMayBeFinal", "CanBeFinal"} )
+public final class UsageReport implements Callable<Integer> {
+  /**
+   * Modifiers that make a chord a shortcut.
+   */
+  static final int SHORTCUT =
+    ModifierMask.bitOf( KEY_CTRL ) | ModifierMask.bitOf( KEY_ALT );
+
+  @CommandLine.Option(
+    names = {"-n", "--top"},
+    description = "Entries to print per list (${DEFAULT-VALUE})",
+    paramLabel = "number",
+    defaultValue = "10"
+  )
+  private int mTop = 10;
+
+  @CommandLine.Parameters(
+    description = "Usage file (default: ~/.kmcaster/usage)",
+    paramLabel = "file",
+    arity = "0..1"
+  )
+  private Path mPath;
+
+  @Override
+  public Integer call() throws IOException {
+    final var path = mPath == null ? UsageFile.getDefaultPath() : mPath;
+    final var table = UsageFile.read( path );
+    final var out = System.out;
+    final var keys = new long[ UsageTable.KEYS ];
+    final var dwells = new long[ UsageTable.KEYS ];
+
+    for( int cell = 0; cell < UsageTable.CELLS; cell++ ) {
+      keys[ cell / ModifierMask.SIZE ] += table.getCount( cell );
+      dwells[ cell / ModifierMask.SIZE ] += table.getDwell( cell );
+    }
+
+    out.printf( "Top %d keys%n", mTop );
+    heading( out );
+    top( UsageTable.KEYS, mTop, i -> keys[ i ] ).forEach(
+      slot -> row( out, keys[ slot ], dwells[ slot ], label( slot, 0 ) ) );
+
+    out.printf( "%nTop %d shortcuts%n", mTop );
+    heading( out );
+    top( UsageTable.CELLS, mTop, cell ->
+      (cell % ModifierMask.SIZE & SHORTCUT) == 0 ? 0 : table.getCount( cell )
+    ).forEach( cell -> row(
+      out, table.getCount( cell ), table.getDwell( cell ),
+      label( cell / ModifierMask.SIZE, cell % ModifierMask.SIZE ) ) );
+
+    return 0;
+  }
+
+  /**
+   * Returns the indexes having the highest non-zero values, highest first.
+   *
+   * @param size  Number of indexes.
+   * @param limit Maximum number of indexes to return.
+   * @param value Maps an index to its value.
+   * @return Up to {@code limit} indexes.
+   */
+  static IntStream top(
+    final int size, final int limit, final IntToLongFunction value ) {
+    return IntStream.range( 0, size )
+                    .filter( i -> value.applyAsLong( i ) > 0 )
+                    .boxed()
+                    .sorted( comparingLong( value::applyAsLong ).reversed() )
+                    .limit( Math.max( limit, 0 ) )
+                    .mapToInt( Integer::intValue );
+  }
+
+  private static void heading( final PrintStream out ) {
+    out.printf( "%12s %12s  %s%n", "Presses", "Avg ms held", "Keys" );
+  }
+
+  private static void row(
+    final PrintStream out,
+    final long count,
+    final long dwell,
+    final String label ) {
+    out.printf( "%12d %12d  %s%n", count, dwell / count, label );
+  }
+
+  /**
+   * Returns the name of a key with the given modifiers, such as "Ctrl+A".
+   *
+   * @param slot The key's slot in a {@link UsageTable}.
+   * @param mask The modifiers held, using {@link ModifierMask} bits.
+   * @return The chord's name.
+   */
+  static String label( final int slot, final int mask ) {
+    return ModifierMask.toString(
+      mask, NativeKeyEvent.getKeyText( UsageTable.code( slot ) ) );
+  }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2023 White Magic Software, Ltd.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.whitemagicsoftware.kmcaster.stats;
+
+import com.whitemagicsoftware.kmcaster.listeners.ModifierMask;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Responsible for tallying how often each key and chord is pressed and how
+ * long it is held. Tallies are kept in primitive arrays indexed by cell,
+ * which is the key's slot times {@link ModifierMask#SIZE} plus the modifier
+ * mask held when the key was pressed.
+ * <p>
+ * Virtual key codes fall into a few banks of 256 codes, distinguished by the
+ * high byte; each bank is given 256 slots, so the table stays small. Codes
+ * outside these banks are not tallied.
+ * </p>
+ * <p>
+ * Keys must be pressed and released from a single thread, such as the
+ * native hook's dispatch thread. Tallies are written with ordered stores,
+ * without locks or allocation, and may be read from any thread.
+ * </p>
+ */
+public final class UsageTable {
+  /**
+   * High bytes of the virtual key code banks that are tallied.
+   */
+  private static final int[] BANKS = {0x00, 0x0E, 0xE0, 0xFF};
+
+  /**
+   * Number of key slots.
+   */
+  public static final int KEYS = BANKS.length * 256;
+
+  /**
+   * Number of cells, one per key slot and modifier mask.
+   */
+  public static final int CELLS = KEYS * ModifierMask.SIZE;
+
+  /**
+   * Marks a key that is not held in {@link #mPressed}.
+   */
+  private static final long RELEASED = Long.MIN_VALUE;
+
+  /**
+   * Times pressed, by cell.
+   */
+  private final AtomicLongArray mCounts = new AtomicLongArray( CELLS );
+
+  /**
+   * Total milliseconds held, by cell.
+   */
+  private final AtomicLongArray mDwells = new AtomicLongArray( CELLS );
+
+  /**
+   * When each held key was pressed, by slot, or {@link #RELEASED}.
+   */
+  private final long[] mPressed = new long[ KEYS ];
+
+  /**
+   * Cell of each held key, by slot.
+   */
+  private final int[] mPressedCells = new int[ KEYS ];
+
+  /**
+   * Creates a table with no tallies.
+   */
+  public UsageTable() {
+    Arrays.fill( mPressed, RELEASED );
+  }
+
+  /**
+   * Counts a key press, ignoring repeats while the key is held.
+   *
+   * @param code The virtual key code.
+   * @param mask The modifiers held, using {@link ModifierMask} bits.
+   * @param time When the key was pressed, from {@link System#nanoTime()}.
+   */
+  public void press( final int code, final int mask, final long time ) {
+    final var slot = slot( code );
+
+    if( slot >= 0 && mPressed[ slot ] == RELEASED ) {
+      final var cell = slot * ModifierMask.SIZE + mask;
+
+      mPressed[ slot ] = time;
+      mPressedCells[ slot ] = cell;
+      mCounts.lazySet( cell, mCounts.get( cell ) + 1 );
+    }
+  }
+
+  /**
+   * Adds the time a key was held to the cell it was pressed in.
+   *
+   * @param code The virtual key code.
+   * @param time When the key was released, from {@link System#nanoTime()}.
+   */
+  public void release( final int code, final long time ) {
+    final var slot = slot( code );
+
+    if( slot >= 0 && mPressed[ slot ] != RELEASED ) {
+      final var cell = mPressedCells[ slot ];
+      final var held = NANOSECONDS.toMillis( time - mPressed[ slot ] );
+
+      mPressed[ slot ] = RELEASED;
+      mDwells.lazySet( cell, mDwells.get( cell ) + Math.max( held, 0 ) );
+    }
+  }
+
+  /**
+   * Adds tallies, such as those read from a file. This must not be called
+   * while keys are being pressed.
+   *
+   * @param cell  The key slot and modifier mask.
+   * @param count Times pressed.
+   * @param dwell Total milliseconds held.
+   */
+  public void add( final int cell, final long count, final long dwell ) {
+    mCounts.addAndGet( cell, count );
+    mDwells.addAndGet( cell, dwell );
+  }
+
+  public long getCount( final int cell ) {
+    return mCounts.get( cell );
+  }
+
+  public long getDwell( final int cell ) {
+    return mDwells.get( cell );
+  }
+
+  /**
+   * Returns the slot for the given virtual key code.
+   *
+   * @param code The virtual key code.
+   * @return The slot, or -1 if the code is not tallied.
+   */
+  public static int slot( final int code ) {
+    final var bank = code >>> 8;
+
+    for( int i = 0; i < BANKS.length; i++ ) {
+      if( BANKS[ i ] == bank ) {
+        return i * 256 + (code & 0xFF);
+      }
+    }
+
+    return -1;
+  }
+
+  /**
+   * Returns the virtual key code for the given slot.
+   *
+   * @param slot A value less than {@link #KEYS}.
+   * @return The virtual key code.
+   */
+  public static int code( final int slot ) {
+    return BANKS[ slot / 256 ] << 8 | slot % 256;
+  }
+}
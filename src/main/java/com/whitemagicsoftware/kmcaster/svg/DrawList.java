@@ -0,0 +1,423 @@
+/*
+ * Copyright 2023 White Magic Software, Ltd.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.whitemagicsoftware.kmcaster.svg;
+
+import java.awt.*;
+import java.awt.MultipleGradientPaint.ColorSpaceType;
+import java.awt.MultipleGradientPaint.CycleMethod;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Path2D;
+import java.awt.geom.Point2D;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.awt.AlphaComposite.SRC_OVER;
+import static java.awt.geom.PathIterator.*;
+
+/**
+ * Responsible for painting a vector graphic from a list of filled shapes,
+ * without parsing the vector graphic. Each shape is stored in the graphic's
+ * root coordinate space along with its paint, opacity, and clip, so that
+ * painting is a sequence of {@link Graphics2D#fill(Shape)} calls.
+ * <p>
+ * Draw lists are created when building the application from the vector
+ * graphics in its resources; see {@link DrawListCompiler}.
+ * </p>
+ */
+public final class DrawList {
+  /**
+   * File name extension for serialized draw lists.
+   */
+  public static final String EXTENSION = ".dl";
+
+  /**
+   * Identifies a serialized draw list ("KMDL").
+   */
+  private static final int MAGIC = 0x4B4D444C;
+
+  /**
+   * Incremented whenever the serialized format changes.
+   */
+  private static final short VERSION = 1;
+
+  private static final byte PAINT_COLOUR = 0;
+  private static final byte PAINT_LINEAR = 1;
+  private static final byte PAINT_RADIAL = 2;
+
+  private final float mWidth;
+  private final float mHeight;
+  private final List<Fill> mFills;
+
+  /**
+   * A shape to fill, in the vector graphic's root coordinate space.
+   */
+  static final class Fill {
+    private final Shape mShape;
+    private final Paint mPaint;
+    private final float mAlpha;
+    private final Shape mClip;
+
+    /**
+     * @param shape The shape to fill.
+     * @param paint A {@link Color} or a linear or radial gradient.
+     * @param alpha Opacity applied to the paint.
+     * @param clip  Area outside of which nothing is painted, or
+     *              {@code null} to paint everywhere.
+     */
+    Fill(
+      final Shape shape, final Paint paint, final float alpha,
+      final Shape clip ) {
+      mShape = shape;
+      mPaint = paint;
+      mAlpha = alpha;
+      mClip = clip;
+    }
+  }
+
+  /**
+   * Creates a draw list of the given size.
+   *
+   * @param width  The vector graphic's width.
+   * @param height The vector graphic's height.
+   * @param fills  The shapes to fill, in painting order.
+   */
+  DrawList( final float width, final float height, final List<Fill> fills ) {
+    mWidth = width;
+    mHeight = height;
+    mFills = fills;
+  }
+
+  public float getWidth() {
+    return mWidth;
+  }
+
+  public float getHeight() {
+    return mHeight;
+  }
+
+  /**
+   * Paints all shapes. The graphics context's transform maps the vector
+   * graphic's coordinates to the output; its paint, composite, and clip are
+   * restored afterwards.
+   *
+   * @param g The graphics context to paint upon.
+   */
+  public void render( final Graphics2D g ) {
+    final var paint = g.getPaint();
+    final var composite = g.getComposite();
+    final var clip = g.getClip();
+
+    for( final var fill : mFills ) {
+      g.setComposite( AlphaComposite.getInstance( SRC_OVER, fill.mAlpha ) );
+      g.setPaint( fill.mPaint );
+      g.setClip( clip );
+
+      if( fill.mClip != null ) {
+        g.clip( fill.mClip );
+      }
+
+      g.fill( fill.mShape );
+    }
+
+    g.setClip( clip );
+    g.setComposite( composite );
+    g.setPaint( paint );
+  }
+
+  /**
+   * Reads a draw list that was written by {@link #write(OutputStream)}.
+   *
+   * @param in The stream to read, which is not closed.
+   * @return The deserialized draw list.
+   * @throws IOException Could not read the stream or it has an unknown
+   *                     format.
+   */
+  public static DrawList read( final InputStream in ) throws IOException {
+    final var data = new DataInputStream( in );
+
+    if( data.readInt() != MAGIC || data.readShort() != VERSION ) {
+      throw new IOException( "Unknown draw list format" );
+    }
+
+    final var width = data.readFloat();
+    final var height = data.readFloat();
+    final var count = data.readInt();
+    final var fills = new ArrayList<Fill>( count );
+
+    for( int i = 0; i < count; i++ ) {
+      final var alpha = data.readFloat();
+      final var paint = readPaint( data );
+      final var clip = data.readBoolean() ? readShape( data ) : null;
+      final var shape = readShape( data );
+
+      fills.add( new Fill( shape, paint, alpha, clip ) );
+    }
+
+    return new DrawList( width, height, fills );
+  }
+
+  /**
+   * Writes this draw list in a compact binary format.
+   *
+   * @param out The stream to write, which is flushed but not closed.
+   * @throws IOException Could not write to the stream.
+   */
+  public void write( final OutputStream out ) throws IOException {
+    final var data = new DataOutputStream( out );
+
+    data.writeInt( MAGIC );
+    data.writeShort( VERSION );
+    data.writeFloat( mWidth );
+    data.writeFloat( mHeight );
+    data.writeInt( mFills.size() );
+
+    for( final var fill : mFills ) {
+      data.writeFloat( fill.mAlpha );
+      writePaint( data, fill.mPaint );
+      data.writeBoolean( fill.mClip != null );
+
+      if( fill.mClip != null ) {
+        writeShape( data, fill.mClip );
+      }
+
+      writeShape( data, fill.mShape );
+    }
+
+    data.flush();
+  }
+
+  private static void writePaint( final DataOutputStream data, final Paint p )
+    throws IOException {
+    if( p instanceof Color ) {
+      data.writeByte( PAINT_COLOUR );
+      data.writeInt( ((Color) p).getRGB() );
+    }
+    else if( p instanceof LinearGradientPaint ) {
+      final var paint = (LinearGradientPaint) p;
+
+      data.writeByte( PAINT_LINEAR );
+      writePoint( data, paint.getStartPoint() );
+      writePoint( data, paint.getEndPoint() );
+      writeGradient( data, paint );
+    }
+    else if( p instanceof RadialGradientPaint ) {
+      final var paint = (RadialGradientPaint) p;
+
+      data.writeByte( PAINT_RADIAL );
+      writePoint( data, paint.getCenterPoint() );
+      data.writeFloat( paint.getRadius() );
+      writePoint( data, paint.getFocusPoint() );
+      writeGradient( data, paint );
+    }
+    else {
+      throw new IllegalArgumentException( "Unsupported paint: " + p );
+    }
+  }
+
+  private static Paint readPaint( final DataInputStream data )
+    throws IOException {
+    final var kind = data.readByte();
+
+    switch( kind ) {
+      case PAINT_COLOUR:
+        return new Color( data.readInt(), true );
+      case PAINT_LINEAR: {
+        final var start = readPoint( data );
+        final var end = readPoint( data );
+        final var fractions = readFractions( data );
+        final var colours = readColours( data, fractions.length );
+
+        return new LinearGradientPaint(
+          start, end, fractions, colours,
+          CycleMethod.values()[ data.readByte() ],
+          ColorSpaceType.values()[ data.readByte() ],
+          readTransform( data ) );
+      }
+      case PAINT_RADIAL: {
+        final var centre = readPoint( data );
+        final var radius = data.readFloat();
+        final var focus = readPoint( data );
+        final var fractions = readFractions( data );
+        final var colours = readColours( data, fractions.length );
+
+        return new RadialGradientPaint(
+          centre, radius, focus, fractions, colours,
+          CycleMethod.values()[ data.readByte() ],
+          ColorSpaceType.values()[ data.readByte() ],
+          readTransform( data ) );
+      }
+      default:
+        throw new IOException( "Unknown paint: " + kind );
+    }
+  }
+
+  private static void writeGradient(
+    final DataOutputStream data, final MultipleGradientPaint paint )
+    throws IOException {
+    final var fractions = paint.getFractions();
+    final var colours = paint.getColors();
+
+    data.writeInt( fractions.length );
+
+    for( final var fraction : fractions ) {
+      data.writeFloat( fraction );
+    }
+
+    for( final var colour : colours ) {
+      data.writeInt( colour.getRGB() );
+    }
+
+    data.writeByte( paint.getCycleMethod().ordinal() );
+    data.writeByte( paint.getColorSpace().ordinal() );
+
+    final var matrix = new double[ 6 ];
+    paint.getTransform().getMatrix( matrix );
+
+    for( final var value : matrix ) {
+      data.writeFloat( (float) value );
+    }
+  }
+
+  private static float[] readFractions( final DataInputStream data )
+    throws IOException {
+    final var fractions = new float[ data.readInt() ];
+
+    for( int i = 0; i < fractions.length; i++ ) {
+      fractions[ i ] = data.readFloat();
+    }
+
+    return fractions;
+  }
+
+  private static Color[] readColours(
+    final DataInputStream data, final int count ) throws IOException {
+    final var colours = new Color[ count ];
+
+    for( int i = 0; i < count; i++ ) {
+      colours[ i ] = new Color( data.readInt(), true );
+    }
+
+    return colours;
+  }
+
+  private static AffineTransform readTransform( final DataInputStream data )
+    throws IOException {
+    final var matrix = new double[ 6 ];
+
+    for( int i = 0; i < matrix.length; i++ ) {
+      matrix[ i ] = data.readFloat();
+    }
+
+    return new AffineTransform( matrix );
+  }
+
+  private static void writePoint(
+    final DataOutputStream data, final Point2D point ) throws IOException {
+    data.writeFloat( (float) point.getX() );
+    data.writeFloat( (float) point.getY() );
+  }
+
+  private static Point2D readPoint( final DataInputStream data )
+    throws IOException {
+    return new Point2D.Float( data.readFloat(), data.readFloat() );
+  }
+
+  /**
+   * Writes a shape as its winding rule, segment count, then each segment's
+   * type followed by its coordinates.
+   */
+  private static void writeShape( final DataOutputStream data, final Shape s )
+    throws IOException {
+    final var coords = new float[ 6 ];
+    var count = 0;
+
+    for( var i = s.getPathIterator( null ); !i.isDone(); i.next() ) {
+      count++;
+    }
+
+    final var iterator = s.getPathIterator( null );
+
+    data.writeByte( iterator.getWindingRule() );
+    data.writeInt( count );
+
+    for( ; !iterator.isDone(); iterator.next() ) {
+      final var type = iterator.currentSegment( coords );
+
+      data.writeByte( type );
+
+      for( int i = 0; i < coordinates( type ); i++ ) {
+        data.writeFloat( coords[ i ] );
+      }
+    }
+  }
+
+  private static Shape readShape( final DataInputStream data )
+    throws IOException {
+    final var winding = data.readByte();
+    final var count = data.readInt();
+    final var path = new Path2D.Float( winding, count );
+    final var c = new float[ 6 ];
+
+    for( int i = 0; i < count; i++ ) {
+      final var type = data.readByte();
+
+      for( int j = 0; j < coordinates( type ); j++ ) {
+        c[ j ] = data.readFloat();
+      }
+
+      switch( type ) {
+        case SEG_MOVETO -> path.moveTo( c[ 0 ], c[ 1 ] );
+        case SEG_LINETO -> path.lineTo( c[ 0 ], c[ 1 ] );
+        case SEG_QUADTO -> path.quadTo( c[ 0 ], c[ 1 ], c[ 2 ], c[ 3 ] );
+        case SEG_CUBICTO -> path.curveTo(
+          c[ 0 ], c[ 1 ], c[ 2 ], c[ 3 ], c[ 4 ], c[ 5 ] );
+        case SEG_CLOSE -> path.closePath();
+        default -> throw new IOException( "Unknown segment: " + type );
+      }
+    }
+
+    return path;
+  }
+
+  /**
+   * Answers the number of coordinates that follow a path segment type.
+   */
+  private static int coordinates( final int type ) {
+    return switch( type ) {
+      case SEG_MOVETO, SEG_LINETO -> 2;
+      case SEG_QUADTO -> 4;
+      case SEG_CUBICTO -> 6;
+      default -> 0;
+    };
+  }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2023 White Magic Software, Ltd.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.whitemagicsoftware.kmcaster.svg;
+
+import com.kitfox.svg.SVGDiagram;
+import com.kitfox.svg.SVGUniverse;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static java.lang.System.err;
+import static java.lang.System.out;
+
+/**
+ * Responsible for converting vector graphics into draw lists when building
+ * the application, so that they can be painted without parsing at runtime.
+ * Vector graphics that use features a draw list cannot represent are skipped
+ * and remain painted by the SVG renderer.
+ */
+public final class DrawListCompiler {
+  private DrawListCompiler() {
+  }
+
+  /**
+   * Converts all vector graphics beneath a directory.
+   *
+   * @param args The source directory and the output directory; the output
+   *             mirrors the source directory structure.
+   * @throws IOException Could not read a vector graphic or write a draw list.
+   */
+  public static void main( final String[] args ) throws IOException {
+    if( args.length != 2 ) {
+      err.println( "Usage: DrawListCompiler <source-dir> <output-dir>" );
+      System.exit( 1 );
+    }
+
+    final var source = Path.of( args[ 0 ] );
+    final var target = Path.of( args[ 1 ] );
+    final var universe = new SVGUniverse();
+    final List<Path> paths;
+
+    try( final var walk = Files.walk( source ) ) {
+      paths = walk
+        .filter( path -> path.toString().endsWith( ".svg" ) )
+        .sorted()
+        .collect( Collectors.toList() );
+    }
+
+    for( final var path : paths ) {
+      final var uri = universe.loadSVG( path.toUri().toURL() );
+      final var diagram = universe.getDiagram( uri );
+      final var relative = source.relativize( path ).toString();
+      final var name = relative.substring( 0, relative.length() - 4 );
+      final var output = target.resolve( name + DrawList.EXTENSION );
+
+      try {
+        final var drawList = compile( diagram );
+
+        Files.createDirectories( output.getParent() );
+
+        try( final var stream = new BufferedOutputStream(
+          Files.newOutputStream( output ) ) ) {
+          drawList.write( stream );
+        }
+
+        out.printf(
+          "Compiled %s (%d bytes)%n", relative, Files.size( output ) );
+      } catch( final UnsupportedOperationException ex ) {
+        err.printf( "Skipped %s: %s%n", relative, ex.getMessage() );
+      }
+
+      universe.removeDocument( uri );
+    }
+  }
+
+  /**
+   * Records the shapes painted by the given diagram.
+   *
+   * @param diagram The vector graphic to record.
+   * @return The shapes in painting order.
+   * @throws UnsupportedOperationException The diagram uses features that
+   *                                       cannot be recorded.
+   */
+  static DrawList compile( final SVGDiagram diagram ) {
+    final var recorder = new DrawListRecorder(
+      diagram.getWidth(), diagram.getHeight() );
+
+    diagram.setIgnoringClipHeuristic( true );
+
+    try {
+      diagram.render( recorder );
+    } catch( final Exception ex ) {
+      throw new UnsupportedOperationException( ex.getMessage(), ex );
+    } finally {
+      recorder.dispose();
+    }
+
+    return recorder.toDrawList();
+  }
+}
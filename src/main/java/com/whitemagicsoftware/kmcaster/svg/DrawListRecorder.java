@@ -0,0 +1,615 @@
+/*
+ * Copyright 2023 White Magic Software, Ltd.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.whitemagicsoftware.kmcaster.svg;
+
+import java.awt.*;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.geom.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.BufferedImageOp;
+import java.awt.image.ImageObserver;
+import java.awt.image.RenderedImage;
+import java.awt.image.renderable.RenderableImage;
+import java.text.AttributedCharacterIterator;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static java.awt.AlphaComposite.SRC_OVER;
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+
+/**
+ * Responsible for recording the shapes painted by a vector graphic renderer
+ * into a {@link DrawList}. Graphics state (transform, clip, paint, and so
+ * forth) is tracked by a real graphics context; every painting operation is
+ * converted into a filled shape in the root coordinate space. Strokes are
+ * converted into their outlines and text into glyph outlines.
+ * <p>
+ * Operations that cannot be represented as filled shapes, such as painting
+ * visible images, throw {@link UnsupportedOperationException}. Images that
+ * lie entirely outside of the canvas are ignored because they cannot affect
+ * the output; drawing programs often leave reference images off the canvas.
+ * </p>
+ */
+final class DrawListRecorder extends Graphics2D {
+  /**
+   * Maintains the graphics state.
+   */
+  private final Graphics2D mState;
+
+  /**
+   * Shared by all graphics contexts created from the same recorder.
+   */
+  private final List<DrawList.Fill> mFills;
+
+  /**
+   * Visible area, in the root coordinate space.
+   */
+  private final Rectangle2D mCanvas;
+
+  /**
+   * Creates a recorder for a vector graphic.
+   *
+   * @param width  The vector graphic's width.
+   * @param height The vector graphic's height.
+   */
+  DrawListRecorder( final float width, final float height ) {
+    this(
+      new BufferedImage( 1, 1, TYPE_INT_ARGB ).createGraphics(),
+      new ArrayList<>(),
+      new Rectangle2D.Float( 0, 0, width, height ) );
+  }
+
+  private DrawListRecorder(
+    final Graphics2D state,
+    final List<DrawList.Fill> fills,
+    final Rectangle2D canvas ) {
+    mState = state;
+    mFills = fills;
+    mCanvas = canvas;
+  }
+
+  /**
+   * Creates a draw list from the shapes recorded so far.
+   *
+   * @return The recorded shapes.
+   */
+  DrawList toDrawList() {
+    return new DrawList(
+      (float) mCanvas.getWidth(),
+      (float) mCanvas.getHeight(),
+      new ArrayList<>( mFills ) );
+  }
+
+  @Override
+  public void fill( final Shape s ) {
+    final var transform = mState.getTransform();
+    final var clip = mState.getClip();
+
+    mFills.add( new DrawList.Fill(
+      transform.createTransformedShape( s ),
+      toRootSpace( mState.getPaint(), transform ),
+      getAlpha(),
+      clip == null ? null : transform.createTransformedShape( clip )
+    ) );
+  }
+
+  @Override
+  public void draw( final Shape s ) {
+    fill( mState.getStroke().createStrokedShape( s ) );
+  }
+
+  @Override
+  public void drawGlyphVector( final GlyphVector g, final float x,
+                               final float y ) {
+    fill( g.getOutline( x, y ) );
+  }
+
+  @Override
+  public void drawString( final String str, final float x, final float y ) {
+    drawGlyphVector(
+      getFont().createGlyphVector( getFontRenderContext(), str ), x, y );
+  }
+
+  @Override
+  public void drawString( final String str, final int x, final int y ) {
+    drawString( str, (float) x, (float) y );
+  }
+
+  @Override
+  public void drawString(
+    final AttributedCharacterIterator iterator, final float x,
+    final float y ) {
+    throw unsupported( "attributed text" );
+  }
+
+  @Override
+  public void drawString(
+    final AttributedCharacterIterator iterator, final int x, final int y ) {
+    drawString( iterator, (float) x, (float) y );
+  }
+
+  @Override
+  public void drawLine( final int x1, final int y1, final int x2,
+                        final int y2 ) {
+    draw( new Line2D.Float( x1, y1, x2, y2 ) );
+  }
+
+  @Override
+  public void fillRect( final int x, final int y, final int w, final int h ) {
+    fill( new Rectangle( x, y, w, h ) );
+  }
+
+  @Override
+  public void clearRect( final int x, final int y, final int w,
+                         final int h ) {
+    throw unsupported( "clearing" );
+  }
+
+  @Override
+  public void drawRoundRect( final int x, final int y, final int w,
+                             final int h, final int arcW, final int arcH ) {
+    draw( new RoundRectangle2D.Float( x, y, w, h, arcW, arcH ) );
+  }
+
+  @Override
+  public void fillRoundRect( final int x, final int y, final int w,
+                             final int h, final int arcW, final int arcH ) {
+    fill( new RoundRectangle2D.Float( x, y, w, h, arcW, arcH ) );
+  }
+
+  @Override
+  public void drawOval( final int x, final int y, final int w, final int h ) {
+    draw( new Ellipse2D.Float( x, y, w, h ) );
+  }
+
+  @Override
+  public void fillOval( final int x, final int y, final int w, final int h ) {
+    fill( new Ellipse2D.Float( x, y, w, h ) );
+  }
+
+  @Override
+  public void drawArc( final int x, final int y, final int w, final int h,
+                       final int start, final int extent ) {
+    draw( new Arc2D.Float( x, y, w, h, start, extent, Arc2D.OPEN ) );
+  }
+
+  @Override
+  public void fillArc( final int x, final int y, final int w, final int h,
+                       final int start, final int extent ) {
+    fill( new Arc2D.Float( x, y, w, h, start, extent, Arc2D.PIE ) );
+  }
+
+  @Override
+  public void drawPolyline( final int[] x, final int[] y, final int n ) {
+    final var path = new Path2D.Float();
+
+    for( int i = 0; i < n; i++ ) {
+      if( i == 0 ) {
+        path.moveTo( x[ i ], y[ i ] );
+      }
+      else {
+        path.lineTo( x[ i ], y[ i ] );
+      }
+    }
+
+    draw( path );
+  }
+
+  @Override
+  public void drawPolygon( final int[] x, final int[] y, final int n ) {
+    draw( new Polygon( x, y, n ) );
+  }
+
+  @Override
+  public void fillPolygon( final int[] x, final int[] y, final int n ) {
+    fill( new Polygon( x, y, n ) );
+  }
+
+  @Override
+  public void drawRenderedImage( final RenderedImage img,
+                                 final AffineTransform xform ) {
+    drawImage( img.getWidth(), img.getHeight(), xform );
+  }
+
+  @Override
+  public void drawRenderableImage( final RenderableImage img,
+                                   final AffineTransform xform ) {
+    drawImage( img.getWidth(), img.getHeight(), xform );
+  }
+
+  @Override
+  public boolean drawImage( final Image img, final AffineTransform xform,
+                            final ImageObserver obs ) {
+    drawImage( img.getWidth( obs ), img.getHeight( obs ), xform );
+    return true;
+  }
+
+  @Override
+  public void drawImage( final BufferedImage img, final BufferedImageOp op,
+                         final int x, final int y ) {
+    drawImage( new Rectangle( x, y, img.getWidth(), img.getHeight() ) );
+  }
+
+  @Override
+  public boolean drawImage( final Image img, final int x, final int y,
+                            final ImageObserver observer ) {
+    drawImage( new Rectangle(
+      x, y, img.getWidth( observer ), img.getHeight( observer ) ) );
+    return true;
+  }
+
+  @Override
+  public boolean drawImage( final Image img, final int x, final int y,
+                            final int width, final int height,
+                            final ImageObserver observer ) {
+    drawImage( new Rectangle( x, y, width, height ) );
+    return true;
+  }
+
+  @Override
+  public boolean drawImage( final Image img, final int x, final int y,
+                            final Color bgcolor,
+                            final ImageObserver observer ) {
+    return drawImage( img, x, y, observer );
+  }
+
+  @Override
+  public boolean drawImage( final Image img, final int x, final int y,
+                            final int width, final int height,
+                            final Color bgcolor,
+                            final ImageObserver observer ) {
+    return drawImage( img, x, y, width, height, observer );
+  }
+
+  @Override
+  public boolean drawImage( final Image img, final int dx1, final int dy1,
+                            final int dx2, final int dy2, final int sx1,
+                            final int sy1, final int sx2, final int sy2,
+                            final ImageObserver observer ) {
+    final var area = new Rectangle( dx1, dy1, 0, 0 );
+    area.add( dx2, dy2 );
+    drawImage( area );
+    return true;
+  }
+
+  @Override
+  public boolean drawImage( final Image img, final int dx1, final int dy1,
+                            final int dx2, final int dy2, final int sx1,
+                            final int sy1, final int sx2, final int sy2,
+                            final Color bgcolor,
+                            final ImageObserver observer ) {
+    return drawImage(
+      img, dx1, dy1, dx2, dy2, sx1, sy1, sx2, sy2, observer );
+  }
+
+  @Override
+  public void copyArea( final int x, final int y, final int width,
+                        final int height, final int dx, final int dy ) {
+    throw unsupported( "copying areas" );
+  }
+
+  @Override
+  public void setXORMode( final Color c ) {
+    throw unsupported( "XOR mode" );
+  }
+
+  @Override
+  public Graphics create() {
+    return new DrawListRecorder(
+      (Graphics2D) mState.create(), mFills, mCanvas );
+  }
+
+  @Override
+  public void dispose() {
+    mState.dispose();
+  }
+
+  @Override
+  public boolean hit( final Rectangle rect, final Shape s,
+                      final boolean onStroke ) {
+    return mState.hit( rect, s, onStroke );
+  }
+
+  @Override
+  public GraphicsConfiguration getDeviceConfiguration() {
+    return mState.getDeviceConfiguration();
+  }
+
+  @Override
+  public void setComposite( final Composite comp ) {
+    mState.setComposite( comp );
+  }
+
+  @Override
+  public Composite getComposite() {
+    return mState.getComposite();
+  }
+
+  @Override
+  public void setPaint( final Paint paint ) {
+    mState.setPaint( paint );
+  }
+
+  @Override
+  public Paint getPaint() {
+    return mState.getPaint();
+  }
+
+  @Override
+  public void setStroke( final Stroke s ) {
+    mState.setStroke( s );
+  }
+
+  @Override
+  public Stroke getStroke() {
+    return mState.getStroke();
+  }
+
+  @Override
+  public void setRenderingHint( final RenderingHints.Key hintKey,
+                                final Object hintValue ) {
+    mState.setRenderingHint( hintKey, hintValue );
+  }
+
+  @Override
+  public Object getRenderingHint( final RenderingHints.Key hintKey ) {
+    return mState.getRenderingHint( hintKey );
+  }
+
+  @Override
+  public void setRenderingHints( final Map<?, ?> hints ) {
+    mState.setRenderingHints( hints );
+  }
+
+  @Override
+  public void addRenderingHints( final Map<?, ?> hints ) {
+    mState.addRenderingHints( hints );
+  }
+
+  @Override
+  public RenderingHints getRenderingHints() {
+    return mState.getRenderingHints();
+  }
+
+  @Override
+  public void translate( final int x, final int y ) {
+    mState.translate( x, y );
+  }
+
+  @Override
+  public void translate( final double tx, final double ty ) {
+    mState.translate( tx, ty );
+  }
+
+  @Override
+  public void rotate( final double theta ) {
+    mState.rotate( theta );
+  }
+
+  @Override
+  public void rotate( final double theta, final double x, final double y ) {
+    mState.rotate( theta, x, y );
+  }
+
+  @Override
+  public void scale( final double sx, final double sy ) {
+    mState.scale( sx, sy );
+  }
+
+  @Override
+  public void shear( final double shx, final double shy ) {
+    mState.shear( shx, shy );
+  }
+
+  @Override
+  public void transform( final AffineTransform tx ) {
+    mState.transform( tx );
+  }
+
+  @Override
+  public void setTransform( final AffineTransform tx ) {
+    mState.setTransform( tx );
+  }
+
+  @Override
+  public AffineTransform getTransform() {
+    return mState.getTransform();
+  }
+
+  @Override
+  public void setBackground( final Color color ) {
+    mState.setBackground( color );
+  }
+
+  @Override
+  public Color getBackground() {
+    return mState.getBackground();
+  }
+
+  @Override
+  public void clip( final Shape s ) {
+    mState.clip( s );
+  }
+
+  @Override
+  public FontRenderContext getFontRenderContext() {
+    return mState.getFontRenderContext();
+  }
+
+  @Override
+  public Color getColor() {
+    return mState.getColor();
+  }
+
+  @Override
+  public void setColor( final Color c ) {
+    mState.setColor( c );
+  }
+
+  @Override
+  public void setPaintMode() {
+    mState.setPaintMode();
+  }
+
+  @Override
+  public Font getFont() {
+    return mState.getFont();
+  }
+
+  @Override
+  public void setFont( final Font font ) {
+    mState.setFont( font );
+  }
+
+  @Override
+  public FontMetrics getFontMetrics( final Font f ) {
+    return mState.getFontMetrics( f );
+  }
+
+  @Override
+  public Rectangle getClipBounds() {
+    return mState.getClipBounds();
+  }
+
+  @Override
+  public void clipRect( final int x, final int y, final int width,
+                        final int height ) {
+    mState.clipRect( x, y, width, height );
+  }
+
+  @Override
+  public void setClip( final int x, final int y, final int width,
+                       final int height ) {
+    mState.setClip( x, y, width, height );
+  }
+
+  @Override
+  public Shape getClip() {
+    return mState.getClip();
+  }
+
+  @Override
+  public void setClip( final Shape clip ) {
+    mState.setClip( clip );
+  }
+
+  /**
+   * Ignores an image of the given size that is drawn with an additional
+   * transform, provided that it lies outside of the canvas.
+   */
+  private void drawImage(
+    final double width, final double height, final AffineTransform xform ) {
+    drawImage( xform.createTransformedShape(
+      new Rectangle2D.Double( 0, 0, width, height ) ) );
+  }
+
+  /**
+   * Ignores an image that lies outside of the canvas.
+   *
+   * @param area The area covered by the image, in user space.
+   * @throws UnsupportedOperationException The image may be visible.
+   */
+  private void drawImage( final Shape area ) {
+    final var bounds = getTransform().createTransformedShape( area );
+
+    if( bounds.intersects( mCanvas ) ) {
+      throw unsupported( "visible images" );
+    }
+  }
+
+  /**
+   * Answers the opacity of the current composite.
+   *
+   * @return The alpha value of a source-over composite.
+   * @throws UnsupportedOperationException Other composites cannot be
+   *                                       recorded.
+   */
+  private float getAlpha() {
+    final var composite = mState.getComposite();
+
+    if( composite instanceof AlphaComposite ) {
+      final var alpha = (AlphaComposite) composite;
+
+      if( alpha.getRule() == SRC_OVER ) {
+        return alpha.getAlpha();
+      }
+    }
+
+    throw unsupported( "composite " + composite );
+  }
+
+  /**
+   * Transforms a paint from user space into the root coordinate space.
+   *
+   * @param paint     The paint to transform.
+   * @param transform Maps user space to the root coordinate space.
+   * @return An equivalent paint for shapes in the root coordinate space.
+   */
+  private static Paint toRootSpace(
+    final Paint paint, final AffineTransform transform ) {
+    if( paint instanceof Color ) {
+      return paint;
+    }
+
+    if( paint instanceof LinearGradientPaint ) {
+      final var p = (LinearGradientPaint) paint;
+
+      return new LinearGradientPaint(
+        p.getStartPoint(), p.getEndPoint(), p.getFractions(), p.getColors(),
+        p.getCycleMethod(), p.getColorSpace(),
+        concatenate( transform, p.getTransform() ) );
+    }
+
+    if( paint instanceof RadialGradientPaint ) {
+      final var p = (RadialGradientPaint) paint;
+
+      return new RadialGradientPaint(
+        p.getCenterPoint(), p.getRadius(), p.getFocusPoint(),
+        p.getFractions(), p.getColors(),
+        p.getCycleMethod(), p.getColorSpace(),
+        concatenate( transform, p.getTransform() ) );
+    }
+
+    throw unsupported( "paint " + paint );
+  }
+
+  private static AffineTransform concatenate(
+    final AffineTransform outer, final AffineTransform inner ) {
+    final var result = new AffineTransform( outer );
+    result.concatenate( inner );
+    return result;
+  }
+
+  private static UnsupportedOperationException unsupported(
+    final String operation ) {
+    return new UnsupportedOperationException(
+      "Cannot record " + operation );
+  }
+}
@@ -120,6 +120,14 @@ public final class AutofitLabel extends JLabel {
     transform( bounds.width, bounds.height );
   }
 
+  /**
+   * Discards the parent's safe drawing area, which must be called after the
+   * parent has been resized so that the next transform uses the new area.
+   */
+  public void invalidateParentBounds() {
+    mParentBounds = null;
+  }
+
   private Font computeScaledFontNew() {
     final var font = getFont();
     final var text = getText();
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2023 White Magic Software, Ltd.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.whitemagicsoftware.kmcaster.ui;
+
+import java.awt.*;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+import static com.whitemagicsoftware.kmcaster.ui.FontLoader.FONT_DIRECTORY;
+import static com.whitemagicsoftware.kmcaster.ui.FontLoader.FONT_INDEX;
+import static com.whitemagicsoftware.kmcaster.ui.FontLoader.normalize;
+import static java.lang.System.err;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Locale.ROOT;
+
+/**
+ * Responsible for writing the index of packaged fonts when building the
+ * application. Each font file is listed under both its family name and its
+ * face name, so that {@link FontLoader} can find the files for a name without
+ * opening any fonts at runtime.
+ */
+public final class FontIndexer {
+  private FontIndexer() {
+  }
+
+  /**
+   * Indexes all TrueType fonts beneath the font resource directory.
+   *
+   * @param args The resources directory and the output directory; the index
+   *             is written to the same relative path in the output.
+   * @throws IOException         Could not read a font or write the index.
+   * @throws FontFormatException A font file is corrupt.
+   */
+  public static void main( final String[] args )
+    throws IOException, FontFormatException {
+    if( args.length != 2 ) {
+      err.println( "Usage: FontIndexer <resources-dir> <output-dir>" );
+      System.exit( 1 );
+    }
+
+    final var resources = Path.of( args[ 0 ] );
+    final var fonts = resources.resolve( FONT_DIRECTORY.substring( 1 ) );
+    final var index = Path.of( args[ 1 ], FONT_INDEX.substring( 1 ) );
+    final var entries = new TreeSet<String>();
+    final List<Path> paths;
+
+    try( final var walk = Files.walk( fonts ) ) {
+      paths = walk
+        .filter( path -> path.toString().endsWith( ".ttf" ) )
+        .sorted()
+        .collect( Collectors.toList() );
+    }
+
+    for( final var path : paths ) {
+      final var font = Font.createFont( Font.TRUETYPE_FONT, path.toFile() );
+      final var resource = '/' + resources.relativize( path )
+        .toString()
+        .replace( '\\', '/' );
+
+      entries.add( normalize( font.getFamily( ROOT ) ) + '=' + resource );
+      entries.add( normalize( font.getFontName( ROOT ) ) + '=' + resource );
+    }
+
+    Files.createDirectories( index.getParent() );
+    Files.write( index, entries, UTF_8 );
+  }
+}
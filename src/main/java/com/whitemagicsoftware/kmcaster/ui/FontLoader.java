@@ -1,5 +1,5 @@
 /*
- * Copyright 2020 White Magic Software, Ltd.
+ * Copyright 2023 White Magic Software, Ltd.
  *
  * All rights reserved.
  *
@@ -28,55 +28,117 @@
 package com.whitemagicsoftware.kmcaster.ui;
 
 import java.awt.*;
-import java.io.FileInputStream;
+import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.URI;
-import java.net.URISyntaxException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
 
-import static com.whitemagicsoftware.kmcaster.exceptions.Rethrowable.rethrow;
 import static java.awt.GraphicsEnvironment.getLocalGraphicsEnvironment;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Locale.ROOT;
 
 /**
  * Responsible for loading application-specific fonts into the local
- * {@link GraphicsEnvironment}.
+ * {@link GraphicsEnvironment}. Fonts are found using an index generated at
+ * build time by {@link FontIndexer}, so that only the font files for the
+ * requested name are read. Names that are not packaged with the application
+ * are left for the operating system to resolve.
  */
 public final class FontLoader {
-  private static final String FONT_DIRECTORY = "/fonts";
+  /**
+   * Resource directory containing the packaged fonts.
+   */
+  static final String FONT_DIRECTORY = "/fonts";
+
+  /**
+   * Resource listing the packaged fonts, one {@code name=path} per line.
+   */
+  static final String FONT_INDEX = FONT_DIRECTORY + "/index.txt";
 
   /**
-   * Recursively search all directories under {@link #FONT_DIRECTORY} for
-   * TrueType Files (ttf).
+   * File name extension used when no index is available, such as when
+   * running from an IDE without the build-generated resources.
    */
-  private static final String FONT_GLOB = "glob:**.ttf";
+  private static final String FONT_EXTENSION = ".ttf";
 
   /**
-   * Reads all fonts packaged with the application.
+   * Registers the packaged font files matching the given name. The name
+   * is compared with the font family and face names without regard to case.
+   *
+   * @param name The font name, such as the value of {@code --font-name}.
+   * @return {@code true} if at least one font file was registered.
+   * @throws IOException         Could not read the index or a font file.
+   * @throws FontFormatException A packaged font file is corrupt.
    */
-  public static void initFonts() throws IOException, URISyntaxException {
-    final var ge = getLocalGraphicsEnvironment();
-    final var rw = new ResourceWalker( FONT_GLOB );
+  public static boolean loadFont( final String name )
+    throws IOException, FontFormatException {
+    var registered = false;
 
-    rw.walk(
-        FONT_DIRECTORY, path -> {
-          final var uri = path.toUri();
-          final var filename = path.toString();
+    for( final var path : lookup( name ) ) {
+      try( final var is = FontLoader.class.getResourceAsStream( path ) ) {
+        if( is != null ) {
+          final var font = Font.createFont( Font.TRUETYPE_FONT, is );
 
-          try( final var is = openFont( uri, filename ) ) {
-            final var font = Font.createFont( Font.TRUETYPE_FONT, is );
+          registered |= getLocalGraphicsEnvironment().registerFont( font );
+        }
+      }
+    }
+
+    return registered;
+  }
 
-            ge.registerFont( font.deriveFont( font.getAttributes() ) );
-          } catch( final Exception e ) {
-            rethrow( e );
+  /**
+   * Returns the resource paths of the font files matching the given name.
+   *
+   * @param name The font name to find.
+   * @return The matching resource paths, possibly empty.
+   * @throws IOException Could not read the index.
+   */
+  private static List<String> lookup( final String name ) throws IOException {
+    final var key = normalize( name );
+    final var paths = new ArrayList<String>();
+
+    try( final var is = FontLoader.class.getResourceAsStream( FONT_INDEX ) ) {
+      if( is == null ) {
+        paths.add( FONT_DIRECTORY + '/' + name + FONT_EXTENSION );
+      }
+      else {
+        for( final var line : readLines( is ) ) {
+          final var i = line.indexOf( '=' );
+
+          if( i > 0 && key.equals( line.substring( 0, i ) ) ) {
+            paths.add( line.substring( i + 1 ) );
           }
         }
-    );
+      }
+    }
+
+    return paths;
   }
 
-  private static InputStream openFont( final URI uri, final String filename )
-      throws IOException {
-    return uri.getScheme().equals( "jar" )
-        ? FontLoader.class.getResourceAsStream( filename )
-        : new FileInputStream( filename );
+  /**
+   * Converts a font name into the form used as an index key.
+   *
+   * @param name The font family or face name.
+   * @return The name in lowercase without surrounding whitespace.
+   */
+  static String normalize( final String name ) {
+    return name.strip().toLowerCase( ROOT );
+  }
+
+  private static List<String> readLines( final InputStream is )
+    throws IOException {
+    final var lines = new ArrayList<String>();
+    final var reader = new BufferedReader( new InputStreamReader( is, UTF_8 ) );
+
+    for( String line; (line = reader.readLine()) != null; ) {
+      if( !line.isBlank() && !line.startsWith( "#" ) ) {
+        lines.add( line );
+      }
+    }
+
+    return lines;
   }
 }
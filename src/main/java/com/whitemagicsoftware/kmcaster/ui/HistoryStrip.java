@@ -0,0 +1,300 @@
+/*
+ * Copyright 2023 White Magic Software, Ltd.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.whitemagicsoftware.kmcaster.ui;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.awt.RenderingHints.KEY_TEXT_ANTIALIASING;
+import static java.awt.RenderingHints.VALUE_TEXT_ANTIALIAS_ON;
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+
+/**
+ * Responsible for showing the most recent keystrokes as a strip of cells,
+ * newest on the right. Labels are interned into integer identifiers, which
+ * are kept in a fixed-capacity ring buffer. The strip is painted into a
+ * backing image that is scrolled using {@link Graphics#copyArea} when a
+ * keystroke is added, so only the new cell is drawn; the ring buffer is only
+ * replayed when the strip is resized.
+ * <p>
+ * All methods must be called from the event dispatch thread.
+ * </p>
+ */
+public final class HistoryStrip extends JComponent {
+  /**
+   * Fraction of the strip height used for text.
+   */
+  private static final float TEXT_HEIGHT = .7f;
+
+  /**
+   * Fraction of the strip height added between adjacent cells.
+   */
+  private static final float CELL_PADDING = .4f;
+
+  /**
+   * Identifiers of the most recent labels, oldest overwritten first.
+   */
+  private final int[] mRing;
+
+  /**
+   * Index into {@link #mRing} where the next identifier is written.
+   */
+  private int mHead;
+
+  /**
+   * Number of identifiers in {@link #mRing}, up to its capacity.
+   */
+  private int mCount;
+
+  /**
+   * Maps labels to identifiers; the inverse of {@link #mLabels}.
+   */
+  private final Map<String, Integer> mIds = new HashMap<>();
+
+  /**
+   * Maps identifiers to labels.
+   */
+  private final List<String> mLabels = new ArrayList<>();
+
+  /**
+   * Painted cell width per identifier for the current font, or zero if the
+   * width has not been measured.
+   */
+  private int[] mWidths = new int[ 0 ];
+
+  /**
+   * Font for the labels before it is scaled to the strip height.
+   */
+  private final Font mBaseFont;
+
+  /**
+   * Font for the labels, scaled to the strip height.
+   */
+  private Font mFont;
+
+  /**
+   * Label text colour.
+   */
+  private final Color mColour;
+
+  /**
+   * Pixels painted to the screen, scrolled as keystrokes are added.
+   */
+  private BufferedImage mBuffer;
+
+  /**
+   * Creates a strip that shows up to the given number of keystrokes.
+   *
+   * @param capacity Maximum number of keystrokes to remember.
+   * @param font     The font for the labels, which is scaled to fit.
+   * @param colour   The label text colour.
+   */
+  public HistoryStrip(
+    final int capacity, final Font font, final Color colour ) {
+    assert capacity > 0;
+    assert font != null;
+    assert colour != null;
+
+    mRing = new int[ capacity ];
+    mBaseFont = font;
+    mFont = font;
+    mColour = colour;
+
+    setOpaque( false );
+  }
+
+  /**
+   * Returns the identifier for the given label, assigning a new identifier
+   * if the label has not been seen before.
+   *
+   * @param label The text to show for a keystroke.
+   * @return The identifier to pass into {@link #push(int)}.
+   */
+  public int intern( final String label ) {
+    final var id = mIds.get( label );
+
+    if( id != null ) {
+      return id;
+    }
+
+    final var next = mLabels.size();
+    mLabels.add( label );
+    mIds.put( label, next );
+
+    if( next >= mWidths.length ) {
+      mWidths = Arrays.copyOf( mWidths, Math.max( 16, next * 2 ) );
+    }
+
+    return next;
+  }
+
+  /**
+   * Adds a keystroke to the right of the strip, scrolling the older
+   * keystrokes to the left.
+   *
+   * @param id The label identifier returned from {@link #intern(String)}.
+   */
+  public void push( final int id ) {
+    mRing[ mHead ] = id;
+    mHead = (mHead + 1) % mRing.length;
+    mCount = Math.min( mCount + 1, mRing.length );
+
+    final var buffer = mBuffer;
+
+    if( buffer != null ) {
+      final var w = buffer.getWidth();
+      final var h = buffer.getHeight();
+      final var cell = Math.min( getCellWidth( id ), w );
+      final var g = createGraphics( buffer );
+
+      // Replace, rather than blend, the pixels beneath the scrolled area.
+      g.setComposite( AlphaComposite.Src );
+      g.copyArea( cell, 0, w - cell, h, -cell, 0 );
+      g.setComposite( AlphaComposite.Clear );
+      g.fillRect( w - cell, 0, cell, h );
+      g.setComposite( AlphaComposite.SrcOver );
+      drawCell( g, id, w - cell, h );
+      g.dispose();
+
+      repaint();
+    }
+  }
+
+  /**
+   * Changes the size of the strip, replaying the remembered keystrokes into
+   * a new backing image. The caller must revalidate the container.
+   *
+   * @param size The new strip size, in pixels.
+   */
+  public void setStripSize( final Dimension size ) {
+    setPreferredSize( size );
+
+    if( size.width <= 0 || size.height <= 0 ) {
+      mBuffer = null;
+      return;
+    }
+
+    final var buffer =
+      new BufferedImage( size.width, size.height, TYPE_INT_ARGB );
+    final var g = createGraphics( buffer );
+
+    mFont = scaleFont( g, size.height );
+    Arrays.fill( mWidths, 0 );
+    g.setFont( mFont );
+
+    var x = size.width;
+
+    // Replay the ring buffer from newest to oldest, right to left.
+    for( int i = 1; i <= mCount && x > 0; i++ ) {
+      final var id = mRing[ Math.floorMod( mHead - i, mRing.length ) ];
+
+      x -= getCellWidth( id );
+      drawCell( g, id, x, size.height );
+    }
+
+    g.dispose();
+    mBuffer = buffer;
+
+    repaint();
+  }
+
+  @Override
+  protected void paintComponent( final Graphics g ) {
+    final var buffer = mBuffer;
+
+    if( buffer != null ) {
+      g.drawImage( buffer, 0, 0, null );
+    }
+  }
+
+  /**
+   * Draws the label for the given identifier, centred in its cell.
+   *
+   * @param g  The graphics context for the backing image.
+   * @param id The label identifier.
+   * @param x  The left edge of the cell.
+   * @param h  The height of the cell.
+   */
+  private void drawCell(
+    final Graphics2D g, final int id, final int x, final int h ) {
+    final var metrics = g.getFontMetrics( mFont );
+    final var label = mLabels.get( id );
+    final var tx = x + (getCellWidth( id ) - metrics.stringWidth( label )) / 2;
+    final var ty = (h - metrics.getHeight()) / 2 + metrics.getAscent();
+
+    g.setFont( mFont );
+    g.setColor( mColour );
+    g.drawString( label, tx, ty );
+  }
+
+  /**
+   * Returns the width of the cell for the given label, including padding.
+   *
+   * @param id The label identifier.
+   * @return The cell width, in pixels.
+   */
+  private int getCellWidth( final int id ) {
+    var width = mWidths[ id ];
+
+    if( width == 0 ) {
+      final var metrics = getFontMetrics( mFont );
+      final var padding = Math.round( metrics.getHeight() * CELL_PADDING );
+
+      width = metrics.stringWidth( mLabels.get( id ) ) + padding;
+      mWidths[ id ] = width;
+    }
+
+    return width;
+  }
+
+  /**
+   * Derives a font whose line height fits the given strip height.
+   *
+   * @param g      The graphics context used to measure the font.
+   * @param height The strip height, in pixels.
+   * @return The font to use for the labels.
+   */
+  private Font scaleFont( final Graphics2D g, final int height ) {
+    final var lineHeight = g.getFontMetrics( mBaseFont ).getHeight();
+    final var scale = height * TEXT_HEIGHT / lineHeight;
+
+    return mBaseFont.deriveFont( mBaseFont.getSize2D() * scale );
+  }
+
+  private static Graphics2D createGraphics( final BufferedImage image ) {
+    final var g = image.createGraphics();
+    g.setRenderingHint( KEY_TEXT_ANTIALIASING, VALUE_TEXT_ANTIALIAS_ON );
+    return g;
+  }
+}
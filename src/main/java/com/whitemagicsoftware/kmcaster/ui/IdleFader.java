@@ -0,0 +1,235 @@
+/*
+ * Copyright 2023 White Magic Software, Ltd.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.whitemagicsoftware.kmcaster.ui;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.awt.GraphicsDevice.WindowTranslucency.TRANSLUCENT;
+import static java.lang.System.nanoTime;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Responsible for fading out and hiding a window after a period without
+ * user input. While hidden, the window is neither painted nor animated and
+ * no timers are scheduled, so the application is effectively suspended
+ * until {@link #wake()} is called. All methods must be called from the
+ * event dispatch thread.
+ */
+public final class IdleFader {
+  /**
+   * Number of opacity changes used to fade the window out.
+   */
+  private static final int FADE_STEPS = 12;
+
+  /**
+   * Milliseconds between each opacity change while fading.
+   */
+  private static final int FADE_TICK = 40;
+
+  /**
+   * Precomputed opacity levels, eased so that the fade accelerates.
+   */
+  private static final float[] FADE_OPACITY = createFadeOpacity();
+
+  private final Window mWindow;
+
+  /**
+   * Milliseconds without input before fading, zero means never fade.
+   */
+  private final int mIdleDelay;
+
+  /**
+   * Fires once after the idle delay; it is not restarted on each event.
+   */
+  private final Timer mIdleTimer;
+
+  /**
+   * Animation tick that drives all fade steps.
+   */
+  private final Timer mFadeTick;
+
+  /**
+   * Timers that are stopped while the window is hidden.
+   */
+  private final List<Timer> mSuspendable = new ArrayList<>();
+
+  /**
+   * Time of the most recent user input, in nanoseconds.
+   */
+  private long mLastInput;
+
+  /**
+   * Index into {@link #FADE_OPACITY} for the next fade step.
+   */
+  private int mFadeStep;
+
+  /**
+   * Set when the window has been hidden due to inactivity.
+   */
+  private boolean mSuspended;
+
+  /**
+   * Creates a fader for the given window.
+   *
+   * @param window    The window to fade out after a period of inactivity,
+   *                  which may be {@code null} if fading is disabled.
+   * @param idleDelay Milliseconds without input before the window fades,
+   *                  zero (or less) disables fading.
+   */
+  public IdleFader( final Window window, final int idleDelay ) {
+    assert window != null || idleDelay <= 0;
+
+    mWindow = window;
+    mIdleDelay = Math.max( idleDelay, 0 );
+    mIdleTimer = new Timer( Math.max( mIdleDelay, 1 ), e -> idle() );
+    mIdleTimer.setRepeats( false );
+    mFadeTick = new Timer( FADE_TICK, e -> fade() );
+  }
+
+  /**
+   * Starts monitoring for inactivity, if enabled.
+   */
+  public void start() {
+    if( isEnabled() ) {
+      mLastInput = nanoTime();
+      mIdleTimer.restart();
+    }
+  }
+
+  /**
+   * Starts the given timer, which is stopped while the window is hidden and
+   * restarted when it is shown again, so that no timers run while idle.
+   *
+   * @param timer A repeating timer, such as one that refreshes a label.
+   */
+  public void startSuspendable( final Timer timer ) {
+    assert timer != null;
+
+    mSuspendable.add( timer );
+
+    if( !mSuspended ) {
+      timer.start();
+    }
+  }
+
+  /**
+   * Records that user input has happened. If the window is fading or has
+   * been hidden, it is restored to full opacity immediately.
+   */
+  public void wake() {
+    if( isEnabled() ) {
+      mLastInput = nanoTime();
+
+      if( mSuspended || mFadeTick.isRunning() ) {
+        mFadeTick.stop();
+        setOpacity( 1 );
+
+        if( mSuspended ) {
+          mSuspended = false;
+
+          // Avoid stealing focus from the application being used.
+          mWindow.setAutoRequestFocus( false );
+          mWindow.setVisible( true );
+          mSuspendable.forEach( Timer::start );
+        }
+
+        mIdleTimer.setInitialDelay( mIdleDelay );
+        mIdleTimer.restart();
+      }
+    }
+  }
+
+  /**
+   * Called when the idle timer fires. Input that arrived since the timer was
+   * started pushes the deadline back; otherwise, the fade begins.
+   */
+  private void idle() {
+    final var elapsed = NANOSECONDS.toMillis( nanoTime() - mLastInput );
+    final var remaining = mIdleDelay - elapsed;
+
+    if( remaining > 0 ) {
+      mIdleTimer.setInitialDelay( (int) remaining );
+      mIdleTimer.restart();
+    }
+    else {
+      mFadeStep = 0;
+      mFadeTick.start();
+    }
+  }
+
+  /**
+   * Applies the next fade step, hiding the window after the last step.
+   */
+  private void fade() {
+    if( mFadeStep < FADE_OPACITY.length && isTranslucencySupported() ) {
+      setOpacity( FADE_OPACITY[ mFadeStep++ ] );
+    }
+    else {
+      mFadeTick.stop();
+      mSuspendable.forEach( Timer::stop );
+      mSuspended = true;
+      mWindow.setVisible( false );
+    }
+  }
+
+  private void setOpacity( final float opacity ) {
+    if( isTranslucencySupported() ) {
+      mWindow.setOpacity( opacity );
+    }
+  }
+
+  private boolean isTranslucencySupported() {
+    return mWindow
+      .getGraphicsConfiguration()
+      .getDevice()
+      .isWindowTranslucencySupported( TRANSLUCENT );
+  }
+
+  private boolean isEnabled() {
+    return mIdleDelay > 0;
+  }
+
+  /**
+   * Computes opacity levels that ease from fully opaque to transparent.
+   *
+   * @return The opacity to apply at each fade step, ending with zero.
+   */
+  private static float[] createFadeOpacity() {
+    final var opacity = new float[ FADE_STEPS ];
+
+    for( int i = 0; i < FADE_STEPS; i++ ) {
+      final var t = (i + 1f) / FADE_STEPS;
+      opacity[ i ] = 1 - t * t;
+    }
+
+    return opacity;
+  }
+}
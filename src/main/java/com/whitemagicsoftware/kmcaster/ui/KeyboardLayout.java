@@ -0,0 +1,375 @@
+/*
+ * Copyright 2023 White Magic Software, Ltd.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.whitemagicsoftware.kmcaster.ui;
+
+import com.github.kwhat.jnativehook.keyboard.NativeKeyEvent;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static com.github.kwhat.jnativehook.keyboard.NativeKeyEvent.*;
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Locale.ROOT;
+import static java.util.Map.entry;
+
+/**
+ * Responsible for the positions of the keys on a keyboard, measured in key
+ * units, where a letter key is one unit square. Layouts are text files
+ * having one row of keys per line, from left to right:
+ * <pre>
+ * # Comments start with a hash.
+ * ESCAPE=Esc _ F1 F2 F3 F4
+ * _:1x0.25
+ * TAB:1.5=Tab Q W E R T Y
+ * SHIFT@left:2.25=Shift Z X C
+ * </pre>
+ * <p>
+ * Each key is written as {@code NAME[@location][:WIDTH[xHEIGHT]][=label]}.
+ * The name is a virtual key code from {@link NativeKeyEvent} without its
+ * "VC_" prefix, or a hexadecimal code such as "0x4E". The location, one of
+ * left, right, numpad, or standard, distinguishes keys that share a code.
+ * An underscore leaves a gap. Each line is one unit tall, except that a
+ * line of gaps is as tall as its tallest gap; keys taller than one unit
+ * extend into the following rows, which must leave a gap beneath them.
+ * </p>
+ */
+public final class KeyboardLayout {
+  /**
+   * Layout used when no layout file is given.
+   */
+  private static final String DEFAULT_LAYOUT = "/layouts/ansi104.txt";
+
+  /**
+   * Name that leaves a gap instead of placing a key.
+   */
+  private static final String GAP = "_";
+
+  /**
+   * Bits reserved for the location in each sorted key.
+   */
+  private static final int LOCATION_BITS = 8;
+
+  /**
+   * Maps location names to {@link NativeKeyEvent} key locations.
+   */
+  private static final Map<String, Integer> LOCATIONS = Map.ofEntries(
+    entry( "standard", KEY_LOCATION_STANDARD ),
+    entry( "left", KEY_LOCATION_LEFT ),
+    entry( "right", KEY_LOCATION_RIGHT ),
+    entry( "numpad", KEY_LOCATION_NUMPAD )
+  );
+
+  /**
+   * Key positions and sizes, four values per key: x, y, width, height.
+   */
+  private final float[] mBounds;
+
+  /**
+   * Key labels, in layout order.
+   */
+  private final String[] mLabels;
+
+  /**
+   * Key codes shifted left by {@link #LOCATION_BITS} plus the location, in
+   * ascending order, for binary search.
+   */
+  private final long[] mSortedKeys;
+
+  /**
+   * Layout indexes, parallel to {@link #mSortedKeys}.
+   */
+  private final int[] mSortedIndexes;
+
+  /**
+   * Width of the widest row, in key units.
+   */
+  private final float mWidth;
+
+  /**
+   * Combined height of all rows, in key units.
+   */
+  private final float mHeight;
+
+  private KeyboardLayout( final Builder builder ) {
+    final var count = builder.mLabels.size();
+
+    mBounds = new float[ count * 4 ];
+    mLabels = builder.mLabels.toArray( new String[ 0 ] );
+    mSortedKeys = new long[ count ];
+    mSortedIndexes = new int[ count ];
+    mWidth = builder.mWidth;
+    mHeight = builder.mY;
+
+    for( int i = 0; i < count; i++ ) {
+      System.arraycopy( builder.mBounds.get( i ), 0, mBounds, i * 4, 4 );
+    }
+
+    // Sorts the keys by insertion, which suffices for about a hundred keys.
+    for( int i = 0; i < count; i++ ) {
+      final var key = builder.mKeys.get( i );
+      var j = i;
+
+      for( ; j > 0 && mSortedKeys[ j - 1 ] > key; j-- ) {
+        mSortedKeys[ j ] = mSortedKeys[ j - 1 ];
+        mSortedIndexes[ j ] = mSortedIndexes[ j - 1 ];
+      }
+
+      mSortedKeys[ j ] = key;
+      mSortedIndexes[ j ] = i;
+    }
+  }
+
+  /**
+   * Reads the layout from the given file, or the default layout.
+   *
+   * @param path The layout file, or {@code null} for the default layout.
+   * @return The keys described by the layout.
+   * @throws IOException              Could not read the layout.
+   * @throws IllegalArgumentException A line is not a valid row of keys.
+   */
+  public static KeyboardLayout load( final Path path ) throws IOException {
+    if( path == null ) {
+      final var in = KeyboardLayout.class.getResourceAsStream( DEFAULT_LAYOUT );
+
+      if( in == null ) {
+        throw new IOException( "Missing resource: " + DEFAULT_LAYOUT );
+      }
+
+      try( final var reader = new BufferedReader(
+        new InputStreamReader( in, UTF_8 ) ) ) {
+        return read( reader, DEFAULT_LAYOUT );
+      }
+    }
+
+    try( final var reader = Files.newBufferedReader( path, UTF_8 ) ) {
+      return read( reader, path.toString() );
+    }
+  }
+
+  /**
+   * Returns the layout index for the given key. A key whose location does
+   * not match any key having its code is matched to the first such key, so
+   * that a layout still works with hooks that do not report locations.
+   *
+   * @param code     The virtual key code.
+   * @param location The key location.
+   * @return The layout index, or -1 if the layout does not have the key.
+   */
+  public int find( final int code, final int location ) {
+    final var first = search( (long) code << LOCATION_BITS );
+
+    if( first >= mSortedKeys.length ||
+      mSortedKeys[ first ] >>> LOCATION_BITS != code ) {
+      return -1;
+    }
+
+    final var exact = search( ((long) code << LOCATION_BITS) + location );
+
+    return mSortedIndexes[
+      exact < mSortedKeys.length &&
+        mSortedKeys[ exact ] == ((long) code << LOCATION_BITS) + location
+        ? exact
+        : first ];
+  }
+
+  /**
+   * Returns the number of keys in the layout.
+   *
+   * @return The number of keys, excluding gaps.
+   */
+  public int size() {
+    return mLabels.length;
+  }
+
+  /**
+   * Returns a key's position or size, in key units.
+   *
+   * @param index The layout index.
+   * @param i     0 for x, 1 for y, 2 for width, or 3 for height.
+   * @return The requested dimension.
+   */
+  public float getBound( final int index, final int i ) {
+    return mBounds[ index * 4 + i ];
+  }
+
+  public String getLabel( final int index ) {
+    return mLabels[ index ];
+  }
+
+  public float getWidth() {
+    return mWidth;
+  }
+
+  public float getHeight() {
+    return mHeight;
+  }
+
+  /**
+   * Finds the first sorted key that is not less than the given key.
+   */
+  private int search( final long key ) {
+    var lo = 0;
+    var hi = mSortedKeys.length;
+
+    while( lo < hi ) {
+      final var mid = (lo + hi) >>> 1;
+
+      if( mSortedKeys[ mid ] < key ) {
+        lo = mid + 1;
+      }
+      else {
+        hi = mid;
+      }
+    }
+
+    return lo;
+  }
+
+  private static KeyboardLayout read(
+    final BufferedReader reader, final String source ) throws IOException {
+    final var builder = new Builder();
+    var number = 0;
+
+    for( String line; (line = reader.readLine()) != null; ) {
+      number++;
+      line = line.strip();
+
+      if( line.isEmpty() || line.startsWith( "#" ) ) {
+        continue;
+      }
+
+      try {
+        builder.row( line.split( "\\s+" ) );
+      } catch( final IllegalArgumentException e ) {
+        throw new IllegalArgumentException(
+          format( "%s:%d: %s", source, number, e.getMessage() ), e );
+      }
+    }
+
+    return new KeyboardLayout( builder );
+  }
+
+  /**
+   * Responsible for placing keys while the layout is read.
+   */
+  private static final class Builder {
+    private final List<float[]> mBounds = new ArrayList<>();
+    private final List<String> mLabels = new ArrayList<>();
+    private final List<Long> mKeys = new ArrayList<>();
+    private float mWidth;
+    private float mY;
+
+    /**
+     * Places a row of keys beneath the previous row.
+     *
+     * @param tokens The keys and gaps, from left to right.
+     */
+    private void row( final String[] tokens ) {
+      var x = 0f;
+      var gaps = true;
+      var tallest = 0f;
+
+      for( final var token : tokens ) {
+        final var equals = token.indexOf( '=', 1 );
+        final var spec = equals < 0 ? token : token.substring( 0, equals );
+        final var colon = spec.indexOf( ':' );
+        final var key = colon < 0 ? spec : spec.substring( 0, colon );
+        final var size = colon < 0 ? "1" : spec.substring( colon + 1 );
+        final var cross = size.indexOf( 'x' );
+        final var width = cross < 0 ? size : size.substring( 0, cross );
+        final var w = parseSize( width );
+        final var h = cross < 0 ? 1 : parseSize( size.substring( cross + 1 ) );
+
+        tallest = Math.max( tallest, h );
+
+        if( !GAP.equals( key ) ) {
+          final var at = key.indexOf( '@' );
+          final var name = at < 0 ? key : key.substring( 0, at );
+          final var location = at < 0 ? 0 : location( key.substring( at + 1 ) );
+          final var code = code( name );
+
+          mBounds.add( new float[]{x, mY, w, h} );
+          mLabels.add( equals < 0
+                         ? NativeKeyEvent.getKeyText( code )
+                         : token.substring( equals + 1 ) );
+          mKeys.add( ((long) code << LOCATION_BITS) + location );
+          gaps = false;
+        }
+
+        x += w;
+      }
+
+      mWidth = Math.max( mWidth, x );
+      mY += gaps ? tallest : 1;
+    }
+
+    private static float parseSize( final String size ) {
+      try {
+        final var value = Float.parseFloat( size );
+
+        if( value >= 0 ) {
+          return value;
+        }
+      } catch( final NumberFormatException ignored ) {
+      }
+
+      throw new IllegalArgumentException( "Invalid size: " + size );
+    }
+
+    private static int location( final String name ) {
+      final var location = LOCATIONS.get( name.toLowerCase( ROOT ) );
+
+      if( location == null ) {
+        throw new IllegalArgumentException( "Unknown location: " + name );
+      }
+
+      return location;
+    }
+
+    private static int code( final String name ) {
+      try {
+        if( name.startsWith( "0x" ) ) {
+          return Integer.parseInt( name.substring( 2 ), 16 );
+        }
+
+        return NativeKeyEvent.class
+          .getField( "VC_" + name.toUpperCase( ROOT ) )
+          .getInt( null );
+      } catch( final NumberFormatException | ReflectiveOperationException e ) {
+        throw new IllegalArgumentException( "Unknown key: " + name, e );
+      }
+    }
+  }
+}
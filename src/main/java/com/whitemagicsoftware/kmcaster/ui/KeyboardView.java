@@ -0,0 +1,298 @@
+/*
+ * Copyright 2023 White Magic Software, Ltd.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.whitemagicsoftware.kmcaster.ui;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+import static java.awt.RenderingHints.*;
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+
+/**
+ * Responsible for showing a whole keyboard, lighting up the keys that are
+ * held. The layout is rasterized once per size into two images: every key
+ * released and every key pressed. Painting copies the clipped area of the
+ * released image, then the rectangles of the held keys from the pressed
+ * image, so its cost depends on the area repainted and the number of keys
+ * held, not on the number of keys in the layout. Pressing or releasing a
+ * key repaints only that key's rectangle.
+ * <p>
+ * Keys may be pressed and released from any thread; the size must be changed
+ * from the event dispatch thread.
+ * </p>
+ */
+public final class KeyboardView extends JComponent {
+  /**
+   * Fraction of a key unit used for the label text height.
+   */
+  private static final float TEXT_HEIGHT = .3f;
+
+  /**
+   * Fraction of a key unit left between adjacent keys.
+   */
+  private static final float KEY_GAP = .08f;
+
+  /**
+   * Fraction of a key unit used to round the key cap corners.
+   */
+  private static final float CORNER_ARC = .2f;
+
+  private final KeyboardLayout mLayout;
+
+  /**
+   * Key rectangles in pixels, four values per key: x, y, width, height.
+   */
+  private final int[] mRects;
+
+  /**
+   * Whether each key, by layout index, is held.
+   */
+  private final boolean[] mPressed;
+
+  /**
+   * Layout indexes of the held keys, in the order they were pressed.
+   */
+  private final int[] mHeld;
+
+  /**
+   * Number of entries in {@link #mHeld}.
+   */
+  private int mCount;
+
+  /**
+   * Reused by {@link #paintComponent(Graphics)} to avoid allocating.
+   */
+  private final Rectangle mClip = new Rectangle();
+
+  private final Font mFont;
+  private final Color mCapColour;
+  private final Color mTextColour;
+
+  /**
+   * Every key drawn released, or {@code null} until the view is sized.
+   */
+  private BufferedImage mReleased;
+
+  /**
+   * Every key drawn pressed, or {@code null} until the view is sized.
+   */
+  private BufferedImage mPressedImage;
+
+  /**
+   * Creates a view of the given layout.
+   *
+   * @param layout     The keys to show.
+   * @param font       The font for the labels, which is scaled to fit.
+   * @param capColour  The key cap colour when released, and the label colour
+   *                   when pressed.
+   * @param textColour The label colour when released, and the key cap colour
+   *                   when pressed.
+   */
+  public KeyboardView(
+    final KeyboardLayout layout,
+    final Font font,
+    final Color capColour,
+    final Color textColour ) {
+    assert layout != null;
+    assert font != null;
+
+    final var size = layout.size();
+
+    mLayout = layout;
+    mRects = new int[ size * 4 ];
+    mPressed = new boolean[ size ];
+    mHeld = new int[ size ];
+    mFont = font;
+    mCapColour = capColour;
+    mTextColour = textColour;
+
+    setOpaque( false );
+  }
+
+  /**
+   * Lights up the given key, if it is in the layout.
+   *
+   * @param code     The virtual key code.
+   * @param location The key location.
+   */
+  public synchronized void press( final int code, final int location ) {
+    final var index = mLayout.find( code, location );
+
+    if( index >= 0 && !mPressed[ index ] ) {
+      mPressed[ index ] = true;
+      mHeld[ mCount++ ] = index;
+      repaintKey( index );
+    }
+  }
+
+  /**
+   * Turns off the given key, if it is in the layout.
+   *
+   * @param code     The virtual key code.
+   * @param location The key location.
+   */
+  public synchronized void release( final int code, final int location ) {
+    final var index = mLayout.find( code, location );
+
+    if( index >= 0 && mPressed[ index ] ) {
+      mPressed[ index ] = false;
+
+      for( int i = 0; i < mCount; i++ ) {
+        if( mHeld[ i ] == index ) {
+          System.arraycopy( mHeld, i + 1, mHeld, i, --mCount - i );
+          break;
+        }
+      }
+
+      repaintKey( index );
+    }
+  }
+
+  /**
+   * Changes the height of the view, scaling the width to suit the layout,
+   * and rasterizes the keys at the new size. The caller must revalidate the
+   * container.
+   *
+   * @param height The new view height, in pixels.
+   */
+  public synchronized void setViewHeight( final int height ) {
+    final var unit = height / mLayout.getHeight();
+    final var width = Math.round( mLayout.getWidth() * unit );
+
+    setPreferredSize( new Dimension( width, height ) );
+
+    if( width <= 0 || height <= 0 ) {
+      mReleased = null;
+      mPressedImage = null;
+      return;
+    }
+
+    final var gap = unit * KEY_GAP;
+
+    for( int i = 0, n = mLayout.size(); i < n; i++ ) {
+      final var x = mLayout.getBound( i, 0 ) * unit;
+      final var y = mLayout.getBound( i, 1 ) * unit;
+      final var x0 = Math.round( x + gap / 2 );
+      final var y0 = Math.round( y + gap / 2 );
+
+      mRects[ i * 4 ] = x0;
+      mRects[ i * 4 + 1 ] = y0;
+      mRects[ i * 4 + 2 ] =
+        Math.round( x + mLayout.getBound( i, 2 ) * unit - gap / 2 ) - x0;
+      mRects[ i * 4 + 3 ] =
+        Math.round( y + mLayout.getBound( i, 3 ) * unit - gap / 2 ) - y0;
+    }
+
+    final var font = mFont.deriveFont( unit * TEXT_HEIGHT );
+    final var arc = Math.round( unit * CORNER_ARC );
+
+    mReleased = rasterize( width, height, font, arc, mCapColour, mTextColour );
+    mPressedImage =
+      rasterize( width, height, font, arc, mTextColour, mCapColour );
+
+    repaint();
+  }
+
+  @Override
+  protected synchronized void paintComponent( final Graphics g ) {
+    final var released = mReleased;
+
+    if( released == null ) {
+      return;
+    }
+
+    // The whole view is painted when there is no clip.
+    mClip.setBounds( 0, 0, getWidth(), getHeight() );
+
+    final var clip = g.getClipBounds( mClip );
+    final var x1 = clip.x + clip.width;
+    final var y1 = clip.y + clip.height;
+
+    g.drawImage( released,
+                 clip.x, clip.y, x1, y1, clip.x, clip.y, x1, y1, null );
+
+    for( int i = 0; i < mCount; i++ ) {
+      final var r = mHeld[ i ] * 4;
+      final var x = mRects[ r ];
+      final var y = mRects[ r + 1 ];
+      final var w = mRects[ r + 2 ];
+      final var h = mRects[ r + 3 ];
+
+      if( x < x1 && y < y1 && x + w > clip.x && y + h > clip.y ) {
+        g.drawImage( mPressedImage,
+                     x, y, x + w, y + h, x, y, x + w, y + h, null );
+      }
+    }
+  }
+
+  private void repaintKey( final int index ) {
+    final var r = index * 4;
+
+    repaint( mRects[ r ], mRects[ r + 1 ], mRects[ r + 2 ], mRects[ r + 3 ] );
+  }
+
+  /**
+   * Draws every key in the given colours.
+   */
+  private BufferedImage rasterize(
+    final int width,
+    final int height,
+    final Font font,
+    final int arc,
+    final Color cap,
+    final Color text ) {
+    final var image = new BufferedImage( width, height, TYPE_INT_ARGB );
+    final var g = image.createGraphics();
+    final var metrics = g.getFontMetrics( font );
+
+    g.setRenderingHint( KEY_ANTIALIASING, VALUE_ANTIALIAS_ON );
+    g.setRenderingHint( KEY_TEXT_ANTIALIASING, VALUE_TEXT_ANTIALIAS_ON );
+    g.setFont( font );
+
+    for( int i = 0, n = mLayout.size(); i < n; i++ ) {
+      final var x = mRects[ i * 4 ];
+      final var y = mRects[ i * 4 + 1 ];
+      final var w = mRects[ i * 4 + 2 ];
+      final var h = mRects[ i * 4 + 3 ];
+      final var label = mLayout.getLabel( i );
+
+      g.setColor( cap );
+      g.fillRoundRect( x, y, w, h, arc, arc );
+      g.setColor( text );
+      g.drawString(
+        label,
+        x + (w - metrics.stringWidth( label )) / 2,
+        y + (h - metrics.getHeight()) / 2 + metrics.getAscent() );
+    }
+
+    g.dispose();
+
+    return image;
+  }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2023 White Magic Software, Ltd.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.whitemagicsoftware.kmcaster.ui;
+
+import java.awt.*;
+import java.awt.image.AbstractMultiResolutionImage;
+import java.awt.image.ImageObserver;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import static java.lang.Math.max;
+import static java.lang.Math.round;
+
+/**
+ * Responsible for creating resolution variants of an image only when they
+ * are first requested, such as when the image is painted on a display having
+ * a particular scale. Variants are kept for subsequent requests, so painting
+ * on any display copies pixels at their native size.
+ */
+public final class LazyMultiResolutionImage
+    extends AbstractMultiResolutionImage {
+  /**
+   * Logical width, in pixels.
+   */
+  private final int mWidth;
+
+  /**
+   * Logical height, in pixels.
+   */
+  private final int mHeight;
+
+  /**
+   * Creates a variant having the requested size, in device pixels.
+   */
+  private final Function<Dimension, Image> mRasterizer;
+
+  /**
+   * Variants that have been requested, keyed by size in device pixels.
+   */
+  private final Map<Dimension, Image> mVariants = new HashMap<>();
+
+  /**
+   * Creates an image whose variants are created on demand.
+   *
+   * @param width      The logical width, in pixels.
+   * @param height     The logical height, in pixels.
+   * @param rasterizer Creates an image as close as possible to the given
+   *                   size, which must be fully loaded when returned.
+   */
+  public LazyMultiResolutionImage(
+      final int width,
+      final int height,
+      final Function<Dimension, Image> rasterizer ) {
+    assert width > 0;
+    assert height > 0;
+    assert rasterizer != null;
+
+    mWidth = width;
+    mHeight = height;
+    mRasterizer = rasterizer;
+  }
+
+  /**
+   * Returns the variant for the given size, creating it if necessary. The
+   * size is rounded to whole pixels so that nearly identical requests, as
+   * computed from a display's scale, share the same variant.
+   *
+   * @param destImageWidth  The width to paint the image, in device pixels.
+   * @param destImageHeight The height to paint the image, in device pixels.
+   * @return The image variant for the given size.
+   */
+  @Override
+  public synchronized Image getResolutionVariant(
+      final double destImageWidth, final double destImageHeight ) {
+    if( !(destImageWidth > 0 && destImageHeight > 0) ||
+        Double.isInfinite( destImageWidth ) ||
+        Double.isInfinite( destImageHeight ) ) {
+      throw new IllegalArgumentException( "Invalid variant size" );
+    }
+
+    final var size = new Dimension(
+        (int) max( 1, round( destImageWidth ) ),
+        (int) max( 1, round( destImageHeight ) ) );
+
+    return mVariants.computeIfAbsent( size, mRasterizer );
+  }
+
+  /**
+   * Returns the variants that have been requested so far.
+   *
+   * @return The variants created before this call.
+   */
+  @Override
+  public synchronized List<Image> getResolutionVariants() {
+    return List.copyOf( mVariants.values() );
+  }
+
+  /**
+   * Answers the logical width without creating the base image, which might
+   * never be painted on a scaled display.
+   *
+   * @param observer Ignored.
+   * @return The logical width, in pixels.
+   */
+  @Override
+  public int getWidth( final ImageObserver observer ) {
+    return mWidth;
+  }
+
+  /**
+   * Answers the logical height without creating the base image.
+   *
+   * @param observer Ignored.
+   * @return The logical height, in pixels.
+   */
+  @Override
+  public int getHeight( final ImageObserver observer ) {
+    return mHeight;
+  }
+
+  @Override
+  protected Image getBaseImage() {
+    return getResolutionVariant( mWidth, mHeight );
+  }
+}
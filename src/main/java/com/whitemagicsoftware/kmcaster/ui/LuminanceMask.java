@@ -0,0 +1,317 @@
+/*
+ * Copyright 2023 White Magic Software, Ltd.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.whitemagicsoftware.kmcaster.ui;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.awt.image.WritableRaster;
+import java.util.HashMap;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.lang.Math.round;
+
+/**
+ * Responsible for storing a monochrome image as eight bits per pixel, a
+ * quarter of the memory used by a full-colour image. Each pixel is an index
+ * into a palette of {@link #LEVELS} luminance levels for each of
+ * {@link #ALPHAS} alpha levels. The luminance levels span the darkest to
+ * brightest opaque pixel of the source image, so that gradients keep as
+ * much detail as possible.
+ * <p>
+ * Tinting replaces the palette while sharing the pixels, which allows key
+ * colours to be changed without rasterizing the image again. The tint
+ * replaces the image's dominant colour; other pixels become shades of the
+ * tint in proportion to their luminance.
+ * </p>
+ * <p>
+ * Images having saturated pixels of a hue other than the dominant colour's,
+ * such as a red or green gradient stop, cannot be reproduced as shades of a
+ * single colour; {@link #isMonochrome()} answers {@code false} for them so
+ * that callers can keep the full-colour image instead.
+ * </p>
+ */
+public final class LuminanceMask {
+  /**
+   * Number of luminance levels; multiplied by {@link #ALPHAS} this fills a
+   * palette of 256 entries.
+   */
+  private static final int LEVELS = 32;
+
+  /**
+   * Number of alpha levels, which only matter along anti-aliased edges.
+   */
+  private static final int ALPHAS = 8;
+
+  /**
+   * Minimum saturation of a pixel whose hue is distinct from grey.
+   */
+  private static final float SATURATION = .25f;
+
+  /**
+   * Minimum brightness of a pixel whose hue is distinct from black.
+   */
+  private static final float BRIGHTNESS = .15f;
+
+  /**
+   * Hue difference, as a fraction of the colour wheel, beyond which a pixel
+   * is not a shade of the dominant colour.
+   */
+  private static final float HUE_TOLERANCE = 1 / 12f;
+
+  /**
+   * Fraction of opaque pixels having another hue that makes an image
+   * multi-hued; fewer are treated as anti-aliasing noise.
+   */
+  private static final double HUE_SHARE = .005;
+
+  /**
+   * Pixel indexes into the palette, shared by all tinted images.
+   */
+  private final WritableRaster mRaster;
+
+  /**
+   * Luminance of the darkest level relative to the dominant colour.
+   */
+  private final double mFloor;
+
+  /**
+   * Luminance of the brightest level relative to the dominant colour.
+   */
+  private final double mCeiling;
+
+  /**
+   * Most frequent opaque colour in the source image.
+   */
+  private final Color mDominant;
+
+  /**
+   * Whether tinting with the dominant colour reproduces the source image.
+   */
+  private final boolean mMonochrome;
+
+  /**
+   * Converts the given image into luminance levels and alpha levels.
+   *
+   * @param image The image to convert, which should be monochrome.
+   */
+  public LuminanceMask( final BufferedImage image ) {
+    final var w = image.getWidth();
+    final var h = image.getHeight();
+    final var argb = image.getRGB( 0, 0, w, h, null, 0, w );
+
+    final var counts = new HashMap<Integer, Integer>();
+    var lo = 255;
+    var hi = 1;
+
+    for( final var pixel : argb ) {
+      final var opacity = alpha( pixel );
+
+      if( opacity > 0 ) {
+        final var luma = luminance( pixel );
+
+        lo = min( lo, luma );
+        hi = max( hi, luma );
+
+        if( opacity == 255 ) {
+          counts.merge( pixel, 1, Integer::sum );
+        }
+      }
+    }
+
+    lo = min( lo, hi );
+
+    final var dominant = counts.entrySet().stream()
+        .max( ( e1, e2 ) -> e1.getValue() - e2.getValue() )
+        .map( e -> e.getKey() )
+        .orElse( 0xFFFFFFFF );
+    final var reference = (double) max( luminance( dominant ), 1 );
+
+    final var span = max( hi - lo, 1 );
+    final var raster = createPalette( Color.WHITE, 0, 1 )
+        .createCompatibleWritableRaster( w, h );
+    final var indexes = new byte[ argb.length ];
+
+    for( int i = 0; i < argb.length; i++ ) {
+      final var pixel = argb[ i ];
+      final var level = round(
+          (luminance( pixel ) - lo) * (LEVELS - 1f) / span );
+      final var alpha = round( alpha( pixel ) * (ALPHAS - 1f) / 255 );
+
+      indexes[ i ] = (byte)
+          (alpha * LEVELS + max( 0, min( level, LEVELS - 1 ) ));
+    }
+
+    raster.setDataElements( 0, 0, w, h, indexes );
+
+    mRaster = raster;
+    mFloor = lo / reference;
+    mCeiling = hi / reference;
+    mDominant = new Color( dominant );
+    mMonochrome = isMonochrome( argb, dominant );
+  }
+
+  /**
+   * Creates an image that shares this mask's pixels, coloured such that the
+   * dominant colour becomes the given colour and other pixels become shades
+   * of it.
+   *
+   * @param tint The colour for the most frequent pixels.
+   * @return An image that uses one byte per pixel.
+   */
+  public BufferedImage tint( final Color tint ) {
+    return new BufferedImage(
+        createPalette( tint, mFloor, mCeiling ), mRaster, false, null );
+  }
+
+  /**
+   * Answers the colour that approximates the source image as a tint.
+   *
+   * @return The most frequent opaque colour in the source image.
+   */
+  public Color getDominant() {
+    return mDominant;
+  }
+
+  /**
+   * Answers whether the source image is made of shades of its dominant
+   * colour, so that {@link #tint(Color)} with that colour reproduces it.
+   *
+   * @return {@code false} if the image has saturated pixels of another hue.
+   */
+  public boolean isMonochrome() {
+    return mMonochrome;
+  }
+
+  /**
+   * Counts the opaque, saturated pixels whose hue differs from the dominant
+   * colour's. When the dominant colour is itself grey, every saturated pixel
+   * has a hue that shades of it cannot reproduce.
+   *
+   * @param argb     The source image's pixels.
+   * @param dominant The most frequent opaque colour.
+   * @return {@code true} if few enough pixels differ in hue.
+   */
+  private static boolean isMonochrome( final int[] argb, final int dominant ) {
+    final var reference = hsb( dominant, new float[ 3 ] );
+    final var grey = !isSaturated( reference );
+    final var hsb = new float[ 3 ];
+    var opaque = 0;
+    var distinct = 0;
+
+    for( final var pixel : argb ) {
+      if( alpha( pixel ) == 255 ) {
+        hsb( pixel, hsb );
+        opaque++;
+
+        if( isSaturated( hsb ) &&
+          (grey || hueDistance( hsb[ 0 ], reference[ 0 ] ) > HUE_TOLERANCE) ) {
+          distinct++;
+        }
+      }
+    }
+
+    return distinct <= opaque * HUE_SHARE;
+  }
+
+  private static float[] hsb( final int argb, final float[] hsb ) {
+    return Color.RGBtoHSB(
+        (argb >> 16) & 0xFF, (argb >> 8) & 0xFF, argb & 0xFF, hsb );
+  }
+
+  private static boolean isSaturated( final float[] hsb ) {
+    return hsb[ 1 ] >= SATURATION && hsb[ 2 ] >= BRIGHTNESS;
+  }
+
+  /**
+   * Returns the distance between two hues around the colour wheel.
+   *
+   * @param h1 A hue, from 0 to 1.
+   * @param h2 A hue, from 0 to 1.
+   * @return A value from 0 to 0.5.
+   */
+  private static float hueDistance( final float h1, final float h2 ) {
+    final var d = Math.abs( h1 - h2 );
+
+    return min( d, 1 - d );
+  }
+
+  /**
+   * Creates a palette of shades of the given colour.
+   *
+   * @param tint    The colour having a shade of one.
+   * @param floor   The shade of the darkest luminance level.
+   * @param ceiling The shade of the brightest luminance level.
+   * @return A palette indexed by alpha level, then luminance level.
+   */
+  private static IndexColorModel createPalette(
+      final Color tint, final double floor, final double ceiling ) {
+    final var size = LEVELS * ALPHAS;
+    final var r = new byte[ size ];
+    final var g = new byte[ size ];
+    final var b = new byte[ size ];
+    final var a = new byte[ size ];
+
+    for( int alpha = 0; alpha < ALPHAS; alpha++ ) {
+      for( int level = 0; level < LEVELS; level++ ) {
+        final var i = alpha * LEVELS + level;
+        final var shade = floor + (ceiling - floor) * level / (LEVELS - 1);
+
+        r[ i ] = channel( tint.getRed(), shade );
+        g[ i ] = channel( tint.getGreen(), shade );
+        b[ i ] = channel( tint.getBlue(), shade );
+        a[ i ] = (byte) round( alpha * 255f / (ALPHAS - 1) );
+      }
+    }
+
+    return new IndexColorModel( 8, size, r, g, b, a );
+  }
+
+  private static byte channel( final int value, final double shade ) {
+    return (byte) min( 255, round( value * shade ) );
+  }
+
+  private static int alpha( final int argb ) {
+    return argb >>> 24;
+  }
+
+  /**
+   * Computes the perceived brightness of a colour (ITU-R BT.601).
+   *
+   * @param argb The colour to measure.
+   * @return A value from 0 to 255.
+   */
+  private static int luminance( final int argb ) {
+    final var r = (argb >> 16) & 0xFF;
+    final var g = (argb >> 8) & 0xFF;
+    final var b = argb & 0xFF;
+
+    return (299 * r + 587 * g + 114 * b) / 1000;
+  }
+}
@@ -0,0 +1,255 @@
+/*
+ * Copyright 2023 White Magic Software, Ltd.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.whitemagicsoftware.kmcaster.ui;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.ImageObserver;
+import java.awt.image.ImageProducer;
+import java.awt.image.MultiResolutionImage;
+
+import static java.awt.RenderingHints.*;
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static java.lang.Math.abs;
+import static java.lang.Math.round;
+
+/**
+ * Responsible for painting a small image at a larger size by stretching only
+ * its middle bands. The image is divided into a three-by-three grid by the
+ * given insets: corners are drawn as-is, edges are stretched along one axis,
+ * and the centre is stretched along both axes. This allows a single key cap
+ * rasterization to be painted at any key width.
+ * <p>
+ * When the compact image is a {@link MultiResolutionImage}, the variant
+ * matching the display scale is sliced, so that the corners are copied
+ * without scaling. Java2D cannot choose the variant itself because the
+ * stretched slices would request variants many times larger than needed.
+ * </p>
+ * <p>
+ * Instances must be painted using {@link #draw(Graphics, int, int)}; the
+ * image cannot be painted directly by {@link Graphics#drawImage}.
+ * </p>
+ */
+public final class NineSliceImage extends Image {
+  /**
+   * The compact image that is sliced and stretched when painted.
+   */
+  private final Image mImage;
+
+  /**
+   * Width of the left, right, top, and bottom slices, in logical pixels.
+   */
+  private final Insets mSlices;
+
+  /**
+   * Painted width, in pixels.
+   */
+  private final int mWidth;
+
+  /**
+   * Painted height, in pixels.
+   */
+  private final int mHeight;
+
+  /**
+   * Creates an image that paints the given image at a larger size.
+   *
+   * @param image  The compact image to stretch, which must be fully loaded.
+   * @param slices The regions along each edge that must not be stretched.
+   * @param width  The width to paint, no less than the image width.
+   * @param height The height to paint, no less than the image height.
+   */
+  public NineSliceImage(
+    final Image image,
+    final Insets slices,
+    final int width,
+    final int height ) {
+    assert image != null;
+    assert slices != null;
+    assert width >= image.getWidth( null );
+    assert height >= image.getHeight( null );
+
+    mImage = image;
+    mSlices = slices;
+    mWidth = width;
+    mHeight = height;
+  }
+
+  /**
+   * Creates a compact copy of the given image by squeezing the region between
+   * the left and right slices so that the copy has the given width. The
+   * squeezed region is stretched back out when painted, which suits regions
+   * having uniform colours or smooth gradients. The top and bottom slices are
+   * ignored.
+   *
+   * @param image  The full-size image to compact.
+   * @param slices The regions along each edge that must not be stretched.
+   * @param width  The width of the compact image, in pixels.
+   * @return An image no wider than the given width.
+   */
+  public static BufferedImage compact(
+    final BufferedImage image, final Insets slices, final int width ) {
+    final var w = image.getWidth();
+    final var h = image.getHeight();
+    final var l = slices.left;
+    final var r = slices.right;
+    final var m = Math.min( width, w ) - l - r;
+    final var compact = new BufferedImage( l + m + r, h, image.getType() );
+    final var g = compact.createGraphics();
+
+    g.setComposite( AlphaComposite.Src );
+    g.setRenderingHint( KEY_INTERPOLATION, VALUE_INTERPOLATION_BILINEAR );
+    g.setRenderingHint( KEY_RENDERING, VALUE_RENDER_QUALITY );
+    g.drawImage( image, 0, 0, l, h, 0, 0, l, h, null );
+    g.drawImage( image, l, 0, l + m, h, l, 0, w - r, h, null );
+    g.drawImage( image, l + m, 0, l + m + r, h, w - r, 0, w, h, null );
+    g.dispose();
+
+    return compact;
+  }
+
+  /**
+   * Scales slices to match a resolution variant of the compact image. This
+   * must be used when creating variants so that their slices line up with
+   * those used when painting.
+   *
+   * @param slices The slices of the compact image, in logical pixels.
+   * @param xRatio Variant width divided by the compact image width.
+   * @param yRatio Variant height divided by the compact image height.
+   * @return The slices of the variant, in device pixels.
+   */
+  public static Insets scale(
+    final Insets slices, final double xRatio, final double yRatio ) {
+    return new Insets(
+      (int) round( slices.top * yRatio ),
+      (int) round( slices.left * xRatio ),
+      (int) round( slices.bottom * yRatio ),
+      (int) round( slices.right * xRatio )
+    );
+  }
+
+  /**
+   * Paints the image at its full size with the top-left corner at the given
+   * coordinates.
+   *
+   * @param g The graphics context to paint upon.
+   * @param x The horizontal offset.
+   * @param y The vertical offset.
+   */
+  public void draw( final Graphics g, final int x, final int y ) {
+    var image = mImage;
+    var slices = mSlices;
+    var srcW = image.getWidth( null );
+    var srcH = image.getHeight( null );
+
+    if( image instanceof MultiResolutionImage && g instanceof Graphics2D ) {
+      final var t = ((Graphics2D) g).getTransform();
+      final var variant =
+        ((MultiResolutionImage) image).getResolutionVariant(
+          srcW * abs( t.getScaleX() ), srcH * abs( t.getScaleY() ) );
+      final var w = variant.getWidth( null );
+      final var h = variant.getHeight( null );
+
+      slices = scale( slices, (double) w / srcW, (double) h / srcH );
+      image = variant;
+      srcW = w;
+      srcH = h;
+    }
+
+    final int[] srcX = {0, slices.left, srcW - slices.right, srcW};
+    final int[] srcY = {0, slices.top, srcH - slices.bottom, srcH};
+    final int[] dstX = {x, x + mSlices.left, x + mWidth - mSlices.right,
+      x + mWidth};
+    final int[] dstY = {y, y + mSlices.top, y + mHeight - mSlices.bottom,
+      y + mHeight};
+
+    for( int row = 0; row < 3; row++ ) {
+      for( int col = 0; col < 3; col++ ) {
+        // Skip empty slices, such as when there are no top or bottom edges.
+        if( srcX[ col ] < srcX[ col + 1 ] && srcY[ row ] < srcY[ row + 1 ] ) {
+          g.drawImage(
+            image,
+            dstX[ col ], dstY[ row ], dstX[ col + 1 ], dstY[ row + 1 ],
+            srcX[ col ], srcY[ row ], srcX[ col + 1 ], srcY[ row + 1 ],
+            null
+          );
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the compact image that is stretched when painted.
+   *
+   * @return The unstretched image.
+   */
+  public Image getCompactImage() {
+    return mImage;
+  }
+
+  @Override
+  public int getWidth( final ImageObserver observer ) {
+    return mWidth;
+  }
+
+  @Override
+  public int getHeight( final ImageObserver observer ) {
+    return mHeight;
+  }
+
+  /**
+   * Returns the pixels of the image painted at its full size. This allocates
+   * a new image on every call and should be avoided when painting.
+   *
+   * @return The source for the stretched image's pixels.
+   */
+  @Override
+  public ImageProducer getSource() {
+    final var image = new BufferedImage( mWidth, mHeight, TYPE_INT_ARGB );
+    final var graphics = image.createGraphics();
+    draw( graphics, 0, 0 );
+    graphics.dispose();
+
+    return image.getSource();
+  }
+
+  /**
+   * Not supported because the image is not an off-screen drawing surface.
+   *
+   * @throws UnsupportedOperationException Always.
+   */
+  @Override
+  public Graphics getGraphics() {
+    throw new UnsupportedOperationException( "Not an off-screen image" );
+  }
+
+  @Override
+  public Object getProperty( final String name, final ImageObserver observer ) {
+    return UndefinedProperty;
+  }
+}
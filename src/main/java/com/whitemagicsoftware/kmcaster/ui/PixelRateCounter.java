@@ -0,0 +1,107 @@
+/*
+ * Copyright 2023 White Magic Software, Ltd.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.whitemagicsoftware.kmcaster.ui;
+
+import java.util.function.LongConsumer;
+
+import static java.lang.System.nanoTime;
+
+/**
+ * Responsible for tallying the number of pixels repainted over time. The
+ * rate is published to a listener approximately once per second, provided
+ * that painting continues; no timer is used, so an idle application incurs
+ * no cost.
+ */
+public final class PixelRateCounter {
+  /**
+   * Nanoseconds between publishing the repaint rate.
+   */
+  private static final long INTERVAL = 1_000_000_000L;
+
+  /**
+   * Informed of the number of pixels repainted per second.
+   */
+  private final LongConsumer mListener;
+
+  /**
+   * Start of the current tally interval, in nanoseconds.
+   */
+  private long mEpoch = nanoTime();
+
+  /**
+   * Pixels repainted since the start of the current interval.
+   */
+  private long mPixels;
+
+  /**
+   * Most recently computed number of pixels repainted per second.
+   */
+  private long mRate;
+
+  /**
+   * Creates a counter that notifies the given listener with the repaint
+   * rate, in pixels per second.
+   *
+   * @param listener Receives the number of pixels repainted per second.
+   */
+  public PixelRateCounter( final LongConsumer listener ) {
+    assert listener != null;
+
+    mListener = listener;
+  }
+
+  /**
+   * Adds the area of a repainted region to the tally.
+   *
+   * @param width  The repainted region width, in pixels.
+   * @param height The repainted region height, in pixels.
+   */
+  public void add( final int width, final int height ) {
+    final var now = nanoTime();
+    final var elapsed = now - mEpoch;
+
+    if( elapsed >= INTERVAL ) {
+      // Normalize to one second, which accounts for idle gaps.
+      mRate = mPixels * INTERVAL / elapsed;
+      mPixels = 0;
+      mEpoch = now;
+      mListener.accept( mRate );
+    }
+
+    mPixels += (long) width * height;
+  }
+
+  /**
+   * Returns the most recently computed repaint rate.
+   *
+   * @return The number of pixels repainted per second.
+   */
+  public long getRate() {
+    return mRate;
+  }
+}
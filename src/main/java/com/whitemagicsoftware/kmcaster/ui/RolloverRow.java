@@ -0,0 +1,339 @@
+/*
+ * Copyright 2023 White Magic Software, Ltd.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.whitemagicsoftware.kmcaster.ui;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+import static java.awt.RenderingHints.*;
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+
+/**
+ * Responsible for showing every regular key that is held at once as a row of
+ * key caps, in the order they were pressed. Each key is registered once with
+ * its label, which assigns it a cell; a cell's image is drawn the first time
+ * it is painted at the current size and reused until the row is resized.
+ * Pressing and releasing keys only updates an array of cell indexes, so
+ * heavy rollover allocates nothing. Keys pressed while the row is full are
+ * still tracked; releasing a shown key reveals the oldest hidden one.
+ * <p>
+ * Keys may be registered, pressed, and released from any thread; the size
+ * must be changed from the event dispatch thread.
+ * </p>
+ */
+public final class RolloverRow extends JComponent {
+  /**
+   * Fraction of the row height used for text.
+   */
+  private static final float TEXT_HEIGHT = .6f;
+
+  /**
+   * Fraction of the row height added around the text in each cell.
+   */
+  private static final float CELL_PADDING = .5f;
+
+  /**
+   * Fraction of the row height between adjacent cells.
+   */
+  private static final float CELL_GAP = .15f;
+
+  /**
+   * Fraction of the row height used to round the key cap corners.
+   */
+  private static final float CORNER_ARC = .3f;
+
+  /**
+   * Maximum number of held keys to show at once.
+   */
+  private final int mCapacity;
+
+  /**
+   * Cell indexes of the held keys, in the order they were pressed; only the
+   * first {@link #mCapacity} are shown.
+   */
+  private int[] mHeld = new int[ 16 ];
+
+  /**
+   * Number of entries in {@link #mHeld}.
+   */
+  private int mCount;
+
+  /**
+   * Key codes of the registered cells.
+   */
+  private int[] mCodes = new int[ 16 ];
+
+  /**
+   * Labels of the registered cells.
+   */
+  private String[] mLabels = new String[ 16 ];
+
+  /**
+   * Pooled cell images at the current size, or {@code null} if the cell
+   * has not been painted at the current size.
+   */
+  private BufferedImage[] mImages = new BufferedImage[ 16 ];
+
+  /**
+   * Number of registered cells.
+   */
+  private int mCells;
+
+  /**
+   * Font for the labels before it is scaled to the row height.
+   */
+  private final Font mBaseFont;
+
+  /**
+   * Font for the labels, scaled to the row height.
+   */
+  private Font mFont;
+
+  /**
+   * Key cap colour.
+   */
+  private final Color mCapColour;
+
+  /**
+   * Label text colour.
+   */
+  private final Color mTextColour;
+
+  /**
+   * Creates a row that shows up to the given number of held keys.
+   *
+   * @param capacity   Maximum number of keys to show at once.
+   * @param font       The font for the labels, which is scaled to fit.
+   * @param capColour  The key cap colour.
+   * @param textColour The label text colour.
+   */
+  public RolloverRow(
+    final int capacity,
+    final Font font,
+    final Color capColour,
+    final Color textColour ) {
+    assert capacity > 0;
+    assert font != null;
+
+    mCapacity = capacity;
+    mBaseFont = font;
+    mFont = font;
+    mCapColour = capColour;
+    mTextColour = textColour;
+
+    setOpaque( false );
+  }
+
+  /**
+   * Answers whether a key has been registered.
+   *
+   * @param code The key code.
+   * @return {@code true} if {@link #register(int, String)} was called for
+   * the key.
+   */
+  public synchronized boolean isRegistered( final int code ) {
+    return find( code ) >= 0;
+  }
+
+  /**
+   * Assigns a cell to the given key.
+   *
+   * @param code  The key code.
+   * @param label The text to show on the key cap.
+   */
+  public synchronized void register( final int code, final String label ) {
+    if( find( code ) >= 0 ) {
+      return;
+    }
+
+    if( mCells == mCodes.length ) {
+      final var length = mCells * 2;
+
+      mCodes = Arrays.copyOf( mCodes, length );
+      mLabels = Arrays.copyOf( mLabels, length );
+      mImages = Arrays.copyOf( mImages, length );
+      mHeld = Arrays.copyOf( mHeld, length );
+    }
+
+    mCodes[ mCells ] = code;
+    mLabels[ mCells ] = label;
+    mCells++;
+  }
+
+  /**
+   * Shows a registered key at the end of the row. If the row is full, the
+   * key is hidden until enough keys pressed before it are released.
+   *
+   * @param code The key code.
+   */
+  public synchronized void press( final int code ) {
+    final var cell = find( code );
+
+    if( cell >= 0 && position( cell ) < 0 ) {
+      mHeld[ mCount++ ] = cell;
+
+      if( mCount <= mCapacity ) {
+        repaint();
+      }
+    }
+  }
+
+  /**
+   * Removes a key from the row, closing the gap it leaves with the keys
+   * pressed after it, which shows the oldest hidden key, if any.
+   *
+   * @param code The key code.
+   */
+  public synchronized void release( final int code ) {
+    final var cell = find( code );
+    final var i = cell < 0 ? -1 : position( cell );
+
+    if( i >= 0 ) {
+      System.arraycopy( mHeld, i + 1, mHeld, i, --mCount - i );
+
+      if( i < mCapacity ) {
+        repaint();
+      }
+    }
+  }
+
+  /**
+   * Changes the size of the row, discarding the pooled cell images so that
+   * they are redrawn at the new size. The caller must revalidate the
+   * container.
+   *
+   * @param size The new row size, in pixels.
+   */
+  public synchronized void setRowSize( final Dimension size ) {
+    setPreferredSize( size );
+    Arrays.fill( mImages, null );
+
+    if( size.height > 0 ) {
+      final var metrics = getFontMetrics( mBaseFont );
+      final var scale = size.height * TEXT_HEIGHT / metrics.getHeight();
+
+      mFont = mBaseFont.deriveFont( mBaseFont.getSize2D() * scale );
+    }
+
+    repaint();
+  }
+
+  @Override
+  protected synchronized void paintComponent( final Graphics g ) {
+    final var h = getHeight();
+    final var gap = Math.round( h * CELL_GAP );
+    var x = 0;
+
+    for( int i = 0, n = Math.min( mCount, mCapacity ); i < n && h > 0; i++ ) {
+      final var image = getImage( mHeld[ i ], h );
+      final var w = image.getWidth();
+
+      if( x + w > getWidth() ) {
+        break;
+      }
+
+      g.drawImage( image, x, 0, null );
+      x += w + gap;
+    }
+  }
+
+  /**
+   * Returns the pooled image for the given cell, drawing it if necessary.
+   *
+   * @param cell The registered cell index.
+   * @param h    The row height, in pixels.
+   * @return The key cap image for the cell.
+   */
+  private BufferedImage getImage( final int cell, final int h ) {
+    var image = mImages[ cell ];
+
+    if( image == null || image.getHeight() != h ) {
+      image = drawCell( mLabels[ cell ], h );
+      mImages[ cell ] = image;
+    }
+
+    return image;
+  }
+
+  private BufferedImage drawCell( final String label, final int h ) {
+    final var metrics = getFontMetrics( mFont );
+    final var padding = Math.round( h * CELL_PADDING );
+    final var w = Math.max( h, metrics.stringWidth( label ) + padding );
+    final var arc = Math.round( h * CORNER_ARC );
+    final var image = new BufferedImage( w, h, TYPE_INT_ARGB );
+    final var g = image.createGraphics();
+
+    g.setRenderingHint( KEY_ANTIALIASING, VALUE_ANTIALIAS_ON );
+    g.setRenderingHint( KEY_TEXT_ANTIALIASING, VALUE_TEXT_ANTIALIAS_ON );
+    g.setColor( mCapColour );
+    g.fillRoundRect( 0, 0, w, h, arc, arc );
+    g.setFont( mFont );
+    g.setColor( mTextColour );
+    g.drawString(
+      label,
+      (w - metrics.stringWidth( label )) / 2,
+      (h - metrics.getHeight()) / 2 + metrics.getAscent() );
+    g.dispose();
+
+    return image;
+  }
+
+  /**
+   * Returns the cell index for the given key code.
+   *
+   * @param code The key code.
+   * @return The cell index, or -1 if the key is not registered.
+   */
+  private int find( final int code ) {
+    for( int i = 0; i < mCells; i++ ) {
+      if( mCodes[ i ] == code ) {
+        return i;
+      }
+    }
+
+    return -1;
+  }
+
+  /**
+   * Returns the position of the given cell in the row.
+   *
+   * @param cell The cell index.
+   * @return The position, or -1 if the key is not shown.
+   */
+  private int position( final int cell ) {
+    for( int i = 0; i < mCount; i++ ) {
+      if( mHeld[ i ] == cell ) {
+        return i;
+      }
+    }
+
+    return -1;
+  }
+}
@@ -29,18 +29,90 @@ package com.whitemagicsoftware.kmcaster.ui;
 
 import javax.swing.*;
 import java.awt.*;
+import java.util.function.LongConsumer;
+
+import static javax.swing.SwingUtilities.invokeLater;
 
 /**
- * Renders a panel---and its borders---as a translucent colour.
+ * Renders a panel---and its borders---as a translucent colour. Children
+ * that change state mark their bounds as dirty; the union of all bounds
+ * marked during a single event dispatch is repainted once, which keeps
+ * the per-pixel translucent window from recomposing regions that have not
+ * changed.
  */
 public final class TranslucentPanel extends JPanel {
+  /**
+   * Union of child bounds that have changed since the last repaint request.
+   */
+  private final Rectangle mDirty = new Rectangle();
+
+  /**
+   * Tallies the number of pixels cleared and repainted.
+   */
+  private final PixelRateCounter mPixelCounter;
+
+  /**
+   * Creates a panel that does not report its repaint rate.
+   *
+   * @param hgap Horizontal padding between children.
+   * @param vgap Vertical padding between children.
+   */
   public TranslucentPanel( final int hgap, final int vgap ) {
+    this( hgap, vgap, rate -> {} );
+  }
+
+  /**
+   * Creates a panel that reports its repaint rate to the given listener.
+   *
+   * @param hgap     Horizontal padding between children.
+   * @param vgap     Vertical padding between children.
+   * @param listener Receives the number of pixels repainted per second.
+   */
+  public TranslucentPanel(
+    final int hgap, final int vgap, final LongConsumer listener ) {
     final var layout = new FlowLayout();
 
     layout.setHgap( hgap );
     layout.setVgap( vgap );
     setLayout( layout );
     setOpaque( false );
+
+    mPixelCounter = new PixelRateCounter( listener );
+  }
+
+  /**
+   * Marks the bounds of the given child as needing to be repainted. This
+   * must be called from the event dispatch thread. Multiple calls made
+   * while handling the same event are coalesced into a single repaint of
+   * the union of the bounds.
+   *
+   * @param child The child component that has changed.
+   */
+  public void markDirty( final Component child ) {
+    assert child != null;
+
+    final var bounds = child.getBounds();
+
+    if( bounds.isEmpty() ) {
+      return;
+    }
+
+    if( mDirty.isEmpty() ) {
+      mDirty.setBounds( bounds );
+      invokeLater( this::repaintDirty );
+    }
+    else {
+      mDirty.add( bounds );
+    }
+  }
+
+  /**
+   * Returns the most recently computed repaint rate.
+   *
+   * @return The number of pixels repainted per second.
+   */
+  public long getPixelRate() {
+    return mPixelCounter.getRate();
   }
 
   @Override
@@ -51,5 +123,17 @@ public final class TranslucentPanel extends JPanel {
     final var r = g2.getClipBounds();
     g2.fillRect( r.x, r.y, r.width, r.height );
     super.paintComponent( g2 );
+
+    mPixelCounter.add( r.width, r.height );
+  }
+
+  /**
+   * Requests that only the accumulated dirty region be repainted.
+   */
+  private void repaintDirty() {
+    final var dirty = mDirty;
+
+    repaint( dirty.x, dirty.y, dirty.width, dirty.height );
+    dirty.setBounds( 0, 0, 0, 0 );
   }
 }
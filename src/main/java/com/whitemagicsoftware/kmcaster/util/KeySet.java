@@ -0,0 +1,118 @@
+/*
+ * Copyright 2023 White Magic Software, Ltd.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.whitemagicsoftware.kmcaster.util;
+
+/**
+ * Responsible for tracking which keys are held as a bit set indexed by key
+ * code. Codes beyond {@link #CAPACITY} share bits with lower codes, which
+ * does not happen for the codes reported by the native keyboard hook.
+ * Adding and removing keys allocates nothing.
+ */
+public final class KeySet {
+  /**
+   * Number of distinct key codes.
+   */
+  public static final int CAPACITY = 1 << 16;
+
+  /**
+   * One bit per key code, set while the key is held.
+   */
+  private final long[] mBits = new long[ CAPACITY / Long.SIZE ];
+
+  /**
+   * Number of bits set.
+   */
+  private int mSize;
+
+  /**
+   * Marks the given key as held.
+   *
+   * @param code The key code.
+   * @return {@code false} if the key was already held, as when the key
+   * repeats.
+   */
+  public boolean add( final int code ) {
+    final var index = word( code );
+    final var bit = bit( code );
+    final var added = (mBits[ index ] & bit) == 0;
+
+    if( added ) {
+      mBits[ index ] |= bit;
+      mSize++;
+    }
+
+    return added;
+  }
+
+  /**
+   * Marks the given key as released.
+   *
+   * @param code The key code.
+   * @return {@code false} if the key was not held.
+   */
+  public boolean remove( final int code ) {
+    final var index = word( code );
+    final var bit = bit( code );
+    final var removed = (mBits[ index ] & bit) != 0;
+
+    if( removed ) {
+      mBits[ index ] &= ~bit;
+      mSize--;
+    }
+
+    return removed;
+  }
+
+  /**
+   * Answers whether the given key is held.
+   *
+   * @param code The key code.
+   * @return {@code true} if the key was added and not removed since.
+   */
+  public boolean contains( final int code ) {
+    return (mBits[ word( code ) ] & bit( code )) != 0;
+  }
+
+  /**
+   * Returns the number of keys held.
+   *
+   * @return A value between zero and {@link #CAPACITY}.
+   */
+  public int size() {
+    return mSize;
+  }
+
+  private static int word( final int code ) {
+    return (code & (CAPACITY - 1)) >>> 6;
+  }
+
+  private static long bit( final int code ) {
+    // Shifts use the low six bits of the code.
+    return 1L << code;
+  }
+}
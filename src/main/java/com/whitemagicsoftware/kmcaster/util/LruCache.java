@@ -0,0 +1,135 @@
+/*
+ * Copyright 2023 White Magic Software, Ltd.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.whitemagicsoftware.kmcaster.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+/**
+ * Responsible for retaining recently used values up to a maximum total
+ * weight, such as the number of bytes used by a set of images. The least
+ * recently used entries are evicted first; the most recently added entry
+ * is always retained, even if it alone exceeds the maximum weight.
+ * <p>
+ * Each value is weighed once, when it is added. Values that grow afterwards,
+ * such as images that render their variants lazily, keep the weight they had
+ * when added so that evicting them subtracts exactly what was counted.
+ * </p>
+ *
+ * @param <K> The type of key used to look up values.
+ * @param <V> The type of value to cache.
+ */
+public final class LruCache<K, V> {
+  private final Map<K, Entry<V>> mEntries =
+    new LinkedHashMap<>( 16, 0.75f, true );
+
+  /**
+   * Computes the weight of a value, such as its size in bytes.
+   */
+  private final ToLongFunction<V> mWeigher;
+
+  /**
+   * Maximum total weight of all retained values.
+   */
+  private final long mCapacity;
+
+  /**
+   * Total weight of all retained values.
+   */
+  private long mWeight;
+
+  /**
+   * Creates an empty cache that holds values up to the given total weight.
+   *
+   * @param capacity The maximum total weight of retained values.
+   * @param weigher  Computes the weight of each value.
+   */
+  public LruCache( final long capacity, final ToLongFunction<V> weigher ) {
+    assert capacity > 0;
+    assert weigher != null;
+
+    mCapacity = capacity;
+    mWeigher = weigher;
+  }
+
+  /**
+   * Returns the value associated with the given key, marking it as the most
+   * recently used entry.
+   *
+   * @param key The key associated with a value.
+   * @return The cached value, or {@code null} if not present.
+   */
+  public synchronized V get( final K key ) {
+    final var entry = mEntries.get( key );
+
+    return entry == null ? null : entry.mValue;
+  }
+
+  /**
+   * Associates a value with a key, then evicts the least recently used
+   * entries until the total weight is within capacity.
+   *
+   * @param key   The key to associate with the value.
+   * @param value The value to cache.
+   */
+  public synchronized void put( final K key, final V value ) {
+    final var previous = mEntries.remove( key );
+
+    if( previous != null ) {
+      mWeight -= previous.mWeight;
+    }
+
+    // Evict before inserting so that the newest entry is always retained.
+    final var weight = mWeigher.applyAsLong( value );
+
+    for( final var it = mEntries.values().iterator();
+         it.hasNext() && mWeight + weight > mCapacity; ) {
+      mWeight -= it.next().mWeight;
+      it.remove();
+    }
+
+    mEntries.put( key, new Entry<>( value, weight ) );
+    mWeight += weight;
+  }
+
+  /**
+   * Pairs a cached value with the weight it had when it was added.
+   *
+   * @param <V> The type of value to cache.
+   */
+  private static final class Entry<V> {
+    private final V mValue;
+    private final long mWeight;
+
+    private Entry( final V value, final long weight ) {
+      mValue = value;
+      mWeight = weight;
+    }
+  }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2023 White Magic Software, Ltd.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.whitemagicsoftware.kmcaster.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Responsible for counting events over a sliding window of time, using a
+ * fixed ring of buckets. Each bucket packs its interval number and its
+ * count into a single long, so recording an event is one read and one
+ * ordered write, without locks or allocation, and a bucket left over from
+ * an earlier lap of the ring is recognized and restarted. Reading the rate
+ * sums the buckets that fall within the window.
+ * <p>
+ * Events must be recorded from a single thread, such as the native hook's
+ * dispatch thread; rates may be read from any thread.
+ * </p>
+ */
+public final class RateCounter {
+  /**
+   * Bits of each bucket that hold the count.
+   */
+  private static final int COUNT_BITS = 24;
+
+  private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+
+  /**
+   * Interval number and count for each bucket.
+   */
+  private final AtomicLongArray mBuckets;
+
+  /**
+   * Nanoseconds covered by each bucket.
+   */
+  private final long mBucketNanos;
+
+  /**
+   * Time from which intervals are numbered, in nanoseconds.
+   */
+  private final long mEpoch = System.nanoTime();
+
+  /**
+   * Creates a counter that averages events over the given window.
+   *
+   * @param buckets     Number of buckets in the window.
+   * @param bucketNanos Nanoseconds covered by each bucket.
+   */
+  public RateCounter( final int buckets, final long bucketNanos ) {
+    assert buckets > 1;
+    assert bucketNanos > 0;
+
+    mBuckets = new AtomicLongArray( buckets );
+    mBucketNanos = bucketNanos;
+  }
+
+  /**
+   * Counts one event.
+   *
+   * @param time When the event happened, from {@link System#nanoTime()}.
+   */
+  public void record( final long time ) {
+    final var interval = interval( time );
+    final var slot = (int) (interval % mBuckets.length());
+    final var bucket = mBuckets.get( slot );
+    final var count = bucket >>> COUNT_BITS == interval
+      ? bucket & COUNT_MASK
+      : 0;
+
+    // Bursts beyond the count's capacity saturate rather than overflow.
+    if( count < COUNT_MASK ) {
+      mBuckets.lazySet( slot, interval << COUNT_BITS | (count + 1) );
+    }
+  }
+
+  /**
+   * Returns the average number of events per second over the window that
+   * ends at the given time. The current, partially elapsed bucket is
+   * included, so the window spans the whole buckets before it plus the
+   * time elapsed within it.
+   *
+   * @param time The end of the window, from {@link System#nanoTime()}.
+   * @return The number of events per second.
+   */
+  public double getRate( final long time ) {
+    final var interval = interval( time );
+    final var length = mBuckets.length();
+    var events = 0L;
+
+    for( int i = 0; i < length; i++ ) {
+      final var bucket = mBuckets.get( i );
+
+      if( interval - (bucket >>> COUNT_BITS) < length ) {
+        events += bucket & COUNT_MASK;
+      }
+    }
+
+    final var since = Math.max( time - mEpoch, 1 );
+
+    // The window is shorter until the counter has run for its full length.
+    final var elapsed = Math.min(
+      (length - 1) * mBucketNanos + since % mBucketNanos, since );
+
+    return events * (double) SECONDS.toNanos( 1 ) / elapsed;
+  }
+
+  private long interval( final long time ) {
+    return Math.max( time - mEpoch, 0 ) / mBucketNanos;
+  }
+}
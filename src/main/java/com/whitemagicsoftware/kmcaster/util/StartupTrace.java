@@ -0,0 +1,177 @@
+/*
+ * Copyright 2023 White Magic Software, Ltd.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  o Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  o Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.whitemagicsoftware.kmcaster.util;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Responsible for timing the phases of application startup using a
+ * monotonic clock. Timing is always recorded, because the command-line
+ * arguments that request a report are parsed after several phases have
+ * completed; recording a phase costs two calls to {@link System#nanoTime()}.
+ * <p>
+ * Phases are timed using try-with-resources:
+ * </p>
+ * <pre>
+ * try( final var ignored = StartupTrace.start( "Load font" ) ) {
+ *   loadFont( name );
+ * }
+ * </pre>
+ */
+public final class StartupTrace {
+  /**
+   * Time when tracing began, which all phases are relative to.
+   */
+  private static final long ORIGIN = System.nanoTime();
+
+  private static final List<Phase> sPhases = new ArrayList<>();
+
+  /**
+   * A named interval of time on a particular thread.
+   */
+  public static final class Phase implements AutoCloseable {
+    private final String mName;
+    private final String mThread;
+    private final long mThreadId;
+    private final long mStart;
+    private long mEnd;
+
+    private Phase( final String name ) {
+      final var thread = Thread.currentThread();
+
+      mName = name;
+      mThread = thread.getName();
+      mThreadId = thread.getId();
+      mStart = System.nanoTime();
+    }
+
+    /**
+     * Stops timing this phase.
+     */
+    @Override
+    public void close() {
+      mEnd = System.nanoTime();
+
+      synchronized( sPhases ) {
+        sPhases.add( this );
+      }
+    }
+  }
+
+  private StartupTrace() {
+  }
+
+  /**
+   * Starts timing a phase, which ends when the returned instance is closed.
+   *
+   * @param name The phase name to report.
+   * @return The phase to close when it ends.
+   */
+  public static Phase start( final String name ) {
+    return new Phase( name );
+  }
+
+  /**
+   * Prints a table of the phases in the order they started, followed by
+   * the time elapsed from the start of tracing to the end of the last phase.
+   *
+   * @param out Where to print the table.
+   */
+  public static void report( final PrintStream out ) {
+    final var phases = getPhases();
+    var end = ORIGIN;
+
+    out.printf( "%-28s %10s %10s  %s%n",
+                "Startup phase", "Start ms", "Took ms", "Thread" );
+
+    for( final var phase : phases ) {
+      out.printf( "%-28s %10.1f %10.1f  %s%n",
+                  phase.mName,
+                  millis( phase.mStart - ORIGIN ),
+                  millis( phase.mEnd - phase.mStart ),
+                  phase.mThread );
+      end = Math.max( end, phase.mEnd );
+    }
+
+    out.printf( "%-28s %10s %10.1f%n", "Total", "", millis( end - ORIGIN ) );
+  }
+
+  /**
+   * Writes the phases in the Chrome trace event format, which can be viewed
+   * using about:tracing or https://ui.perfetto.dev/.
+   *
+   * @param path The file to write.
+   * @throws IOException Could not write the file.
+   */
+  public static void write( final Path path ) throws IOException {
+    final var json = new StringBuilder( "{\"traceEvents\":[" );
+    var separator = "";
+
+    for( final var phase : getPhases() ) {
+      json.append( separator ).append( format(
+        "%n{\"name\":\"%s\",\"ph\":\"X\",\"pid\":1,\"tid\":%d," +
+          "\"ts\":%d,\"dur\":%d,\"args\":{\"thread\":\"%s\"}}",
+        escape( phase.mName ),
+        phase.mThreadId,
+        (phase.mStart - ORIGIN) / 1000,
+        (phase.mEnd - phase.mStart) / 1000,
+        escape( phase.mThread ) ) );
+      separator = ",";
+    }
+
+    json.append( format( "%n]}%n" ) );
+    Files.writeString( path, json, UTF_8 );
+  }
+
+  private static List<Phase> getPhases() {
+    final List<Phase> phases;
+
+    synchronized( sPhases ) {
+      phases = new ArrayList<>( sPhases );
+    }
+
+    phases.sort( ( p1, p2 ) -> Long.compare( p1.mStart, p2.mStart ) );
+    return phases;
+  }
+
+  private static double millis( final long nanos ) {
+    return nanos / 1e6;
+  }
+
+  private static String escape( final String s ) {
+    return s.replace( "\\", "\\\\" ).replace( "\"", "\\\"" );
+  }
+}